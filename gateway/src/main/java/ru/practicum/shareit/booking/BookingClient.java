@@ -1,46 +1,107 @@
 package ru.practicum.shareit.booking;
 
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingStatusUpdateDto;
 import ru.practicum.shareit.client.BaseClient;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class BookingClient extends BaseClient {
     private static final String API_PREFIX = "/bookings";
 
+    /**
+     * Отдельный пул соединений для долгих потоков, чтобы они не занимали соединения обычных запросов
+     */
+    private final CloseableHttpClient streamClient;
+
     @Autowired
-    public BookingClient(@Value("${shareit-server.url}") String serverUrl, RestTemplateBuilder builder) {
+    public BookingClient(@Value("${shareit-server.url}") String serverUrl,
+                         @Value("${shareit-server.stream.max-connections:1000}") int maxStreams,
+                         RestTemplateBuilder builder) {
         super(
                 builder
                         .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX))
                         .requestFactory(HttpComponentsClientHttpRequestFactory::new)
                         .build()
         );
+        this.streamClient = HttpClients.custom()
+                .setMaxConnPerRoute(maxStreams)
+                .setMaxConnTotal(maxStreams)
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        streamClient.close();
     }
 
     public ResponseEntity<Object> create(BookingDto bookingDto, long userId) {
         return post("", userId, bookingDto);
     }
 
+    public ResponseEntity<Object> createAll(List<BookingDto> bookingDtos, long userId) {
+        return post("/batch", userId, bookingDtos);
+    }
+
     public ResponseEntity<Object> updateStatus(Long userId, Long bookingId, Boolean approved) {
         return patch("/" + bookingId + "?approved=" + approved, userId, null, null);
     }
 
+    public ResponseEntity<Object> updateStatuses(long userId, List<BookingStatusUpdateDto> updates) {
+        return patch("/batch", userId, updates);
+    }
+
     public ResponseEntity<Object> findById(Long bookingId, long userId) {
         return get("/" + bookingId, userId);
     }
 
-    public ResponseEntity<Object> findALlForBooker(long userId, String state, int from, int size) {
-        return get("?state=" + state + "&from=" + from + "&size=" + size, userId);
+    public ResponseEntity<Object> findALlForBooker(long userId, String state, int from, int size, String after) {
+        return get("?state=" + state + "&from=" + from + "&size=" + size + afterParam(after), userId);
+    }
+
+    public ResponseEntity<Object> findAllItemsForOwner(long userId, String state, int from, int size, String after) {
+        return get("/owner?state=" + state + "&from=" + from + "&size=" + size + afterParam(after), userId);
+    }
+
+    public ResponseEntity<StreamingResponseBody> stream(long userId, String lastEventId) throws IOException {
+        var headers = new HashMap<String, String>();
+        headers.put("Accept", "text/event-stream, application/json");
+        if (lastEventId != null) {
+            headers.put("Last-Event-ID", lastEventId);
+        }
+        return stream(streamClient, "/stream", userId, headers);
+    }
+
+    /**
+     * Формат проверяет сервер, ошибка возвращается клиенту с его статусом
+     */
+    public ResponseEntity<StreamingResponseBody> exportAllForOwner(long userId, String format) throws IOException {
+        return stream(streamClient, "/owner/export?format=" + URLEncoder.encode(format, StandardCharsets.UTF_8),
+                userId, Map.of());
     }
 
-    public ResponseEntity<Object> findAllItemsForOwner(long userId, String state, int from, int size) {
-        return get("/owner?state=" + state + "&from=" + from + "&size=" + size, userId);
+    /**
+     * Курсор уже в base64url, поэтому передается без дополнительного кодирования
+     */
+    private static String afterParam(String after) {
+        return after == null ? "" : "&after=" + after;
     }
 }
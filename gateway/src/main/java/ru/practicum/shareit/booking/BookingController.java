@@ -6,9 +6,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingStatusUpdateDto;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.util.List;
 
 @Controller
 @RequestMapping(path = "/bookings")
@@ -27,6 +31,16 @@ public class BookingController {
         return bookingClient.create(bookingDto, userId);
     }
 
+    /**
+     * Элементы пакета проверяются на сервере, ошибки возвращаются по каждому элементу
+     */
+    @ResponseBody
+    @PostMapping("/batch")
+    public ResponseEntity<Object> createAll(@RequestBody List<BookingDto> bookingDtos,
+                                            @RequestHeader(USER_ID) long userId) {
+        return bookingClient.createAll(bookingDtos, userId);
+    }
+
     @ResponseBody
     @PatchMapping("/{bookingId}")
     public ResponseEntity<Object> updateStatus(@RequestHeader(USER_ID) long userId,
@@ -35,6 +49,26 @@ public class BookingController {
         return bookingClient.updateStatus(userId, bookingId, approved);
     }
 
+    /**
+     * Элементы пакета проверяются на сервере, ошибки возвращаются по каждому элементу
+     */
+    @ResponseBody
+    @PatchMapping("/batch")
+    public ResponseEntity<Object> updateStatuses(@RequestHeader(USER_ID) long userId,
+                                                 @RequestBody List<BookingStatusUpdateDto> updates) {
+        return bookingClient.updateStatuses(userId, updates);
+    }
+
+    /**
+     * Поток событий сервера передается клиенту без буферизации, Last-Event-ID пробрасывается для дочитывания
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestHeader(USER_ID) long userId,
+                                                        @RequestHeader(value = "Last-Event-ID", required = false)
+                                                        String lastEventId) throws IOException {
+        return bookingClient.stream(userId, lastEventId);
+    }
+
     @GetMapping("/{bookingId}")
     public ResponseEntity<Object> findById(@PathVariable long bookingId,
                                            @RequestHeader(USER_ID) long userId) {
@@ -45,15 +79,28 @@ public class BookingController {
     public ResponseEntity<Object> findAllForBooker(@RequestHeader(USER_ID) long userId,
                                                    @RequestParam(required = false, defaultValue = "ALL") String state,
                                                    @RequestParam(value = "from", required = false, defaultValue = "0") int from,
-                                                   @RequestParam(value = "size", required = false, defaultValue = "10") int size) {
-        return bookingClient.findALlForBooker(userId, state, from, size);
+                                                   @RequestParam(value = "size", required = false, defaultValue = "10") int size,
+                                                   @RequestParam(value = "after", required = false) String after) {
+        return bookingClient.findALlForBooker(userId, state, from, size, after);
+    }
+
+    /**
+     * Выгрузка передается клиенту по мере чтения с сервера, без сборки в памяти
+     */
+    @GetMapping("/owner/export")
+    public ResponseEntity<StreamingResponseBody> exportAllForOwner(@RequestHeader(USER_ID) long userId,
+                                                                   @RequestParam(value = "format", required = false,
+                                                                           defaultValue = "ndjson") String format)
+            throws IOException {
+        return bookingClient.exportAllForOwner(userId, format);
     }
 
     @GetMapping("/owner")
     public ResponseEntity<Object> findAllItemForOwner(@RequestHeader(USER_ID) long userId,
                                                       @RequestParam(required = false, defaultValue = "ALL") String state,
                                                       @RequestParam(value = "from", required = false, defaultValue = "0") int from,
-                                                      @RequestParam(value = "size", required = false, defaultValue = "10") int size) {
-        return bookingClient.findAllItemsForOwner(userId, state, from, size);
+                                                      @RequestParam(value = "size", required = false, defaultValue = "10") int size,
+                                                      @RequestParam(value = "after", required = false) String after) {
+        return bookingClient.findAllItemsForOwner(userId, state, from, size, after);
     }
 }
@@ -1,8 +1,18 @@
 package ru.practicum.shareit.client;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -11,6 +21,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 public class BaseClient {
     protected final RestTemplate rest;
@@ -79,6 +90,83 @@ public class BaseClient {
         return makeAndSendRequest(HttpMethod.DELETE, path, userId, parameters, null);
     }
 
+    /**
+     * Метод открывает GET-запрос к серверу и отдает тело ответа клиенту по мере поступления,
+     * не собирая его в памяти, как RestTemplate. Ошибка сервера возвращается обычным ответом с его статусом.
+     * Если клиент отключился раньше конца потока, соединение с сервером обрывается, а не дочитывается
+     */
+    protected ResponseEntity<StreamingResponseBody> stream(CloseableHttpClient client, String path, long userId,
+                                                           Map<String, String> headers) throws IOException {
+        var request = new HttpGet(rest.getUriTemplateHandler().expand(path));
+        request.setHeader("X-Sharer-User-Id", String.valueOf(userId));
+        headers.forEach(request::setHeader);
+        return relay(client, request);
+    }
+
+    /**
+     * Метод передает тело запроса клиента серверу частями (chunked) по мере чтения, без копии в памяти.
+     * Ответ сервера отдается так же, как в stream
+     */
+    protected ResponseEntity<StreamingResponseBody> upload(CloseableHttpClient client, String path, long userId,
+                                                           InputStream body, String contentType) throws IOException {
+        var request = new HttpPost(rest.getUriTemplateHandler().expand(path));
+        request.setHeader("X-Sharer-User-Id", String.valueOf(userId));
+        var entity = new InputStreamEntity(body, -1, ContentType.parse(contentType));
+        entity.setChunked(true);
+        request.setEntity(entity);
+        return relay(client, request);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> relay(CloseableHttpClient client, HttpRequestBase request)
+            throws IOException {
+        var response = client.execute(request);
+        var relayed = false;
+        try {
+            var status = response.getStatusLine().getStatusCode();
+            var entity = response.getEntity();
+            var builder = ResponseEntity.status(status);
+            if (entity != null && entity.getContentType() != null) {
+                builder.contentType(MediaType.parseMediaType(entity.getContentType().getValue()));
+            }
+            if (entity == null || status < 200 || status >= 300) {
+                var body = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+                return builder.body(out -> out.write(body));
+            }
+            relayed = true;
+            return builder.body(relayBody(request, response, entity));
+        } finally {
+            if (!relayed) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Ответ закрывается после передачи тела, а при обрыве клиента соединение с сервером прерывается
+     */
+    private static StreamingResponseBody relayBody(HttpRequestBase request, CloseableHttpResponse response,
+                                                   org.apache.http.HttpEntity entity) {
+        return out -> {
+            var completed = false;
+            try {
+                var in = entity.getContent();
+                var buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+                completed = true;
+            } finally {
+                if (completed) {
+                    response.close();
+                } else {
+                    request.abort();
+                }
+            }
+        };
+    }
+
     private <T> ResponseEntity<Object> makeAndSendRequest(HttpMethod method, String path, Long userId, @Nullable Map<String, Object> parameters, @Nullable T body) {
         HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders(userId));
 
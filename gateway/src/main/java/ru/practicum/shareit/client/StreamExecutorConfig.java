@@ -0,0 +1,42 @@
+package ru.practicum.shareit.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Пул потоков для ответов StreamingResponseBody. Поток занят на все время передачи (SSE, выгрузки, загрузки),
+ * поэтому пул рассчитан на число соединений с сервером, а не на 8 потоков applicationTaskExecutor:
+ * пулы соединений размера max-connections есть у BookingClient и ItemClient.
+ * Задача ставится только после того, как соединение получено, поэтому число долгих задач ограничено
+ * пулом соединений, и очередь не растет: в ней ненадолго оказываются лишь короткие ответы с ошибкой
+ */
+@Configuration
+public class StreamExecutorConfig implements WebMvcConfigurer {
+    private static final int STREAM_CLIENTS = 2;
+
+    private final int maxStreams;
+
+    public StreamExecutorConfig(@Value("${shareit-server.stream.max-connections:1000}") int maxStreams) {
+        this.maxStreams = maxStreams;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor streamTaskExecutor() {
+        var executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(STREAM_CLIENTS * maxStreams);
+        executor.setMaxPoolSize(STREAM_CLIENTS * maxStreams);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("gateway-stream-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamTaskExecutor());
+    }
+}
@@ -4,12 +4,14 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.validation.ConstraintViolationException;
 import java.time.LocalDateTime;
 
 @Slf4j
@@ -18,13 +20,24 @@ public class CustomExceptionHandler {
     private static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
 
     @ExceptionHandler({IllegalArgumentException.class,
-            MethodArgumentNotValidException.class})
+            MethodArgumentNotValidException.class,
+            ConstraintViolationException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseError badRequestHandle(Exception exception) {
         log.error(exception.getMessage());
         return new ResponseError(exception.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Все соединения с сервером для потоковой передачи заняты
+     */
+    @ExceptionHandler(ConnectionPoolTimeoutException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseError serviceUnavailableHandle(ConnectionPoolTimeoutException exception) {
+        log.warn(exception.getMessage());
+        return new ResponseError("Too many concurrent transfers, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ResponseError internalServerErrorHandle(Throwable exception) {
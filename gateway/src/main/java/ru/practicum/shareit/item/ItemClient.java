@@ -1,34 +1,79 @@
 package ru.practicum.shareit.item;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.client.BaseClient;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+
 @Service
 public class ItemClient extends BaseClient {
     private static final String API_PREFIX = "/items";
 
+    /**
+     * Клиент для загрузки и выгрузки больших тел, RestTemplate собирает тело в памяти целиком.
+     * Пул соединений того же размера, что у потоков бронирований. Если свободного соединения
+     * нет дольше connection-request-timeout-ms, запрос получает 503, а не ждет без ограничения
+     */
+    private final CloseableHttpClient streamClient;
+
     @Autowired
-    public ItemClient(@Value("${shareit-server.url}") String serverUrl, RestTemplateBuilder builder) {
+    public ItemClient(@Value("${shareit-server.url}") String serverUrl,
+                      @Value("${shareit-server.stream.max-connections:1000}") int maxStreams,
+                      @Value("${shareit-server.stream.connection-request-timeout-ms:5000}") int connectionRequestTimeout,
+                      RestTemplateBuilder builder) {
         super(
                 builder
                         .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX))
                         .requestFactory(HttpComponentsClientHttpRequestFactory::new)
                         .build()
         );
+        this.streamClient = HttpClients.custom()
+                .setMaxConnPerRoute(maxStreams)
+                .setMaxConnTotal(maxStreams)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(connectionRequestTimeout)
+                        .build())
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        streamClient.close();
     }
 
     public ResponseEntity<Object> create(Long userId, ItemDto itemDto) {
         return post("", userId, itemDto);
     }
 
+    public ResponseEntity<StreamingResponseBody> createAll(long userId, InputStream body, String contentType)
+            throws IOException {
+        return upload(streamClient, "/bulk", userId, body, contentType);
+    }
+
+    public ResponseEntity<StreamingResponseBody> export(long userId, String format) throws IOException {
+        return stream(streamClient, "/export?format=" + URLEncoder.encode(format, StandardCharsets.UTF_8),
+                userId, Map.of());
+    }
+
     public ResponseEntity<Object> update(ItemDto itemDto, Long itemId, Long userId) {
         return patch("/" + itemId, userId, itemDto);
     }
@@ -41,8 +86,29 @@ public class ItemClient extends BaseClient {
         return get("/", userId);
     }
 
-    public ResponseEntity<Object> findByText(String text) {
-        return get("/search?text=" + text);
+    public ResponseEntity<Object> findByText(String text, boolean ranked, boolean fuzzy, boolean facets, int from, int size) {
+        Map<String, Object> parameters = Map.of(
+                "text", text,
+                "ranked", ranked,
+                "fuzzy", fuzzy,
+                "facets", facets,
+                "from", from,
+                "size", size
+        );
+        return get("/search?text={text}&ranked={ranked}&fuzzy={fuzzy}&facets={facets}&from={from}&size={size}",
+                null, parameters);
+    }
+
+    public ResponseEntity<Object> suggest(String prefix, int size) {
+        return get("/suggest?prefix={prefix}&size={size}", null, Map.of("prefix", prefix, "size", size));
+    }
+
+    public ResponseEntity<Object> findAvailability(Long itemId, LocalDate from, LocalDate to) {
+        return get("/" + itemId + "/availability?from=" + from + "&to=" + to);
+    }
+
+    public ResponseEntity<Object> findComments(Long itemId, Long userId, Long after, int size) {
+        return get("/" + itemId + "/comments?size=" + size + (after == null ? "" : "&after=" + after), userId);
     }
 
     public ResponseEntity<Object> addComment(Long itemId, Long userId, CommentDto commentDto) {
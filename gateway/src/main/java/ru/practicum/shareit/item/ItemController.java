@@ -2,13 +2,21 @@ package ru.practicum.shareit.item;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
+import java.io.IOException;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/items")
@@ -17,6 +25,9 @@ import javax.validation.Valid;
 @Validated
 public class ItemController {
     private static final String USER_ID = "X-Sharer-User-Id";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int MAX_COMMENTS_PAGE = 100;
+    private static final int MAX_SUGGESTIONS = 10;
 
     private final ItemClient itemClient;
 
@@ -27,6 +38,15 @@ public class ItemController {
         return itemClient.create(userId, itemDto);
     }
 
+    /**
+     * Строки проверяет сервер и возвращает ошибку для каждой, поэтому тело передается ему без разбора
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> createAll(HttpServletRequest request,
+                                                           @RequestHeader(USER_ID) long userId) throws IOException {
+        return itemClient.createAll(userId, request.getInputStream(), request.getContentType());
+    }
+
     @ResponseBody
     @PatchMapping("/{itemId}")
     public ResponseEntity<Object> update(@RequestBody ItemDto itemDto,
@@ -46,9 +66,45 @@ public class ItemController {
         return itemClient.findAllByUserId(userId);
     }
 
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestHeader(USER_ID) long userId,
+                                                        @RequestParam(value = "format", required = false,
+                                                                defaultValue = "ndjson") String format)
+            throws IOException {
+        return itemClient.export(userId, format);
+    }
+
     @GetMapping("/search")
-    public ResponseEntity<Object> findByText(@RequestParam String text) {
-        return itemClient.findByText(text);
+    public ResponseEntity<Object> findByText(@RequestParam String text,
+                                             @RequestParam(value = "ranked", required = false, defaultValue = "false") boolean ranked,
+                                             @RequestParam(value = "fuzzy", required = false, defaultValue = "false") boolean fuzzy,
+                                             @RequestParam(value = "facets", required = false, defaultValue = "false") boolean facets,
+                                             @RequestParam(value = "from", required = false, defaultValue = "0") int from,
+                                             @RequestParam(value = "size", required = false, defaultValue = "10") int size) {
+        return itemClient.findByText(text, ranked, fuzzy, facets, from, size);
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<Object> suggest(@RequestParam String prefix,
+                                          @RequestParam(value = "size", required = false, defaultValue = "10")
+                                          @Positive @Max(MAX_SUGGESTIONS) int size) {
+        return itemClient.suggest(prefix, size);
+    }
+
+    @GetMapping("/{itemId}/availability")
+    public ResponseEntity<Object> findAvailability(@PathVariable long itemId,
+                                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return itemClient.findAvailability(itemId, from, to);
+    }
+
+    @GetMapping("/{itemId}/comments")
+    public ResponseEntity<Object> findComments(@PathVariable long itemId,
+                                               @RequestHeader(USER_ID) long userId,
+                                               @RequestParam(value = "after", required = false) Long after,
+                                               @RequestParam(value = "size", required = false, defaultValue = "20")
+                                               @Positive @Max(MAX_COMMENTS_PAGE) int size) {
+        return itemClient.findComments(itemId, userId, after, size);
     }
 
     @ResponseBody
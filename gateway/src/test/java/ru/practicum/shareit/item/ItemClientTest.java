@@ -0,0 +1,48 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.client.MockServerRestTemplateCustomizer;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class ItemClientTest {
+    private ItemClient itemClient;
+
+    private MockRestServiceServer server;
+
+    @BeforeEach
+    public void init() {
+        var customizer = new MockServerRestTemplateCustomizer();
+        itemClient = new ItemClient("http://localhost:9090", 1, 1000, new RestTemplateBuilder(customizer));
+        server = customizer.getServer();
+    }
+
+    /**
+     * Пользовательский ввод передается значением параметра, а не частью шаблона адреса
+     */
+    @Test
+    public void suggestEncodesPrefix() {
+        server.expect(requestTo("http://localhost:9090/items/suggest?prefix=R%26D%20c%2B%2B%20%7B%23&size=5"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+        itemClient.suggest("R&D c++ {#", 5);
+        server.verify();
+    }
+
+    @Test
+    public void findByTextEncodesText() {
+        server.expect(requestTo("http://localhost:9090/items/search?text=R%26D%2B&ranked=true&fuzzy=false"
+                        + "&facets=false&from=0&size=10"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+        itemClient.findByText("R&D+", true, false, false, 0, 10);
+        server.verify();
+    }
+}
@@ -2,6 +2,8 @@ package ru.practicum.shareit;
 
 import lombok.*;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -15,8 +17,19 @@ import javax.persistence.*;
 @AllArgsConstructor
 @SuperBuilder
 public abstract class AbstractBaseEntity implements HasId {
+    public static final int ID_ALLOCATION_SIZE = 50;
 
+    /**
+     * Id берется из последовательности сущности (user_seq, item_request_seq и т.д.) блоками по ID_ALLOCATION_SIZE.
+     * В отличие от identity, id известен до вставки, поэтому Hibernate может отправлять вставки JDBC-пакетами
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "pooled-sequence")
+    @GenericGenerator(name = "pooled-sequence", strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = "prefer_sequence_per_entity", value = "true"),
+            @Parameter(name = "sequence_per_entity_suffix", value = "_seq"),
+            @Parameter(name = "increment_size", value = "" + ID_ALLOCATION_SIZE),
+            @Parameter(name = "optimizer", value = "pooled")
+    })
     protected Long id;
 }
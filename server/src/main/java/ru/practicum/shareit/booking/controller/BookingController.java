@@ -2,9 +2,20 @@ package ru.practicum.shareit.booking.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingStatusUpdateDto;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.util.CursorExporter;
+import ru.practicum.shareit.util.ExportFormat;
+
+import javax.servlet.http.HttpServletResponse;
 
 import java.util.List;
 
@@ -15,8 +26,11 @@ import java.util.List;
 public class BookingController {
 
     private static final String USER_ID = "X-Sharer-User-Id";
+    private static final String NEXT_AFTER = "X-Next-After";
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
 
     private final BookingService service;
+    private final CursorExporter exporter;
 
     @PostMapping
     public BookingDto create(@RequestBody BookingDto bookingDto, @RequestHeader(USER_ID) long userId) {
@@ -24,6 +38,13 @@ public class BookingController {
         return service.create(bookingDto, userId);
     }
 
+    @PostMapping("/batch")
+    public List<BookingBatchResultDto> createAll(@RequestBody List<BookingDto> bookingDtos,
+                                                 @RequestHeader(USER_ID) long userId) {
+        log.info("POST/batch: create {} bookings for user with id={}", bookingDtos.size(), userId);
+        return service.createAll(bookingDtos, userId);
+    }
+
     @PatchMapping("/{bookingId}")
     public BookingDto updateStatus(@RequestHeader(USER_ID) long userId,
                                    @PathVariable Long bookingId,
@@ -32,6 +53,24 @@ public class BookingController {
         return service.updateStatus(userId, bookingId, approved);
     }
 
+    @PatchMapping("/batch")
+    public List<BookingBatchResultDto> updateStatuses(@RequestHeader(USER_ID) long userId,
+                                                      @RequestBody List<BookingStatusUpdateDto> updates) {
+        log.info("PATCH/batch: update statuses of {} bookings by user with id={}", updates.size(), userId);
+        return service.updateStatuses(userId, updates);
+    }
+
+    /**
+     * Поток событий status с бронированиями, статус которых изменился, для бронирующего и владельца вещи.
+     * Браузер при переподключении сам передает Last-Event-ID, и пропущенные события досылаются
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(USER_ID) long userId,
+                             @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId) {
+        log.info("GET/stream: subscribe user with id={} to booking events", userId);
+        return service.subscribe(userId, lastEventId);
+    }
+
     @GetMapping("/{bookingId}")
     public BookingDto findById(@PathVariable Long bookingId,
                                @RequestHeader(USER_ID) long userId) {
@@ -39,21 +78,53 @@ public class BookingController {
         return service.findById(bookingId, userId);
     }
 
+    /**
+     * Если передан курсор after, страница читается по ключу (start, id) и параметр from не используется.
+     * Курсор следующей страницы возвращается в заголовке X-Next-After, когда страница заполнена
+     */
     @GetMapping
-    public List<BookingDto> findAllForBooker(@RequestHeader(USER_ID) long userId,
-                                             @RequestParam(required = false, defaultValue = "ALL") String state,
-                                             @RequestParam(value = "from", required = false, defaultValue = "0") int from,
-                                             @RequestParam(value = "size", required = false, defaultValue = "10") int size) {
+    public ResponseEntity<List<BookingDto>> findAllForBooker(@RequestHeader(USER_ID) long userId,
+                                                             @RequestParam(required = false, defaultValue = "ALL") String state,
+                                                             @RequestParam(value = "from", required = false, defaultValue = "0") int from,
+                                                             @RequestParam(value = "size", required = false, defaultValue = "10") int size,
+                                                             @RequestParam(value = "after", required = false) String after) {
         log.info("GET: find all bookings for booker with id={} and state: {}", userId, state);
-        return service.findByBookerAndState(userId, state, from, size);
+        return withNextCursor(after == null ? service.findByBookerAndState(userId, state, from, size)
+                : service.findByBookerAndStateAfter(userId, state, after, size), size);
     }
 
     @GetMapping("/owner")
-    public List<BookingDto> findAllItemsForOwner(@RequestHeader(USER_ID) long userId,
-                                                 @RequestParam(required = false, defaultValue = "ALL") String state,
-                                                 @RequestParam(value = "from", required = false, defaultValue = "0") Integer from,
-                                                 @RequestParam(value = "size", required = false, defaultValue = "10") Integer size) {
+    public ResponseEntity<List<BookingDto>> findAllItemsForOwner(@RequestHeader(USER_ID) long userId,
+                                                                 @RequestParam(required = false, defaultValue = "ALL") String state,
+                                                                 @RequestParam(value = "from", required = false, defaultValue = "0") Integer from,
+                                                                 @RequestParam(value = "size", required = false, defaultValue = "10") Integer size,
+                                                                 @RequestParam(value = "after", required = false) String after) {
         log.info("GET/owner: find all bookings for item's owner with id={} and state{}", userId, state);
-        return service.findAllItemsByOwnerAndState(userId, state, from, size);
+        return withNextCursor(after == null ? service.findAllItemsByOwnerAndState(userId, state, from, size)
+                : service.findAllItemsByOwnerAndStateAfter(userId, state, after, size), size);
+    }
+
+    /**
+     * Все бронирования вещей владельца одним потоком без ограничения размера страницы, format - ndjson или csv
+     */
+    @GetMapping("/owner/export")
+    public WebAsyncTask<Void> exportAllForOwner(@RequestHeader(USER_ID) long userId,
+                                                @RequestParam(value = "format", required = false,
+                                                        defaultValue = "ndjson") String format,
+                                                HttpServletResponse response) {
+        log.info("GET/owner/export: export bookings for item's owner with id={} as {}", userId, format);
+        var exportFormat = ExportFormat.of(format);
+        return exporter.respond(service.exportAllByOwner(userId, exportFormat), exportFormat, response);
+    }
+
+    private static ResponseEntity<List<BookingDto>> withNextCursor(List<BookingDto> bookings, int size) {
+        var response = ResponseEntity.ok();
+        if (!bookings.isEmpty() && bookings.size() == size) {
+            var last = bookings.get(bookings.size() - 1);
+            if (last.getStart() != null && last.getId() != null) {
+                response.header(NEXT_AFTER, BookingCursor.of(last).encode());
+            }
+        }
+        return response.body(bookings);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат обработки одного элемента пакетного запроса: бронирование либо текст ошибки
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingBatchResultDto {
+    private int index;
+    private Long bookingId;
+    private BookingDto booking;
+    private String error;
+
+    public static BookingBatchResultDto ok(int index, BookingDto booking) {
+        return new BookingBatchResultDto(index, booking.getId(), booking, null);
+    }
+
+    public static BookingBatchResultDto failed(int index, Long bookingId, String error) {
+        return new BookingBatchResultDto(index, bookingId, null, error);
+    }
+}
@@ -2,8 +2,10 @@ package ru.practicum.shareit.booking.dto;
 
 import lombok.experimental.UtilityClass;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.OwnerBookingView;
 import ru.practicum.shareit.booking.model.Status;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.user.model.User;
 
 @UtilityClass
@@ -29,4 +31,43 @@ public class BookingMapper {
                 .booker(user)
                 .build();
     }
+
+    public static OwnerBookingView toOwnerBookingView(Booking booking) {
+        return OwnerBookingView.builder()
+                .id(booking.getId())
+                .ownerId(booking.getItem().getOwner().getId())
+                .itemId(booking.getItem().getId())
+                .itemName(booking.getItem().getName())
+                .bookerId(booking.getBooker().getId())
+                .status(booking.getStatus())
+                .phase(booking.getPhase())
+                .start(booking.getStart())
+                .end(booking.getEnd())
+                .build();
+    }
+
+    /**
+     * Бронирование из проекции бронирующего или владельца: у запроса вещи заполнен только id
+     */
+    public static BookingDto toBookingDto(BookingView view) {
+        return BookingDto.builder()
+                .id(view.getId())
+                .start(view.getStart())
+                .end(view.getEnd())
+                .status(view.getStatus())
+                .item(Item.builder()
+                        .id(view.getItemId())
+                        .name(view.getItemName())
+                        .description(view.getItemDescription())
+                        .available(view.getItemAvailable())
+                        .request(view.getItemRequestId() != null
+                                ? ItemRequest.builder().id(view.getItemRequestId()).build() : null)
+                        .build())
+                .booker(User.builder()
+                        .id(view.getBookerId())
+                        .name(view.getBookerName())
+                        .email(view.getBookerEmail())
+                        .build())
+                .build();
+    }
 }
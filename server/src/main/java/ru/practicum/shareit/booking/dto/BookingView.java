@@ -0,0 +1,35 @@
+package ru.practicum.shareit.booking.dto;
+
+import ru.practicum.shareit.booking.model.Status;
+
+import java.time.LocalDateTime;
+
+/**
+ * Бронирование для выборок бронирующего и владельца: только колонки ответа из bookings (owner_booking_view), items и users,
+ * прочитанные одним запросом без загрузки сущностей и запроса вещи
+ */
+public interface BookingView {
+    Long getId();
+
+    LocalDateTime getStart();
+
+    LocalDateTime getEnd();
+
+    Status getStatus();
+
+    Long getItemId();
+
+    String getItemName();
+
+    String getItemDescription();
+
+    Boolean getItemAvailable();
+
+    Long getItemRequestId();
+
+    Long getBookerId();
+
+    String getBookerName();
+
+    String getBookerEmail();
+}
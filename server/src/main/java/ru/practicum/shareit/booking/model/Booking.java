@@ -40,4 +40,15 @@ public class Booking extends AbstractBaseEntity {
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     private Status status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "phase", nullable = false)
+    private Phase phase;
+
+    @PrePersist
+    private void initPhase() {
+        if (phase == null) {
+            phase = Phase.of(start, end, LocalDateTime.now());
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package ru.practicum.shareit.booking.model;
+
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Денормализованная строка бронирования для выборок владельца вещей.
+ * Владелец и название вещи копируются из вещи, поэтому выборка не соединяет таблицы
+ * и не загружает сущности. Строка пишется вместе с бронированием и обновляется при смене
+ * статуса, фазы бронирования и названия вещи
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "owner_booking_view")
+public class OwnerBookingView implements Persistable<Long> {
+
+    @Id
+    @Column(name = "booking_id")
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "item_id", nullable = false)
+    private Long itemId;
+
+    @Column(name = "item_name", nullable = false)
+    private String itemName;
+
+    @Column(name = "booker_id", nullable = false)
+    private Long bookerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "phase", nullable = false)
+    private Phase phase;
+
+    @Column(name = "start_date", nullable = false)
+    private LocalDateTime start;
+
+    @Column(name = "end_date", nullable = false)
+    private LocalDateTime end;
+
+    /**
+     * Id строки совпадает с id бронирования, поэтому новизну строки нельзя определить по id.
+     * Без флага save выполнял бы лишний select перед каждой вставкой
+     */
+    @Transient
+    @Builder.Default
+    @ToString.Exclude
+    private boolean created = true;
+
+    @Override
+    public boolean isNew() {
+        return created;
+    }
+
+    @PostLoad
+    @PostPersist
+    private void markPersisted() {
+        created = false;
+    }
+}
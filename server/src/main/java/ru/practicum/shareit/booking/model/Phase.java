@@ -0,0 +1,20 @@
+package ru.practicum.shareit.booking.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Фаза жизненного цикла бронирования по времени. Хранится в колонке phase
+ * и переводится планировщиком BookingPhaseScheduler в моменты начала и окончания бронирования
+ */
+public enum Phase {
+    FUTURE,
+    CURRENT,
+    PAST;
+
+    public static Phase of(LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        if (!end.isAfter(now)) {
+            return PAST;
+        }
+        return start.isAfter(now) ? FUTURE : CURRENT;
+    }
+}
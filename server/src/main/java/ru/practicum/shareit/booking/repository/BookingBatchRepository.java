@@ -0,0 +1,15 @@
+package ru.practicum.shareit.booking.repository;
+
+import ru.practicum.shareit.booking.model.Booking;
+
+import java.util.List;
+
+/**
+ * Пакетная вставка бронирований через JDBC, минуя контекст персистентности
+ */
+public interface BookingBatchRepository {
+    /**
+     * Метод вставляет бронирования одним пакетом и проставляет им сгенерированные id
+     */
+    void insertAll(List<Booking> bookings);
+}
@@ -0,0 +1,51 @@
+package ru.practicum.shareit.booking.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Phase;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class BookingBatchRepositoryImpl implements BookingBatchRepository {
+    private static final String INSERT = "INSERT INTO bookings (start_date, end_date, status, phase, item_id, owner_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<Booking> bookings) {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        var now = LocalDateTime.now();
+        jdbcTemplate.execute((ConnectionCallback<Object>) connection -> {
+            try (var statement = connection.prepareStatement(INSERT, new String[]{"id"})) {
+                for (var booking : bookings) {
+                    statement.setTimestamp(1, Timestamp.valueOf(booking.getStart()));
+                    statement.setTimestamp(2, Timestamp.valueOf(booking.getEnd()));
+                    statement.setString(3, booking.getStatus().name());
+                    if (booking.getPhase() == null) {
+                        booking.setPhase(Phase.of(booking.getStart(), booking.getEnd(), now));
+                    }
+                    statement.setString(4, booking.getPhase().name());
+                    statement.setLong(5, booking.getItem().getId());
+                    statement.setLong(6, booking.getBooker().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (var keys = statement.getGeneratedKeys()) {
+                    for (var booking : bookings) {
+                        keys.next();
+                        booking.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -1,18 +1,148 @@
 package ru.practicum.shareit.booking.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingView;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Phase;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.schedule.BookingIntervalView;
+import ru.practicum.shareit.booking.schedule.BookingPhaseView;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface BookingRepository extends JpaRepository<Booking, Long> {
-    List<Booking> findAllByBookerId(long userId);
-
-    List<Booking> findAllByItem_OwnerId(long itemOwner);
+public interface BookingRepository extends JpaRepository<Booking, Long>, BookingBatchRepository {
+    /**
+     * Условие постраничного вывода по ключу (start, id) для JPQL, алиас бронирования - b
+     */
+    String KEYSET_CONDITION = "and (b.start < :start or b.start = :start and b.id > :id) " +
+            "order by b.start desc, b.id";
 
     List<Booking> findAllByItemIdAndBookerId(long itemId, long bookerId);
 
     List<Booking> findAllByItemId(Long itemId);
+
+    @EntityGraph(attributePaths = {"item", "item.owner", "booker"})
+    List<Booking> findAllByIdIn(Collection<Long> ids);
+
+    @Query("select distinct b.item.id from Booking b where b.id in :ids")
+    List<Long> findItemIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select b.id as id, b.item.id as itemId, b.item.owner.id as ownerId, b.booker.id as bookerId, " +
+            "b.start as start, b.end as end from Booking b where b.status in :statuses")
+    List<BookingIntervalView> findAllIntervalsByStatusIn(@Param("statuses") Collection<Status> statuses);
+
+    @Query("select b.id as id, b.item.id as itemId, b.item.owner.id as ownerId, b.booker.id as bookerId, " +
+            "b.start as start, b.end as end from Booking b " +
+            "where b.item.id = :itemId and b.status in :statuses and b.start < :end and b.end > :start")
+    List<BookingIntervalView> findAllIntervalsByItemIdAndStatusIn(@Param("itemId") long itemId,
+                                                                  @Param("statuses") Collection<Status> statuses,
+                                                                  @Param("end") LocalDateTime end,
+                                                                  @Param("start") LocalDateTime start);
+
+    /**
+     * Пересечения проверяются по колонке item_id без соединения с items, иначе условие по id вещи
+     * переносится в соединение и индекс bookings_item_id_status_start_date_idx не используется
+     */
+    @Query("select case when count(b) > 0 then true else false end from Booking b " +
+            "where b.item.id = :itemId and b.status in :statuses and b.start < :end and b.end > :start")
+    boolean existsByItemIdAndStatusInAndStartBeforeAndEndAfter(@Param("itemId") long itemId,
+                                                               @Param("statuses") Collection<Status> statuses,
+                                                               @Param("end") LocalDateTime end,
+                                                               @Param("start") LocalDateTime start);
+
+    @Query("select case when count(b) > 0 then true else false end from Booking b " +
+            "where b.item.id = :itemId and b.id <> :id and b.status in :statuses and b.start < :end and b.end > :start")
+    boolean existsByItemIdAndIdNotAndStatusInAndStartBeforeAndEndAfter(@Param("itemId") long itemId,
+                                                                      @Param("id") long id,
+                                                                      @Param("statuses") Collection<Status> statuses,
+                                                                      @Param("end") LocalDateTime end,
+                                                                      @Param("start") LocalDateTime start);
+
+    /**
+     * Проекция BookingView: колонки ответа бронирующему из bookings, items и users. Алиасы b, i и u
+     * обязательны для условий ниже, сортировка страницы добавляется к запросу по алиасам проекции
+     */
+    String BOOKING_VIEW_SELECT = "select b.id as id, b.start as start, b.end as end, b.status as status, " +
+            "i.id as itemId, i.name as itemName, i.description as itemDescription, i.available as itemAvailable, " +
+            "i.request.id as itemRequestId, u.id as bookerId, u.name as bookerName, u.email as bookerEmail " +
+            "from Booking b join b.item i join b.booker u ";
+
+    /**
+     * Выборки бронирований по состоянию для бронирующего,
+     * выборки владельца вещей идут через OwnerBookingViewRepository.
+     * Фильтрация, сортировка и пагинация выполняются в базе данных, вещь и бронирующий читаются тем же
+     * запросом в проекцию без загрузки сущностей.
+     * PAST, FUTURE и CURRENT выбираются по материализованной фазе, а не сравнением со временем
+     */
+    @Query(BOOKING_VIEW_SELECT + "where b.booker.id = :bookerId")
+    List<BookingView> findAllByBookerId(@Param("bookerId") long bookerId, Pageable pageable);
+
+    @Query(BOOKING_VIEW_SELECT + "where b.booker.id = :bookerId and b.phase = :phase")
+    List<BookingView> findAllByBookerIdAndPhase(@Param("bookerId") long bookerId, @Param("phase") Phase phase,
+                                                Pageable pageable);
+
+    @Query(BOOKING_VIEW_SELECT + "where b.booker.id = :bookerId and b.status = :status")
+    List<BookingView> findAllByBookerIdAndStatus(@Param("bookerId") long bookerId, @Param("status") Status status,
+                                                 Pageable pageable);
+
+    /**
+     * Постраничный вывод по ключу: следующая страница начинается сразу после бронирования (start, id),
+     * поэтому база читает индекс с нужного места, а не пропускает OFFSET строк.
+     * Как и для выборок выше, на каждое состояние свой запрос
+     */
+    @Query(BOOKING_VIEW_SELECT + "where b.booker.id = :userId " + KEYSET_CONDITION)
+    List<BookingView> findAllByBookerIdAfter(@Param("userId") long bookerId, @Param("start") LocalDateTime start,
+                                             @Param("id") long id, Pageable pageable);
+
+    @Query(BOOKING_VIEW_SELECT + "where b.booker.id = :userId and b.phase = :phase " + KEYSET_CONDITION)
+    List<BookingView> findAllByBookerIdAndPhaseAfter(@Param("userId") long bookerId, @Param("phase") Phase phase,
+                                                     @Param("start") LocalDateTime start, @Param("id") long id,
+                                                     Pageable pageable);
+
+    @Query(BOOKING_VIEW_SELECT + "where b.booker.id = :userId and b.status = :status " + KEYSET_CONDITION)
+    List<BookingView> findAllByBookerIdAndStatusAfter(@Param("userId") long bookerId, @Param("status") Status status,
+                                                      @Param("start") LocalDateTime start, @Param("id") long id,
+                                                      Pageable pageable);
+
+    /**
+     * Переходы фаз для планировщика: бронирования, которые начнутся или закончатся в полуинтервале (from, to]
+     */
+    @Query("select b.id as id, b.start as start, b.end as end from Booking b " +
+            "where b.phase = ru.practicum.shareit.booking.model.Phase.FUTURE and b.start > :from and b.start <= :to " +
+            "or b.phase in (ru.practicum.shareit.booking.model.Phase.FUTURE, " +
+            "ru.practicum.shareit.booking.model.Phase.CURRENT) and b.end > :from and b.end <= :to")
+    List<BookingPhaseView> findAllPhaseTransitions(@Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Transactional
+    @Query("update Booking b set b.phase = :phase where b.id in :ids and b.phase in :previous")
+    int updatePhase(@Param("ids") Collection<Long> ids, @Param("previous") Collection<Phase> previous,
+                    @Param("phase") Phase phase);
+
+    /**
+     * Досчитывание фаз, пропущенных, пока планировщик не работал
+     */
+    @Modifying
+    @Transactional
+    @Query("update Booking b set b.phase = ru.practicum.shareit.booking.model.Phase.PAST " +
+            "where b.phase in (ru.practicum.shareit.booking.model.Phase.FUTURE, " +
+            "ru.practicum.shareit.booking.model.Phase.CURRENT) and b.end <= :now")
+    int updatePhaseOfEnded(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("update Booking b set b.phase = ru.practicum.shareit.booking.model.Phase.CURRENT " +
+            "where b.phase = ru.practicum.shareit.booking.model.Phase.FUTURE and b.start <= :now and b.end > :now")
+    int updatePhaseOfStarted(@Param("now") LocalDateTime now);
 }
@@ -0,0 +1,101 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingView;
+import ru.practicum.shareit.booking.model.OwnerBookingView;
+import ru.practicum.shareit.booking.model.Phase;
+import ru.practicum.shareit.booking.model.Status;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static ru.practicum.shareit.booking.repository.BookingRepository.KEYSET_CONDITION;
+
+@Repository
+public interface OwnerBookingViewRepository extends JpaRepository<OwnerBookingView, Long> {
+    /**
+     * SQL выгрузки всех бронирований владельца для CursorExporter, порядок как у GET /bookings/owner
+     */
+    String EXPORT_BY_OWNER = "SELECT booking_id AS \"id\", start_date AS \"start\", end_date AS \"end\", " +
+            "status AS \"status\", item_id AS \"itemId\", item_name AS \"itemName\", booker_id AS \"bookerId\" " +
+            "FROM owner_booking_view WHERE owner_id = ? ORDER BY start_date DESC, booking_id";
+
+    /**
+     * Фильтр и сортировка идут по узкой таблице и ее индексам, а вещь и бронирующий дочитываются
+     * по первичному ключу только для строк страницы. Ответ тот же, что у выборок бронирующего
+     */
+    String OWNER_BOOKING_SELECT = "select b.id as id, b.start as start, b.end as end, b.status as status, " +
+            "b.itemId as itemId, b.itemName as itemName, i.description as itemDescription, " +
+            "i.available as itemAvailable, i.request.id as itemRequestId, b.bookerId as bookerId, " +
+            "u.name as bookerName, u.email as bookerEmail " +
+            "from OwnerBookingView b, Item i, User u where i.id = b.itemId and u.id = b.bookerId ";
+
+    /**
+     * Выборки бронирований владельца по состоянию. Читаются только колонки ответа,
+     * строки не попадают в контекст персистентности
+     */
+    @Query(OWNER_BOOKING_SELECT + "and b.ownerId = :ownerId")
+    List<BookingView> findAllByOwnerId(@Param("ownerId") long ownerId, Pageable pageable);
+
+    @Query(OWNER_BOOKING_SELECT + "and b.ownerId = :ownerId and b.phase = :phase")
+    List<BookingView> findAllByOwnerIdAndPhase(@Param("ownerId") long ownerId, @Param("phase") Phase phase,
+                                               Pageable pageable);
+
+    @Query(OWNER_BOOKING_SELECT + "and b.ownerId = :ownerId and b.status = :status")
+    List<BookingView> findAllByOwnerIdAndStatus(@Param("ownerId") long ownerId, @Param("status") Status status,
+                                                Pageable pageable);
+
+    /**
+     * Постраничный вывод по ключу (start, id), по запросу на состояние, как в BookingRepository
+     */
+    @Query(OWNER_BOOKING_SELECT + "and b.ownerId = :userId " + KEYSET_CONDITION)
+    List<BookingView> findAllByOwnerIdAfter(@Param("userId") long ownerId, @Param("start") LocalDateTime start,
+                                            @Param("id") long id, Pageable pageable);
+
+    @Query(OWNER_BOOKING_SELECT + "and b.ownerId = :userId and b.phase = :phase " + KEYSET_CONDITION)
+    List<BookingView> findAllByOwnerIdAndPhaseAfter(@Param("userId") long ownerId, @Param("phase") Phase phase,
+                                                    @Param("start") LocalDateTime start, @Param("id") long id,
+                                                    Pageable pageable);
+
+    @Query(OWNER_BOOKING_SELECT + "and b.ownerId = :userId and b.status = :status " + KEYSET_CONDITION)
+    List<BookingView> findAllByOwnerIdAndStatusAfter(@Param("userId") long ownerId, @Param("status") Status status,
+                                                     @Param("start") LocalDateTime start, @Param("id") long id,
+                                                     Pageable pageable);
+
+    @Modifying
+    @Query("update OwnerBookingView b set b.status = :status where b.id in :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") Status status);
+
+    @Modifying
+    @Query("update OwnerBookingView b set b.itemName = :name where b.itemId = :itemId")
+    int updateItemName(@Param("itemId") long itemId, @Param("name") String name);
+
+    /**
+     * Переходы фаз повторяют одноименные обновления BookingRepository
+     */
+    @Modifying
+    @Transactional
+    @Query("update OwnerBookingView b set b.phase = :phase where b.id in :ids and b.phase in :previous")
+    int updatePhase(@Param("ids") Collection<Long> ids, @Param("previous") Collection<Phase> previous,
+                    @Param("phase") Phase phase);
+
+    @Modifying
+    @Transactional
+    @Query("update OwnerBookingView b set b.phase = ru.practicum.shareit.booking.model.Phase.PAST " +
+            "where b.phase in (ru.practicum.shareit.booking.model.Phase.FUTURE, " +
+            "ru.practicum.shareit.booking.model.Phase.CURRENT) and b.end <= :now")
+    int updatePhaseOfEnded(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("update OwnerBookingView b set b.phase = ru.practicum.shareit.booking.model.Phase.CURRENT " +
+            "where b.phase = ru.practicum.shareit.booking.model.Phase.FUTURE and b.start <= :now and b.end > :now")
+    int updatePhaseOfStarted(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,263 @@
+package ru.practicum.shareit.booking.schedule;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.exception.NotAvailableException;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Индекс интервалов действующих (WAITING и APPROVED) бронирований по вещам для проверки пересечений.
+ * Для каждой вещи хранится дополненное дерево интервалов, проверка и резервирование стоят O(log n),
+ * и битовая карта занятых дней, из которой строится календарь доступности вещи.
+ * Строится при старте приложения из базы данных. Резерв ставится сразу, чтобы параллельное бронирование
+ * того же периода увидело его до коммита, и снимается, если транзакция откатилась.
+ * Интервалы, закончившиеся до начала текущего дня, вытесняются по сигналу BookingPhaseScheduler
+ * о переходе бронирований в PAST: новое бронирование не может начаться в прошлом, поэтому они
+ * ни с чем не пересекутся, а календарь доступности начинается с сегодняшнего дня.
+ * Индекс живет в памяти одного экземпляра сервера, при нескольких экземплярах его следует отключить
+ * (shareit.booking.interval-index.enabled=false), тогда пересечения проверяются запросом к базе
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingIntervalIndex {
+    public static final Set<Status> ACTIVE = EnumSet.of(Status.WAITING, Status.APPROVED);
+
+    private final BookingRepository bookingRepository;
+
+    @Value("${shareit.booking.interval-index.enabled:true}")
+    private boolean enabled = true;
+
+    private final Map<Long, IntervalTree> trees = new HashMap<>();
+    private final Map<Long, DayBitmap> days = new HashMap<>();
+    private final Map<Long, Long> owners = new HashMap<>();
+    private final NavigableSet<Ending> endings = new TreeSet<>(Comparator.comparing((Ending ending) -> ending.end)
+            .thenComparingLong(ending -> ending.id));
+
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            log.info("Booking interval index is disabled, overlaps are checked by the database");
+            return;
+        }
+        var views = bookingRepository.findAllIntervalsByStatusIn(ACTIVE);
+        var today = LocalDate.now().atStartOfDay();
+        synchronized (this) {
+            trees.clear();
+            days.clear();
+            owners.clear();
+            endings.clear();
+            views.stream()
+                    .filter(view -> view.getEnd().isAfter(today))
+                    .forEach(view -> insert(view.getItemId(), view.getOwnerId(), view.getId(),
+                            view.getStart(), view.getEnd(), view.getBookerId()));
+        }
+        log.info("Booking interval index built for {} bookings", views.size());
+    }
+
+    /**
+     * Метод проверяет, что сохраненное бронирование не пересекается с действующими бронированиями вещи,
+     * и резервирует его интервал. При пересечении выбрасывается NotAvailableException
+     */
+    public void reserve(Booking booking) {
+        var itemId = booking.getItem().getId();
+        if (!enabled) {
+            if (bookingRepository.existsByItemIdAndIdNotAndStatusInAndStartBeforeAndEndAfter(itemId, booking.getId(),
+                    ACTIVE, booking.getEnd(), booking.getStart())) {
+                throw overlap(itemId);
+            }
+            return;
+        }
+        synchronized (this) {
+            var tree = trees.get(itemId);
+            if (tree != null && tree.findOverlap(booking.getStart(), booking.getEnd()) != null) {
+                throw overlap(itemId);
+            }
+            insert(itemId, booking.getItem().getOwner().getId(), booking.getId(),
+                    booking.getStart(), booking.getEnd(), booking.getBooker().getId());
+        }
+        onRollback(() -> remove(itemId, booking));
+    }
+
+    /**
+     * Метод проверяет, что период вещи не пересекается с действующими бронированиями, ничего не резервируя.
+     * Результат надежен, пока вещь заблокирована через ItemLocks
+     */
+    public boolean isFree(long itemId, LocalDateTime start, LocalDateTime end) {
+        if (!enabled) {
+            return !bookingRepository.existsByItemIdAndStatusInAndStartBeforeAndEndAfter(itemId, ACTIVE, end, start);
+        }
+        synchronized (this) {
+            var tree = trees.get(itemId);
+            return tree == null || tree.findOverlap(start, end) == null;
+        }
+    }
+
+    /**
+     * Интервал бронирования освобождается после коммита, когда оно перестает быть действующим
+     */
+    public void release(Booking booking) {
+        if (enabled) {
+            afterCommit(() -> remove(booking.getItem().getId(), booking));
+        }
+    }
+
+    /**
+     * Метод возвращает занятые дни вещи на отрезке [from, to], бит i соответствует дню from + i.
+     * День занят, если его затрагивает хотя бы одно действующее бронирование
+     */
+    public BitSet findBusyDays(long itemId, LocalDate from, LocalDate to) {
+        if (!enabled) {
+            var bitmap = new DayBitmap();
+            bookingRepository.findAllIntervalsByItemIdAndStatusIn(itemId, ACTIVE, to.plusDays(1).atStartOfDay(),
+                    from.atStartOfDay()).forEach(view -> bitmap.set(view.getStart(), view.getEnd()));
+            return bitmap.get(from, to);
+        }
+        synchronized (this) {
+            var bitmap = days.get(itemId);
+            return bitmap == null ? new BitSet() : bitmap.get(from, to);
+        }
+    }
+
+    /**
+     * Метод вытесняет интервалы, закончившиеся до начала дня now, вместе с их днями в битовых картах.
+     * Бронирование, закончившееся сегодня, остается до завтра, чтобы сегодняшний день календаря
+     * совпадал с ответом базы. Интервалы берутся из очереди по концу, поэтому стоимость зависит
+     * только от числа вытесненных
+     */
+    public void evictEnded(LocalDateTime now) {
+        if (!enabled) {
+            return;
+        }
+        var today = now.toLocalDate().atStartOfDay();
+        int evicted = 0;
+        synchronized (this) {
+            while (!endings.isEmpty() && !endings.first().end.isAfter(today)) {
+                var ending = endings.pollFirst();
+                remove(ending.itemId, ending.id, ending.start, ending.end);
+                evicted++;
+            }
+        }
+        log.debug("Booking interval index evicted {} ended bookings", evicted);
+    }
+
+    /**
+     * Бронирования и вещи удаляются из базы каскадно вместе с пользователем
+     */
+    public void removeByUser(long userId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (this) {
+                owners.entrySet().removeIf(entry -> {
+                    if (entry.getValue() == userId) {
+                        var itemId = entry.getKey();
+                        trees.remove(itemId).forEach(interval -> endings.remove(new Ending(itemId, interval.id,
+                                interval.start, interval.end)));
+                        days.remove(itemId);
+                        return true;
+                    }
+                    return false;
+                });
+                Map<Long, List<IntervalTree.Interval>> removed = new HashMap<>();
+                trees.forEach((itemId, tree) -> tree.forEach(interval -> {
+                    if (interval.bookerId == userId) {
+                        removed.computeIfAbsent(itemId, id -> new ArrayList<>()).add(interval);
+                    }
+                }));
+                removed.forEach((itemId, intervals) -> intervals.forEach(interval ->
+                        remove(itemId, interval.id, interval.start, interval.end)));
+            }
+        });
+    }
+
+    private void insert(Long itemId, Long ownerId, long id, LocalDateTime start, LocalDateTime end, long bookerId) {
+        trees.computeIfAbsent(itemId, key -> new IntervalTree()).insert(id, start, end, bookerId);
+        days.computeIfAbsent(itemId, key -> new DayBitmap()).set(start, end);
+        owners.put(itemId, ownerId);
+        endings.add(new Ending(itemId, id, start, end));
+    }
+
+    private synchronized void remove(Long itemId, Booking booking) {
+        remove(itemId, booking.getId(), booking.getStart(), booking.getEnd());
+    }
+
+    /**
+     * Дни удаленного интервала очищаются и заново отмечаются оставшимися интервалами,
+     * которые затрагивают те же дни
+     */
+    private void remove(Long itemId, long id, LocalDateTime start, LocalDateTime end) {
+        var tree = trees.get(itemId);
+        if (tree == null || !tree.remove(id, start)) {
+            return;
+        }
+        endings.remove(new Ending(itemId, id, start, end));
+        if (tree.size() == 0) {
+            trees.remove(itemId);
+            days.remove(itemId);
+            owners.remove(itemId);
+            return;
+        }
+        var bitmap = days.get(itemId);
+        var dayStart = start.toLocalDate().atStartOfDay();
+        var dayEnd = LocalDate.ofEpochDay(DayBitmap.lastDay(end) + 1).atStartOfDay();
+        bitmap.clear(start, end);
+        tree.forEachOverlap(dayStart, dayEnd, interval -> bitmap.set(interval.start, interval.end));
+    }
+
+    private static final class Ending {
+        private final Long itemId;
+        private final long id;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        private Ending(Long itemId, long id, LocalDateTime start, LocalDateTime end) {
+            this.itemId = itemId;
+            this.id = id;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static NotAvailableException overlap(Long itemId) {
+        return new NotAvailableException("Item with id=" + itemId + " is already booked for this period");
+    }
+
+    private static void onRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.shareit.booking.schedule;
+
+import java.time.LocalDateTime;
+
+/**
+ * Узкая проекция бронирования для построения индекса интервалов
+ */
+public interface BookingIntervalView {
+    Long getId();
+
+    Long getItemId();
+
+    Long getOwnerId();
+
+    Long getBookerId();
+
+    LocalDateTime getStart();
+
+    LocalDateTime getEnd();
+}
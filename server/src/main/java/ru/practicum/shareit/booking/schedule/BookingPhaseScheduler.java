@@ -0,0 +1,230 @@
+package ru.practicum.shareit.booking.schedule;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Phase;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Планировщик, который переводит колонку phase бронирований в CURRENT в момент начала
+ * и в PAST в момент окончания. Переходы ближайшего горизонта лежат в колесе таймеров,
+ * горизонт перезагружается из базы по мере продвижения времени. При старте фазы, пропущенные
+ * за время простоя, досчитываются двумя запросами, поэтому перезапуск ничего не теряет.
+ * Перезагрузка горизонта повторяет это восстановление и перечитывает окно с прошлой загрузки,
+ * поэтому бронирования, созданные на другом экземпляре, переходят в новую фазу не позже чем
+ * через половину горизонта, даже если тот экземпляр остановился.
+ * Обновления идемпотентны, планировщик может работать на каждом экземпляре сервера.
+ * Те же переходы применяются к проекции бронирований владельца, а начало бронирования
+ * пересчитывает указатели на последнее и следующее бронирование вещи. Окончание бронирований
+ * вытесняет их интервалы из BookingIntervalIndex
+ */
+@Component
+@Slf4j
+public class BookingPhaseScheduler {
+    private static final int WHEEL_SIZE = 64;
+    private static final Set<Phase> BEFORE_CURRENT = EnumSet.of(Phase.FUTURE);
+    private static final Set<Phase> BEFORE_PAST = EnumSet.of(Phase.FUTURE, Phase.CURRENT);
+
+    private final BookingRepository bookingRepository;
+    private final OwnerBookingViewRepository ownerBookingViewRepository;
+    private final ItemBookingPointers itemBookingPointers;
+    private final BookingIntervalIndex intervalIndex;
+    private final long tickMillis;
+    private final Duration horizon;
+    private final boolean enabled;
+
+    private TimingWheel<Transition> wheel;
+    private LocalDateTime loadedUntil;
+    private LocalDateTime recoveredAt;
+    private final List<Transition> due = new ArrayList<>();
+    private ScheduledExecutorService executor;
+
+    public BookingPhaseScheduler(BookingRepository bookingRepository,
+                                 OwnerBookingViewRepository ownerBookingViewRepository,
+                                 ItemBookingPointers itemBookingPointers,
+                                 BookingIntervalIndex intervalIndex,
+                                 @Value("${shareit.booking.phase-scheduler.tick-ms:1000}") long tickMillis,
+                                 @Value("${shareit.booking.phase-scheduler.horizon-hours:24}") long horizonHours,
+                                 @Value("${shareit.booking.phase-scheduler.enabled:true}") boolean enabled) {
+        this.bookingRepository = bookingRepository;
+        this.ownerBookingViewRepository = ownerBookingViewRepository;
+        this.itemBookingPointers = itemBookingPointers;
+        this.intervalIndex = intervalIndex;
+        this.tickMillis = tickMillis;
+        this.horizon = Duration.ofHours(horizonHours);
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Booking phase scheduler is disabled");
+            return;
+        }
+        recover(LocalDateTime.now());
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "booking-phase-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                tick(LocalDateTime.now());
+            } catch (RuntimeException e) {
+                log.error("Booking phase scheduler tick failed", e);
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Метод заново загружает колесо на горизонт вперед и досчитывает пропущенные переходы.
+     * Окно загрузки начинается с прошлого восстановления: переходы, которые уже наступили, но не попали
+     * в колесо (бронирование создано на другом экземпляре), выполняются на ближайшем тике вместе
+     * с пересчетом указателей вещей. Переходы до прошлого восстановления и за время простоя
+     * досчитываются двумя запросами после загрузки, иначе загрузка их бы уже не увидела
+     */
+    public synchronized void recover(LocalDateTime now) {
+        wheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, toMillis(now));
+        loadedUntil = recoveredAt != null && recoveredAt.isBefore(now) ? recoveredAt : now;
+        load(now.plus(horizon));
+        recoveredAt = now;
+        var ended = bookingRepository.updatePhaseOfEnded(now);
+        var started = bookingRepository.updatePhaseOfStarted(now);
+        ownerBookingViewRepository.updatePhaseOfEnded(now);
+        ownerBookingViewRepository.updatePhaseOfStarted(now);
+        intervalIndex.evictEnded(now);
+        log.info("Booking phases recovered: {} ended, {} started, {} transitions due", ended, started, due.size());
+    }
+
+    /**
+     * Метод продвигает колесо до момента now и записывает наступившие переходы в базу
+     */
+    public void tick(LocalDateTime now) {
+        List<Transition> transitions;
+        synchronized (this) {
+            if (wheel == null) {
+                return;
+            }
+            wheel.advance(toMillis(now), due::add);
+            if (Duration.between(now, loadedUntil).compareTo(horizon.dividedBy(2)) < 0) {
+                recover(now);
+            }
+            if (due.isEmpty()) {
+                return;
+            }
+            transitions = new ArrayList<>(due);
+            due.clear();
+        }
+        apply(transitions, now);
+    }
+
+    /**
+     * Новое бронирование ставится в колесо после коммита, если его переходы попадают в загруженный горизонт.
+     * Переходы за горизонтом загрузятся из базы позже
+     */
+    public void schedule(Booking booking) {
+        if (!enabled) {
+            return;
+        }
+        Runnable action = () -> {
+            synchronized (this) {
+                if (wheel != null) {
+                    add(booking.getId(), booking.getStart(), booking.getEnd());
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void load(LocalDateTime until) {
+        var views = bookingRepository.findAllPhaseTransitions(loadedUntil, until);
+        loadedUntil = until;
+        views.forEach(view -> add(view.getId(), view.getStart(), view.getEnd()));
+    }
+
+    private void add(Long id, LocalDateTime start, LocalDateTime end) {
+        if (!start.isAfter(loadedUntil)) {
+            schedule(new Transition(id, Phase.CURRENT), start);
+        }
+        if (!end.isAfter(loadedUntil)) {
+            schedule(new Transition(id, Phase.PAST), end);
+        }
+    }
+
+    /**
+     * Колесо срабатывает в начале тика, поэтому момент перехода округляется вверх до границы тика,
+     * иначе фаза менялась бы раньше времени
+     */
+    private void schedule(Transition transition, LocalDateTime at) {
+        if (!wheel.add(transition, toMillis(at) + tickMillis - 1)) {
+            due.add(transition);
+        }
+    }
+
+    /**
+     * Переходы пишутся пакетами по фазе, CURRENT раньше PAST, чтобы короткое бронирование
+     * не вернулось из PAST в CURRENT
+     */
+    private void apply(List<Transition> transitions, LocalDateTime now) {
+        var current = new HashSet<Long>();
+        var past = new HashSet<Long>();
+        transitions.forEach(transition -> (transition.phase == Phase.CURRENT ? current : past)
+                .add(transition.bookingId));
+        if (!current.isEmpty()) {
+            bookingRepository.updatePhase(current, BEFORE_CURRENT, Phase.CURRENT);
+            ownerBookingViewRepository.updatePhase(current, BEFORE_CURRENT, Phase.CURRENT);
+            itemBookingPointers.onStarted(current, now);
+        }
+        if (!past.isEmpty()) {
+            bookingRepository.updatePhase(past, BEFORE_PAST, Phase.PAST);
+            ownerBookingViewRepository.updatePhase(past, BEFORE_PAST, Phase.PAST);
+            intervalIndex.evictEnded(now);
+        }
+        log.debug("Booking phases updated: {} started, {} ended", current.size(), past.size());
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static final class Transition {
+        private final long bookingId;
+        private final Phase phase;
+
+        private Transition(long bookingId, Phase phase) {
+            this.bookingId = bookingId;
+            this.phase = phase;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.shareit.booking.schedule;
+
+import java.time.LocalDateTime;
+
+/**
+ * Узкая проекция бронирования для планирования переходов фаз
+ */
+public interface BookingPhaseView {
+    Long getId();
+
+    LocalDateTime getStart();
+
+    LocalDateTime getEnd();
+}
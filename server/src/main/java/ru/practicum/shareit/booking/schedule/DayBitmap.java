@@ -0,0 +1,79 @@
+package ru.practicum.shareit.booking.schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Разреженная битовая карта занятых дней вещи. Дни хранятся словами по 64 дня,
+ * ключ слова - номер дня от эпохи, деленный на 64, поэтому пустые месяцы и годы не занимают памяти.
+ * Не потокобезопасно, синхронизация лежит на BookingIntervalIndex
+ */
+class DayBitmap {
+    private final TreeMap<Long, Long> words = new TreeMap<>();
+
+    boolean isEmpty() {
+        return words.isEmpty();
+    }
+
+    /**
+     * Метод отмечает дни, которые затрагивает полуинтервал [start, end)
+     */
+    void set(LocalDateTime start, LocalDateTime end) {
+        apply(firstDay(start), lastDay(end), true);
+    }
+
+    void clear(LocalDateTime start, LocalDateTime end) {
+        apply(firstDay(start), lastDay(end), false);
+    }
+
+    /**
+     * Метод возвращает занятые дни отрезка [from, to], бит i соответствует дню from + i
+     */
+    BitSet get(LocalDate from, LocalDate to) {
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        var result = new BitSet((int) (last - first + 1));
+        for (Map.Entry<Long, Long> entry : words.subMap(first >> 6, true, last >> 6, true).entrySet()) {
+            long base = entry.getKey() << 6;
+            long word = entry.getValue();
+            while (word != 0) {
+                long day = base + Long.numberOfTrailingZeros(word);
+                if (day >= first && day <= last) {
+                    result.set((int) (day - first));
+                }
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    private void apply(long first, long last, boolean value) {
+        for (long day = first; day <= last; ) {
+            long key = day >> 6;
+            long to = Math.min(last, (key << 6) + 63);
+            long mask = -1L >>> (63 - (to - day)) << (day & 63);
+            long word = words.getOrDefault(key, 0L);
+            word = value ? word | mask : word & ~mask;
+            if (word == 0) {
+                words.remove(key);
+            } else {
+                words.put(key, word);
+            }
+            day = to + 1;
+        }
+    }
+
+    static long firstDay(LocalDateTime start) {
+        return start.toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Конец полуинтервала в полночь не занимает следующий день
+     */
+    static long lastDay(LocalDateTime end) {
+        return end.minusNanos(1).toLocalDate().toEpochDay();
+    }
+}
@@ -0,0 +1,223 @@
+package ru.practicum.shareit.booking.schedule;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Дополненное AVL-дерево полуинтервалов [start, end), упорядоченных по (start, id).
+ * Каждый узел хранит максимальный конец в своем поддереве, что позволяет найти пересечение
+ * за O(log n): поддерево пропускается, если его максимальный конец не правее начала запроса.
+ * Не потокобезопасно, синхронизация лежит на BookingIntervalIndex
+ */
+class IntervalTree {
+    private Node root;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void insert(long id, LocalDateTime start, LocalDateTime end, long bookerId) {
+        root = insert(root, new Node(id, start, end, bookerId));
+        size++;
+    }
+
+    boolean remove(long id, LocalDateTime start) {
+        int before = size;
+        root = remove(root, id, start);
+        return size < before;
+    }
+
+    /**
+     * Метод возвращает id любого интервала, пересекающегося с [start, end), или null
+     */
+    Long findOverlap(LocalDateTime start, LocalDateTime end) {
+        var node = root;
+        while (node != null) {
+            if (node.start.isBefore(end) && start.isBefore(node.end)) {
+                return node.id;
+            }
+            if (node.left != null && node.left.maxEnd.isAfter(start)) {
+                node = node.left;
+            } else if (node.start.isBefore(end)) {
+                node = node.right;
+            } else {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    void forEach(Consumer<Interval> action) {
+        forEach(root, action);
+    }
+
+    /**
+     * Метод обходит все интервалы, пересекающиеся с [start, end), в порядке начала
+     */
+    void forEachOverlap(LocalDateTime start, LocalDateTime end, Consumer<Interval> action) {
+        forEachOverlap(root, start, end, action);
+    }
+
+    private static void forEachOverlap(Node node, LocalDateTime start, LocalDateTime end,
+                                       Consumer<Interval> action) {
+        if (node == null || !node.maxEnd.isAfter(start)) {
+            return;
+        }
+        forEachOverlap(node.left, start, end, action);
+        if (!node.start.isBefore(end)) {
+            return;
+        }
+        if (start.isBefore(node.end)) {
+            action.accept(new Interval(node.id, node.start, node.end, node.bookerId));
+        }
+        forEachOverlap(node.right, start, end, action);
+    }
+
+    private static void forEach(Node node, Consumer<Interval> action) {
+        if (node == null) {
+            return;
+        }
+        forEach(node.left, action);
+        action.accept(new Interval(node.id, node.start, node.end, node.bookerId));
+        forEach(node.right, action);
+    }
+
+    private static int compare(LocalDateTime start, long id, Node node) {
+        int result = start.compareTo(node.start);
+        return result != 0 ? result : Long.compare(id, node.id);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return balance(node);
+    }
+
+    private Node remove(Node node, long id, LocalDateTime start) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, id, start);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, id, start);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            var min = node.right;
+            while (min.left != null) {
+                min = min.left;
+            }
+            min.right = removeMin(node.right);
+            min.left = node.left;
+            node = min;
+        }
+        return balance(node);
+    }
+
+    private static Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        var left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        var right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        var maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.right.maxEnd;
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    static final class Interval {
+        final long id;
+        final LocalDateTime start;
+        final LocalDateTime end;
+        final long bookerId;
+
+        private Interval(long id, LocalDateTime start, LocalDateTime end, long bookerId) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.bookerId = bookerId;
+        }
+    }
+
+    private static final class Node {
+        private final long id;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final long bookerId;
+        private LocalDateTime maxEnd;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        private Node(long id, LocalDateTime start, LocalDateTime end, long bookerId) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.bookerId = bookerId;
+            this.maxEnd = end;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ru.practicum.shareit.booking.schedule;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.cache.ItemDetailCache;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Поддержка колонок items.last_booking_id и items.next_booking_id, из которых владелец
+ * читает последнее и следующее бронирование вещи. Указатели пересчитываются одним запросом
+ * для затронутых вещей при создании бронирования и смене статуса, а с течением времени -
+ * по началу бронирований из BookingPhaseScheduler. Проверка согласованности при старте и
+ * по расписанию проходит таблицу вещей порциями и исправляет расхождения
+ */
+@Component
+@Slf4j
+public class ItemBookingPointers {
+    private final ItemRepository itemRepository;
+    private final BookingRepository bookingRepository;
+    private final ItemDetailCache detailCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long checkIntervalMinutes;
+    private ScheduledExecutorService executor;
+
+    public ItemBookingPointers(ItemRepository itemRepository,
+                               BookingRepository bookingRepository,
+                               ItemDetailCache detailCache,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${shareit.item.booking-pointers.check-batch-size:1000}") int batchSize,
+                               @Value("${shareit.item.booking-pointers.check-interval-minutes:60}")
+                               long checkIntervalMinutes) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Check batch size must be positive");
+        }
+        this.itemRepository = itemRepository;
+        this.bookingRepository = bookingRepository;
+        this.detailCache = detailCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.checkIntervalMinutes = checkIntervalMinutes;
+    }
+
+    /**
+     * При старте указатели сверяются сразу: за время простоя могли начаться бронирования.
+     * Первая проверка проходит всю таблицу вещей, поэтому выполняется в потоке проверок и не задерживает запуск
+     */
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "item-booking-pointers-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (checkIntervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::checkNow, 0, checkIntervalMinutes, TimeUnit.MINUTES);
+        } else {
+            executor.execute(this::checkNow);
+            executor.shutdown();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Новое бронирование меняет указатели, только если оно уже началось
+     * или подтверждено и еще не началось
+     */
+    public void onCreated(Collection<Booking> bookings) {
+        var now = LocalDateTime.now();
+        refresh(bookings.stream()
+                .filter(booking -> booking.getStart().isBefore(now)
+                        || booking.getStatus() == Status.APPROVED && booking.getStart().isAfter(now))
+                .map(booking -> booking.getItem().getId())
+                .collect(Collectors.toSet()), now);
+    }
+
+    /**
+     * Последнее бронирование от статуса не зависит, поэтому пересчет нужен только для еще не начавшихся
+     */
+    public void onStatusChanged(Collection<Booking> bookings) {
+        var now = LocalDateTime.now();
+        refresh(bookings.stream()
+                .filter(booking -> booking.getStart().isAfter(now))
+                .map(booking -> booking.getItem().getId())
+                .collect(Collectors.toSet()), now);
+    }
+
+    /**
+     * Метод пересчитывает указатели вещей, бронирования которых только что начались
+     */
+    public void onStarted(Collection<Long> bookingIds, LocalDateTime now) {
+        if (!bookingIds.isEmpty()) {
+            refresh(Set.copyOf(bookingRepository.findItemIdsByIdIn(bookingIds)), now);
+        }
+    }
+
+    /**
+     * Метод сверяет указатели всех вещей с пересчитанными и исправляет расхождения.
+     * Каждая порция проверяется и исправляется в своей транзакции. Возвращает число исправленных вещей
+     */
+    public int check(LocalDateTime now) {
+        var maxId = itemRepository.findMaxId();
+        if (maxId == null) {
+            return 0;
+        }
+        int repaired = 0;
+        for (long fromId = 0; fromId < maxId; fromId += batchSize) {
+            var toId = Math.min(fromId + batchSize, maxId);
+            var from = fromId;
+            repaired += transactionTemplate.execute(status -> {
+                var stale = itemRepository.findAllWithStaleBookingPointers(from, toId, now);
+                if (!stale.isEmpty()) {
+                    itemRepository.refreshBookingPointers(stale, now);
+                    detailCache.invalidateBookings(stale);
+                }
+                return stale.size();
+            });
+        }
+        if (repaired > 0) {
+            log.warn("Item booking pointers repaired for {} items", repaired);
+        } else {
+            log.debug("Item booking pointers are consistent");
+        }
+        return repaired;
+    }
+
+    private void checkNow() {
+        try {
+            check(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.error("Item booking pointers check failed", e);
+        }
+    }
+
+    /**
+     * Вместе с указателями сбрасываются бронирования вещей в кэше карточек
+     */
+    private void refresh(Set<Long> itemIds, LocalDateTime now) {
+        if (!itemIds.isEmpty()) {
+            itemRepository.refreshBookingPointers(List.copyOf(itemIds), now);
+            detailCache.invalidateBookings(itemIds);
+        }
+    }
+}
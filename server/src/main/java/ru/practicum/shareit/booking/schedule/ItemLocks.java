@@ -0,0 +1,90 @@
+package ru.practicum.shareit.booking.schedule;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Полосатые блокировки вещей на время транзакции бронирования.
+ * Вещь попадает в одну из полос по id, поэтому бронирования одной вещи выполняются последовательно,
+ * а бронирования разных вещей почти всегда параллельно. Блокировка снимается по завершении транзакции.
+ * В PostgreSQL дополнительно берется транзакционная advisory-блокировка по id вещи,
+ * которая сериализует бронирования между несколькими экземплярами сервера
+ */
+@Component
+@Slf4j
+public class ItemLocks {
+    private final ReentrantLock[] stripes;
+    private final JdbcTemplate jdbcTemplate;
+    private boolean advisory;
+
+    public ItemLocks(@Value("${shareit.booking.lock-stripes:64}") int stripes, JdbcTemplate jdbcTemplate) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Lock stripes must be positive");
+        }
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        var product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        advisory = "PostgreSQL".equals(product);
+        log.info("Item locks: {} stripes, advisory locks {}", stripes.length, advisory ? "enabled" : "disabled");
+    }
+
+    /**
+     * Метод блокирует вещь до конца текущей транзакции
+     */
+    public void lock(long itemId) {
+        lockAll(List.of(itemId));
+    }
+
+    /**
+     * Метод блокирует несколько вещей до конца текущей транзакции.
+     * Полосы и advisory-блокировки берутся в порядке возрастания, чтобы пакетные операции не взаимоблокировались
+     */
+    public void lockAll(Collection<Long> itemIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Item lock requires an active transaction");
+        }
+        var indexes = new TreeSet<Integer>();
+        itemIds.forEach(itemId -> indexes.add(Math.floorMod(Long.hashCode(itemId), stripes.length)));
+        for (int index : indexes) {
+            var lock = stripes[index];
+            lock.lock();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+        }
+        if (advisory) {
+            var sorted = new TreeSet<>(itemIds);
+            jdbcTemplate.execute((ConnectionCallback<Object>) connection -> {
+                try (var statement = connection.prepareStatement("select pg_advisory_xact_lock(?)")) {
+                    for (long itemId : sorted) {
+                        statement.setLong(1, itemId);
+                        statement.execute();
+                    }
+                }
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.shareit.booking.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров. Нижнее колесо делит время на wheelSize ячеек по tickMillis,
+ * задачи дальше его оборота уходят в колесо уровнем выше с ячейкой, равной обороту нижнего,
+ * и спускаются вниз, когда до них доходит время. Добавление и срабатывание стоят O(1)
+ * независимо от числа задач, продвижение - O(1) на тик.
+ * Не потокобезопасно, синхронизация лежит на вызывающей стороне
+ */
+public final class TimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long intervalMillis;
+    private final List<List<Entry<T>>> buckets;
+    private long currentTime;
+    private TimingWheel<T> overflow;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.intervalMillis = tickMillis * wheelSize;
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Метод планирует задачу на момент expirationMillis.
+     * Возвращает false, если момент уже наступил в пределах текущего тика и задачу надо выполнить сразу
+     */
+    public boolean add(T value, long expirationMillis) {
+        return add(new Entry<>(value, expirationMillis));
+    }
+
+    /**
+     * Метод продвигает колесо до момента nowMillis и передает наступившие задачи в expired
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        advanceTo(nowMillis, entry -> {
+            if (!add(entry)) {
+                expired.accept(entry.value);
+            }
+        });
+    }
+
+    private boolean add(Entry<T> entry) {
+        if (entry.expiration < currentTime + tickMillis) {
+            return false;
+        }
+        if (entry.expiration < currentTime + intervalMillis) {
+            buckets.get((int) Math.floorMod(entry.expiration / tickMillis, (long) wheelSize)).add(entry);
+            return true;
+        }
+        if (overflow == null) {
+            overflow = new TimingWheel<>(intervalMillis, wheelSize, currentTime);
+        }
+        return overflow.add(entry);
+    }
+
+    /**
+     * Задачи из наступившей ячейки заново раскладываются с нижнего колеса:
+     * либо срабатывают, либо попадают в более мелкую ячейку
+     */
+    private void advanceTo(long nowMillis, Consumer<Entry<T>> reinsert) {
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+            if (overflow != null) {
+                overflow.advanceTo(currentTime, reinsert);
+            }
+            var index = (int) Math.floorMod(currentTime / tickMillis, (long) wheelSize);
+            var bucket = buckets.get(index);
+            if (!bucket.isEmpty()) {
+                buckets.set(index, new ArrayList<>());
+                bucket.forEach(reinsert);
+            }
+        }
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final long expiration;
+
+        private Entry(T value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package ru.practicum.shareit.booking.service;
 
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingStatusUpdateDto;
+import ru.practicum.shareit.util.ExportFormat;
 
 import java.util.List;
 
@@ -9,9 +14,15 @@ public interface BookingService {
     @Transactional
     BookingDto create(BookingDto bookingDto, long userId);
 
+    @Transactional
+    List<BookingBatchResultDto> createAll(List<BookingDto> bookingDtos, long userId);
+
     @Transactional
     BookingDto updateStatus(long userId, Long bookingId, Boolean approved);
 
+    @Transactional
+    List<BookingBatchResultDto> updateStatuses(long userId, List<BookingStatusUpdateDto> updates);
+
     @Transactional(readOnly = true)
     BookingDto findById(Long bookingId, Long userId);
 
@@ -20,4 +31,16 @@ public interface BookingService {
 
     @Transactional(readOnly = true)
     List<BookingDto> findAllItemsByOwnerAndState(long userId, String state, int from, int size);
+
+    @Transactional(readOnly = true)
+    List<BookingDto> findByBookerAndStateAfter(long userId, String state, String after, int size);
+
+    @Transactional(readOnly = true)
+    List<BookingDto> findAllItemsByOwnerAndStateAfter(long userId, String state, String after, int size);
+
+    @Transactional(readOnly = true)
+    SseEmitter subscribe(long userId, Long lastEventId);
+
+    @Transactional(readOnly = true)
+    StreamingResponseBody exportAllByOwner(long userId, ExportFormat format);
 }
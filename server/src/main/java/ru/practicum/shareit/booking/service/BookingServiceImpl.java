@@ -2,33 +2,65 @@ package ru.practicum.shareit.booking.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.model.Phase;
 import ru.practicum.shareit.booking.model.State;
 import ru.practicum.shareit.booking.model.Status;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingStatusUpdateDto;
+import ru.practicum.shareit.booking.dto.BookingView;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
+import ru.practicum.shareit.booking.schedule.BookingPhaseScheduler;
+import ru.practicum.shareit.booking.schedule.ItemBookingPointers;
+import ru.practicum.shareit.booking.schedule.ItemLocks;
+import ru.practicum.shareit.booking.stream.BookingEventBroker;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotAvailableException;
 import ru.practicum.shareit.exception.NotExistException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.util.CursorExporter;
 import ru.practicum.shareit.util.EntityUtils;
+import ru.practicum.shareit.util.ExportFormat;
+import ru.practicum.shareit.util.OffsetPageRequest;
 
-import java.util.Comparator;
-import java.util.List;
-import java.util.Objects;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static ru.practicum.shareit.util.EntityUtils.stateBy;
-
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BookingServiceImpl implements BookingService {
+    private static final Sort BY_START_DESC = Sort.by(Sort.Order.desc("start"), Sort.Order.asc("id"));
+    /**
+     * Совпадает с hibernate.jdbc.batch_size, чтобы пакет статусов уходил в базу одним JDBC-пакетом
+     */
+    private static final int MAX_BATCH_SIZE = 100;
 
     private final BookingRepository bookingRepository;
+    private final ItemRepository itemRepository;
+    private final OwnerBookingViewRepository ownerBookingViewRepository;
+    private final BookingIntervalIndex intervalIndex;
+    private final ItemLocks itemLocks;
+    private final BookingPhaseScheduler phaseScheduler;
+    private final ItemBookingPointers itemBookingPointers;
+    private final BookingEventBroker eventBroker;
+    private final CursorExporter exporter;
     private final EntityUtils utils;
 
     @Override
@@ -36,7 +68,87 @@ public class BookingServiceImpl implements BookingService {
     public BookingDto create(BookingDto bookingDto, long userId) {
         var user = utils.getUserIfExists(userId);   //Возвращаем пользователя, если он существует
         var item = utils.getItemIfExists(bookingDto.getItemId());   //Возвращаем вещь, если она существует
+        validate(bookingDto, item, userId);
+
+        itemLocks.lock(item.getId());   //Бронирования одной вещи создаются последовательно до конца транзакции
+        var booking = bookingRepository.save(BookingMapper.toBooking(bookingDto, user, item));
+        intervalIndex.reserve(booking);    //Период не должен пересекаться с действующими бронированиями вещи
+        ownerBookingViewRepository.save(BookingMapper.toOwnerBookingView(booking));
+        phaseScheduler.schedule(booking);
+        itemBookingPointers.onCreated(List.of(booking));
+        log.info("Booking for user with id={} was created", userId);
+        return BookingMapper.toBookingDto(booking);
+    }
+
+    /**
+     * Метод создает пакет бронирований одного пользователя.
+     * Вещи с владельцами загружаются одним запросом и блокируются заранее, каждое бронирование
+     * проверяется по тем же правилам, что и одиночное, включая пересечения внутри пакета,
+     * а прошедшие проверку бронирования вставляются одним JDBC-пакетом. Ошибка элемента не прерывает остальные
+     */
+    @Override
+    @Transactional
+    public List<BookingBatchResultDto> createAll(List<BookingDto> bookingDtos, long userId) {
+        checkBatchSize(bookingDtos);
+        var user = utils.getUserIfExists(userId);
+        var items = itemRepository.findAllByIdIn(bookingDtos.stream()
+                        .map(BookingDto::getItemId)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        itemLocks.lockAll(items.keySet());
+
+        var now = LocalDateTime.now();
+        var results = new BookingBatchResultDto[bookingDtos.size()];
+        List<Booking> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        for (int i = 0; i < bookingDtos.size(); i++) {
+            var bookingDto = bookingDtos.get(i);
+            try {
+                var item = bookingDto.getItemId() == null ? null : items.get(bookingDto.getItemId());
+                if (item == null) {
+                    throw new NotExistException("Item with id=" + bookingDto.getItemId() + " not exists");
+                }
+                validate(bookingDto, item, userId);
+                if (bookingDto.getStart().isBefore(now)) {   //Для одиночного бронирования это проверяет шлюз
+                    throw new BadRequestException("Start date is in the past");
+                }
+                var booking = BookingMapper.toBooking(bookingDto, user, item);
+                booking.setId(null);
+                booking.setStatus(Status.WAITING);
+                var overlapsBatch = accepted.stream().anyMatch(other -> other.getItem().getId().equals(item.getId())
+                        && other.getStart().isBefore(booking.getEnd()) && booking.getStart().isBefore(other.getEnd()));
+                if (overlapsBatch || !intervalIndex.isFree(item.getId(), booking.getStart(), booking.getEnd())) {
+                    throw new NotAvailableException("Item with id=" + item.getId()
+                            + " is already booked for this period");
+                }
+                accepted.add(booking);
+                acceptedIndexes.add(i);
+            } catch (BadRequestException | NotExistException | NotAvailableException e) {
+                results[i] = BookingBatchResultDto.failed(i, null, e.getMessage());
+            }
+        }
+
+        bookingRepository.insertAll(accepted);
+        ownerBookingViewRepository.saveAll(accepted.stream()
+                .map(BookingMapper::toOwnerBookingView)
+                .collect(Collectors.toList()));
+        itemBookingPointers.onCreated(accepted);
+        for (int i = 0; i < accepted.size(); i++) {
+            var booking = accepted.get(i);
+            intervalIndex.reserve(booking);     //Вещи заблокированы и периоды проверены, резерв не упадет
+            phaseScheduler.schedule(booking);
+            results[acceptedIndexes.get(i)] = BookingBatchResultDto.ok(acceptedIndexes.get(i),
+                    BookingMapper.toBookingDto(booking));
+        }
+        log.info("{} of {} bookings for user with id={} were created", accepted.size(), bookingDtos.size(), userId);
+        return Arrays.asList(results);
+    }
 
+    /**
+     * Метод проверяет правила бронирования вещи пользователем
+     */
+    private static void validate(BookingDto bookingDto, Item item, long userId) {
         if (!item.getAvailable()) {     //Вещь должна быть доступна для бронирования
             throw new NotAvailableException("Item is not available");
         }
@@ -52,9 +164,6 @@ public class BookingServiceImpl implements BookingService {
         if (userId == item.getOwner().getId()) {    //Владелец не может забронировать свою вещь
             throw new NotExistException("Owner can't booked his own item");
         }
-
-        log.info("Booking for user with id={} was created", userId);
-        return BookingMapper.toBookingDto(bookingRepository.save(BookingMapper.toBooking(bookingDto, user, item)));
     }
 
     @Override
@@ -67,15 +176,105 @@ public class BookingServiceImpl implements BookingService {
         }
 
         var item = utils.getItemIfExists(booking.getItem().getId());    //Проверяем наличие вещи по id
+        changeStatus(booking, item, userId, approved);
+        ownerBookingViewRepository.updateStatus(List.of(bookingId), booking.getStatus());
+        itemBookingPointers.onStatusChanged(List.of(booking));
+        publishStatus(booking);
 
-        if (item.getOwner().getId() == userId) {    //Подтверждать бронирование может только владелец вещи
-            booking.setStatus(approved ? Status.APPROVED : Status.REJECTED);
-        } else {
+        log.info("Status for booking with id={} was updated", bookingId);
+        return BookingMapper.toBookingDto(bookingRepository.save(booking));
+    }
+
+    /**
+     * Метод подтверждает или отклоняет пакет бронирований владельца вещей.
+     * Бронирования вместе с вещами загружаются одним запросом, права проверяются в памяти,
+     * а новые статусы сбрасываются в базу одним пакетом. Ошибка одного элемента не прерывает остальные
+     */
+    @Override
+    @Transactional
+    public List<BookingBatchResultDto> updateStatuses(long userId, List<BookingStatusUpdateDto> updates) {
+        checkBatchSize(updates);
+        var bookings = bookingRepository.findAllByIdIn(updates.stream()
+                        .map(BookingStatusUpdateDto::getBookingId)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+        itemLocks.lockAll(bookings.values().stream()     //Вещи блокируются заранее в едином порядке
+                .map(Booking::getItem)
+                .filter(item -> item.getOwner().getId() == userId)
+                .map(Item::getId)
+                .collect(Collectors.toSet()));
+
+        List<BookingBatchResultDto> results = new ArrayList<>();
+        List<Booking> changed = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < updates.size(); i++) {
+            var update = updates.get(i);
+            var bookingId = update.getBookingId();
+            try {
+                if (bookingId == null || update.getApproved() == null) {
+                    throw new BadRequestException("Booking id and approved can't be a null");
+                }
+                if (!seen.add(bookingId)) {
+                    throw new BadRequestException("Booking with id=" + bookingId + " is repeated in batch");
+                }
+                var booking = bookings.get(bookingId);
+                if (booking == null) {
+                    throw new NotExistException("Booking with id=" + bookingId + " not exists");
+                }
+                if (booking.getStatus() == Status.APPROVED && update.getApproved()) {
+                    throw new BadRequestException("Booking is already approved");
+                }
+                changeStatus(booking, booking.getItem(), userId, update.getApproved());
+                changed.add(booking);
+                results.add(BookingBatchResultDto.ok(i, BookingMapper.toBookingDto(booking)));
+            } catch (BadRequestException | NotExistException | NotAvailableException e) {
+                results.add(BookingBatchResultDto.failed(i, bookingId, e.getMessage()));
+            }
+        }
+        bookingRepository.saveAll(changed);
+        bookingRepository.flush();
+        changed.stream()
+                .collect(Collectors.groupingBy(Booking::getStatus, Collectors.mapping(Booking::getId,
+                        Collectors.toList())))
+                .forEach((status, ids) -> ownerBookingViewRepository.updateStatus(ids, status));
+        itemBookingPointers.onStatusChanged(changed);
+        changed.forEach(this::publishStatus);
+        log.info("Statuses of {} bookings of {} were updated by user with id={}", changed.size(), updates.size(),
+                userId);
+        return results;
+    }
+
+    /**
+     * Метод меняет статус бронирования. Подтверждать и отклонять бронирование может только владелец вещи,
+     * статус меняется только после того, как период бронирования зарезервирован или освобожден
+     */
+    private void changeStatus(Booking booking, Item item, long userId, boolean approved) {
+        if (item.getOwner().getId() != userId) {
             throw new NotExistException("User with id=" + userId + " is not the owner");
         }
+        var wasActive = BookingIntervalIndex.ACTIVE.contains(booking.getStatus());
+        if (approved && !wasActive) {   //Отклоненное бронирование снова занимает период
+            itemLocks.lock(item.getId());
+            intervalIndex.reserve(booking);
+        } else if (!approved && wasActive) {
+            intervalIndex.release(booking);
+        }
+        booking.setStatus(approved ? Status.APPROVED : Status.REJECTED);
+    }
 
-        log.info("Status for booking with id={} was updated", bookingId);
-        return BookingMapper.toBookingDto(bookingRepository.save(booking));
+    /**
+     * Новый статус получают бронирующий и владелец вещи, подписанные на GET /bookings/stream
+     */
+    private void publishStatus(Booking booking) {
+        eventBroker.publish(BookingMapper.toBookingDto(booking),
+                List.of(booking.getBooker().getId(), booking.getItem().getOwner().getId()));
+    }
+
+    private static void checkBatchSize(List<?> batch) {
+        if (batch == null || batch.isEmpty() || batch.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("Batch size must be from 1 to " + MAX_BATCH_SIZE);
+        }
     }
 
     @Override
@@ -96,34 +295,169 @@ public class BookingServiceImpl implements BookingService {
     @Transactional(readOnly = true)
     public List<BookingDto> findByBookerAndState(long userId, String state, int from, int size) {
         utils.getUserIfExists(userId);
+        var bookingState = parseState(state);
+        var page = page(from, size);
         log.info("Get all bookings for booker with id={} and with state: {}", userId, state);
-        return pagination(from, size, findAllByState(bookingRepository.findAllByBookerId(userId), state));
+        List<BookingView> bookings;
+        switch (bookingState) {
+            case PAST:
+                bookings = bookingRepository.findAllByBookerIdAndPhase(userId, Phase.PAST, page);
+                break;
+            case FUTURE:
+                bookings = bookingRepository.findAllByBookerIdAndPhase(userId, Phase.FUTURE, page);
+                break;
+            case CURRENT:
+                bookings = bookingRepository.findAllByBookerIdAndPhase(userId, Phase.CURRENT, page);
+                break;
+            case WAITING:
+                bookings = bookingRepository.findAllByBookerIdAndStatus(userId, Status.WAITING, page);
+                break;
+            case REJECTED:
+                bookings = bookingRepository.findAllByBookerIdAndStatus(userId, Status.REJECTED, page);
+                break;
+            default:
+                bookings = bookingRepository.findAllByBookerId(userId, page);
+        }
+        return toBookingDto(bookings);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<BookingDto> findAllItemsByOwnerAndState(long userId, String state, int from, int size) {
         utils.getUserIfExists(userId);
+        var bookingState = parseState(state);
+        var page = page(from, size);
         log.info("Get all bookings for owner with id={} and with state: {}", userId, state);
-        return pagination(from, size, findAllByState(bookingRepository.findAllByItem_OwnerId(userId), state));
+        List<BookingView> bookings;
+        switch (bookingState) {
+            case PAST:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndPhase(userId, Phase.PAST, page);
+                break;
+            case FUTURE:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndPhase(userId, Phase.FUTURE, page);
+                break;
+            case CURRENT:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndPhase(userId, Phase.CURRENT, page);
+                break;
+            case WAITING:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndStatus(userId, Status.WAITING, page);
+                break;
+            case REJECTED:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndStatus(userId, Status.REJECTED, page);
+                break;
+            default:
+                bookings = ownerBookingViewRepository.findAllByOwnerId(userId, page);
+        }
+        return toBookingDto(bookings);
+    }
+
+    /**
+     * Следующая страница бронирований после курсора after, стоимость не зависит от глубины страницы
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingDto> findByBookerAndStateAfter(long userId, String state, String after, int size) {
+        utils.getUserIfExists(userId);
+        var bookingState = parseState(state);
+        var cursor = BookingCursor.decode(after);
+        log.info("Get bookings for booker with id={} and with state: {} after {}", userId, state, after);
+        var start = cursor.getStart();
+        var id = cursor.getId();
+        var page = limit(size);
+        List<BookingView> bookings;
+        switch (bookingState) {
+            case PAST:
+                bookings = bookingRepository.findAllByBookerIdAndPhaseAfter(userId, Phase.PAST, start, id, page);
+                break;
+            case FUTURE:
+                bookings = bookingRepository.findAllByBookerIdAndPhaseAfter(userId, Phase.FUTURE, start, id, page);
+                break;
+            case CURRENT:
+                bookings = bookingRepository.findAllByBookerIdAndPhaseAfter(userId, Phase.CURRENT, start, id, page);
+                break;
+            case WAITING:
+                bookings = bookingRepository.findAllByBookerIdAndStatusAfter(userId, Status.WAITING, start, id, page);
+                break;
+            case REJECTED:
+                bookings = bookingRepository.findAllByBookerIdAndStatusAfter(userId, Status.REJECTED, start, id, page);
+                break;
+            default:
+                bookings = bookingRepository.findAllByBookerIdAfter(userId, start, id, page);
+        }
+        return toBookingDto(bookings);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingDto> findAllItemsByOwnerAndStateAfter(long userId, String state, String after, int size) {
+        utils.getUserIfExists(userId);
+        var bookingState = parseState(state);
+        var cursor = BookingCursor.decode(after);
+        log.info("Get bookings for owner with id={} and with state: {} after {}", userId, state, after);
+        var start = cursor.getStart();
+        var id = cursor.getId();
+        var page = limit(size);
+        List<BookingView> bookings;
+        switch (bookingState) {
+            case PAST:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndPhaseAfter(userId, Phase.PAST, start, id, page);
+                break;
+            case FUTURE:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndPhaseAfter(userId, Phase.FUTURE, start, id, page);
+                break;
+            case CURRENT:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndPhaseAfter(userId, Phase.CURRENT, start, id, page);
+                break;
+            case WAITING:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndStatusAfter(userId, Status.WAITING, start, id, page);
+                break;
+            case REJECTED:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAndStatusAfter(userId, Status.REJECTED, start, id, page);
+                break;
+            default:
+                bookings = ownerBookingViewRepository.findAllByOwnerIdAfter(userId, start, id, page);
+        }
+        return toBookingDto(bookings);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SseEmitter subscribe(long userId, Long lastEventId) {
+        utils.getUserIfExists(userId);
+        log.info("Subscribe user with id={} to booking events after {}", userId, lastEventId);
+        return eventBroker.subscribe(userId, lastEventId);
     }
 
-    private List<BookingDto> findAllByState(List<Booking> bookings, String state) {
+    @Override
+    @Transactional(readOnly = true)
+    public StreamingResponseBody exportAllByOwner(long userId, ExportFormat format) {
+        utils.getUserIfExists(userId);
+        log.info("Export bookings of owner with id={} as {}", userId, format);
+        return exporter.export(OwnerBookingViewRepository.EXPORT_BY_OWNER, format, userId);
+    }
+
+    private static Pageable limit(int size) {
+        if (size <= 0) {
+            throw new BadRequestException("Bad param size for request");
+        }
+        return PageRequest.of(0, size);
+    }
+
+    private static List<BookingDto> toBookingDto(List<BookingView> bookings) {
         return bookings.stream()
-                .filter(stateBy(parseState(state)))
-                .sorted(Comparator.comparing(Booking::getStart).reversed())
                 .map(BookingMapper::toBookingDto)
                 .collect(Collectors.toList());
     }
 
-    private List<BookingDto> pagination(int from, int size, List<BookingDto> list) {
+    /**
+     * Метод строит страницу по параметрам from и size. Бронирования отдаются от поздних к ранним,
+     * при одинаковом начале - в порядке создания
+     */
+    private static Pageable page(int from, int size) {
         if (from < 0 || size <= 0) {
             throw new BadRequestException("Bad params from or size for request");
         }
-        return list.stream()
-                .skip(from)
-                .limit(size)
-                .collect(Collectors.toList());
+        return OffsetPageRequest.of(from, size, BY_START_DESC);
     }
 
     /**
@@ -0,0 +1,294 @@
+package ru.practicum.shareit.booking.stream;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingDto;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Рассылка изменений статуса бронирований подписчикам GET /bookings/stream.
+ * У каждого подписчика своя ограниченная очередь, которую разбирает не больше одного потока пула.
+ * Запись в сокет блокирующая, поэтому пул не ограничен сверху: клиент, который перестал читать,
+ * занимает только свой поток до таймаута записи контейнера и не задерживает ни сервис бронирований,
+ * ни других подписчиков. Heartbeat тоже ставится в очередь каждого подписчика.
+ * Подписчик, очередь которого переполнилась, отключается и при переподключении
+ * дочитывает пропущенное по Last-Event-ID из общей истории последних событий.
+ * Если нужные события уже вытеснены из истории или сервер перезапускался,
+ * клиент получает событие reset и перечитывает бронирования обычным запросом.
+ * История и подписки локальны для экземпляра сервера
+ */
+@Component
+@Slf4j
+public class BookingEventBroker implements MeterBinder {
+    static final String STATUS_EVENT = "status";
+    static final String RESET_EVENT = "reset";
+
+    private final int bufferSize;
+    private final int historySize;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Номера событий начинаются с момента запуска, чтобы номер от прежнего запуска сервера
+     * был меньше любого нового и приводил к reset, а не к молчаливой потере событий
+     */
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Deque<Event> history = new ArrayDeque<>();
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public BookingEventBroker(@Value("${shareit.booking.stream.buffer-size:64}") int bufferSize,
+                              @Value("${shareit.booking.stream.history-size:1024}") int historySize,
+                              @Value("${shareit.booking.stream.timeout-ms:1800000}") long timeoutMillis,
+                              @Value("${shareit.booking.stream.heartbeat-ms:15000}") long heartbeatMillis,
+                              @Value("${shareit.booking.stream.threads:2}") int threads) {
+        if (bufferSize <= 0 || historySize < 0 || threads <= 0) {
+            throw new IllegalArgumentException("Stream buffer size and threads must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.historySize = historySize;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(threads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "booking-event-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "booking-event-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (heartbeatMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        subscribers.clear();
+    }
+
+    /**
+     * Метод подписывает пользователя на события его бронирований и вещей.
+     * События после lastEventId, оставшиеся в истории, отправляются первыми
+     */
+    public SseEmitter subscribe(long userId, @Nullable Long lastEventId) {
+        var subscriber = new Subscriber(userId, createEmitter(timeoutMillis));
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+        synchronized (this) {   //Подписка и чтение истории атомарны относительно публикации
+            if (lastEventId != null) {
+                replay(subscriber, lastEventId);
+            }
+            subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        subscriber.signal();
+        log.debug("User with id={} subscribed to booking events after {}", userId, lastEventId);
+        return subscriber.emitter;
+    }
+
+    /**
+     * Метод публикует бронирование с новым статусом для перечисленных пользователей.
+     * В транзакции событие уходит только после коммита
+     */
+    public void publish(BookingDto booking, Collection<Long> userIds) {
+        var recipients = Set.copyOf(userIds);
+        Runnable action = () -> send(booking, recipients);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream()
+                .mapToInt(Set::size)
+                .sum();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("shareit.booking.stream.subscribers", this, BookingEventBroker::getSubscriberCount)
+                .description("Open booking event streams")
+                .register(registry);
+        FunctionCounter.builder("shareit.booking.stream.dropped", dropped, AtomicLong::get)
+                .description("Booking event streams closed because the subscriber buffer overflowed")
+                .register(registry);
+    }
+
+    private synchronized void send(BookingDto booking, Set<Long> recipients) {
+        var event = new Event(sequence.incrementAndGet(), recipients, booking);
+        if (historySize > 0) {
+            history.addLast(event);
+            if (history.size() > historySize) {
+                history.removeFirst();
+            }
+        }
+        for (var userId : recipients) {
+            for (var subscriber : subscribers.getOrDefault(userId, Set.of())) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Если события после lastEventId уже вытеснены или пропущенного больше, чем помещается в очередь,
+     * вместо них отправляется reset с номером последнего события
+     */
+    private void replay(Subscriber subscriber, long lastEventId) {
+        var last = sequence.get();
+        if (lastEventId >= last) {
+            return;
+        }
+        var oldest = history.isEmpty() ? last + 1 : history.getFirst().id;
+        List<Event> missed = new ArrayList<>();
+        if (lastEventId + 1 >= oldest) {
+            for (var event : history) {
+                if (event.id > lastEventId && event.recipients.contains(subscriber.userId)) {
+                    missed.add(event);
+                }
+            }
+        }
+        if (lastEventId + 1 < oldest || missed.size() > bufferSize) {
+            subscriber.offer(new Event(last, Set.of(subscriber.userId), null));
+        } else {
+            missed.forEach(subscriber::offer);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Отдельный метод позволяет подменить соединение подписчика в тестах
+     */
+    protected SseEmitter createEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    /**
+     * Heartbeat только помечает подписчиков, сама отправка идет в потоке подписчика вместе с событиями
+     */
+    private void heartbeat() {
+        subscribers.values().forEach(set -> set.forEach(Subscriber::beat));
+    }
+
+    private static final class Event {
+        private final long id;
+        private final Set<Long> recipients;
+        private final BookingDto booking;
+
+        private Event(long id, Set<Long> recipients, @Nullable BookingDto booking) {
+            this.id = id;
+            this.recipients = recipients;
+            this.booking = booking;
+        }
+    }
+
+    private final class Subscriber {
+        private final long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean heartbeat = new AtomicBoolean();
+
+        private Subscriber(long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        /**
+         * Переполнение очереди означает, что клиент не успевает читать: он отключается
+         * и дочитает пропущенное по Last-Event-ID после переподключения
+         */
+        private void offer(Event event) {
+            if (!queue.offer(event)) {
+                dropped.incrementAndGet();
+                log.warn("Booking event buffer of user with id={} overflowed, closing stream", userId);
+                remove(this);
+                queue.clear();
+                executor.execute(emitter::complete);
+                return;
+            }
+            signal();
+        }
+
+        private void beat() {
+            heartbeat.set(true);
+            signal();
+        }
+
+        private void signal() {
+            if ((!queue.isEmpty() || heartbeat.get()) && draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                if (heartbeat.getAndSet(false) && queue.isEmpty()) {   //События сами поддерживают соединение
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+                Event event;
+                while ((event = queue.poll()) != null) {
+                    var builder = SseEmitter.event().id(String.valueOf(event.id));
+                    if (event.booking == null) {
+                        builder.name(RESET_EVENT).data("");
+                    } else {
+                        builder.name(STATUS_EVENT).data(event.booking, MediaType.APPLICATION_JSON);
+                    }
+                    emitter.send(builder);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close(e);
+            } finally {
+                draining.set(false);
+            }
+            signal();   //Событие могло прийти между последним poll и сбросом флага
+        }
+
+        private void close(Exception e) {
+            log.debug("Booking event stream of user with id={} closed: {}", userId, e.getMessage());
+            remove(this);
+            queue.clear();
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -47,6 +47,13 @@ public class CustomExceptionHandler {
         return new ResponseError(exception.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler({TooManyRequestsException.class})
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ResponseError tooManyRequestsHandle(Exception exception) {
+        log.warn(exception.getMessage());
+        return new ResponseError(exception.getMessage(), HttpStatus.TOO_MANY_REQUESTS);
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ResponseError internalServerErrorHandle(Throwable exception) {
@@ -0,0 +1,299 @@
+package ru.practicum.shareit.item.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.comment.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Кэш карточки вещи для GET /items/{id} из двух слоев. Общий слой хранит вещь с отзывами
+ * и id владельца и не зависит от того, кто смотрит. Слой бронирований хранит последнее и следующее
+ * бронирование и читается только владельцем. Каждый слой ограничен своим весом (примерным объемом в байтах)
+ * и вытесняет давно не читавшиеся записи. Общий слой сбрасывается записью вещи и отзыва,
+ * слой бронирований - пересчетом указателей на бронирования вещи. Сброс выполняется до и после коммита,
+ * а загруженное во время сброса значение не сохраняется, чтобы в кэш не попали устаревшие данные.
+ * Попадания, промахи, вытеснения и доля попаданий публикуются через actuator (shareit.item.cache.*)
+ * с тегом layer. Кэш локален для экземпляра сервера: запись через другой экземпляр его не сбрасывает.
+ * Поэтому по умолчанию оба слоя выключены (вес 0), включать их (shareit.item.cache.snapshot-max-weight
+ * и shareit.item.cache.bookings-max-weight) можно только при одном экземпляре сервера
+ */
+@Component
+public class ItemDetailCache implements MeterBinder {
+    public static final String SNAPSHOT = "snapshot";
+    public static final String BOOKINGS = "bookings";
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int COMMENT_OVERHEAD = 48;
+    private static final int BOOKINGS_WEIGHT = 96;
+
+    private final Layer<Snapshot> snapshots;
+    private final Layer<Bookings> bookings;
+
+    public ItemDetailCache(@Value("${shareit.item.cache.snapshot-max-weight:0}") long snapshotMaxWeight,
+                           @Value("${shareit.item.cache.bookings-max-weight:0}") long bookingsMaxWeight) {
+        this.snapshots = new Layer<>(SNAPSHOT, snapshotMaxWeight, Snapshot::weight);
+        this.bookings = new Layer<>(BOOKINGS, bookingsMaxWeight, value -> BOOKINGS_WEIGHT);
+    }
+
+    /**
+     * Метод возвращает копию общего снимка вещи из кэша или загружает и сохраняет его
+     */
+    public Snapshot getSnapshot(long itemId, Supplier<Snapshot> loader) {
+        return snapshots.get(itemId, loader).copy();
+    }
+
+    /**
+     * Метод возвращает бронирования вещи для владельца из кэша или загружает и сохраняет их
+     */
+    public Bookings getBookings(long itemId, Supplier<Bookings> loader) {
+        return bookings.get(itemId, loader);
+    }
+
+    public void invalidateSnapshot(long itemId) {
+        afterCommit(() -> snapshots.remove(List.of(itemId)));
+    }
+
+    public void invalidateBookings(Collection<Long> itemIds) {
+        if (!itemIds.isEmpty()) {
+            afterCommit(() -> bookings.remove(itemIds));
+        }
+    }
+
+    /**
+     * Метод сбрасывает оба слоя, например при удалении пользователя или смене его имени в отзывах
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            snapshots.clear();
+            bookings.clear();
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        snapshots.bindTo(registry);
+        bookings.bindTo(registry);
+    }
+
+    public long getHits(String layer) {
+        return layer(layer).hits.get();
+    }
+
+    public long getMisses(String layer) {
+        return layer(layer).misses.get();
+    }
+
+    public long getEvictions(String layer) {
+        return layer(layer).evictions.get();
+    }
+
+    public long getWeight(String layer) {
+        return layer(layer).getWeight();
+    }
+
+    private Layer<?> layer(String name) {
+        return SNAPSHOT.equals(name) ? snapshots : bookings;
+    }
+
+    private static void afterCommit(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Вещь с отзывами без бронирований и id ее владельца
+     */
+    public static final class Snapshot {
+        private final ItemDto item;
+        private final Long ownerId;
+
+        public Snapshot(ItemDto item, Long ownerId) {
+            this.item = item;
+            this.ownerId = ownerId;
+        }
+
+        public ItemDto getItem() {
+            return item;
+        }
+
+        public Long getOwnerId() {
+            return ownerId;
+        }
+
+        private Snapshot copy() {
+            var comments = item.getComments() == null ? null : new ArrayList<>(item.getComments());
+            return new Snapshot(item.toBuilder().comments(comments).build(), ownerId);
+        }
+
+        private long weight() {
+            var comments = item.getComments() == null ? List.<CommentDto>of() : item.getComments();
+            return ENTRY_OVERHEAD + 2L * (length(item.getName()) + length(item.getDescription()))
+                    + comments.stream()
+                    .mapToLong(comment -> COMMENT_OVERHEAD
+                            + 2L * (length(comment.getText()) + length(comment.getAuthorName())))
+                    .sum();
+        }
+    }
+
+    /**
+     * Последнее и следующее бронирование вещи, любое из них может отсутствовать
+     */
+    public static final class Bookings {
+        private final ItemDto.NearByBooking last;
+        private final ItemDto.NearByBooking next;
+
+        public Bookings(ItemDto.NearByBooking last, ItemDto.NearByBooking next) {
+            this.last = last;
+            this.next = next;
+        }
+
+        public ItemDto.NearByBooking getLast() {
+            return last;
+        }
+
+        public ItemDto.NearByBooking getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * Слой кэша: LRU по весу со счетчиками и версией для отбрасывания значений, загруженных во время сброса
+     */
+    private static final class Layer<V> {
+        private final String name;
+        private final long maxWeight;
+        private final ToLongFunction<V> weigher;
+        private final LinkedHashMap<Long, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private long weight;
+        private long version;
+
+        private Layer(String name, long maxWeight, ToLongFunction<V> weigher) {
+            this.name = name;
+            this.maxWeight = maxWeight;
+            this.weigher = weigher;
+        }
+
+        private V get(long key, Supplier<V> loader) {
+            if (maxWeight <= 0) {
+                return loader.get();
+            }
+            long startVersion;
+            synchronized (this) {
+                var entry = entries.get(key);
+                if (entry != null) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                misses.incrementAndGet();
+                startVersion = version;
+            }
+            var value = loader.get();
+            var entry = new Entry<>(value, weigher.applyAsLong(value));
+            synchronized (this) {
+                if (version == startVersion && entry.weight <= maxWeight) {
+                    var old = entries.put(key, entry);
+                    weight += entry.weight - (old != null ? old.weight : 0);
+                    evict();
+                }
+            }
+            return value;
+        }
+
+        private synchronized void remove(Collection<Long> keys) {
+            if (maxWeight <= 0) {
+                return;
+            }
+            version++;
+            keys.forEach(key -> {
+                var entry = entries.remove(key);
+                if (entry != null) {
+                    weight -= entry.weight;
+                }
+            });
+        }
+
+        private synchronized void clear() {
+            version++;
+            entries.clear();
+            weight = 0;
+        }
+
+        private synchronized long getWeight() {
+            return weight;
+        }
+
+        private double getHitRatio() {
+            var total = hits.get() + misses.get();
+            return total == 0 ? 0 : (double) hits.get() / total;
+        }
+
+        private void evict() {
+            var iterator = entries.values().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                weight -= iterator.next().weight;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        private void bindTo(MeterRegistry registry) {
+            FunctionCounter.builder("shareit.item.cache.hits", hits, AtomicLong::get)
+                    .description("Item detail cache hits")
+                    .tag("layer", name)
+                    .register(registry);
+            FunctionCounter.builder("shareit.item.cache.misses", misses, AtomicLong::get)
+                    .description("Item detail cache misses")
+                    .tag("layer", name)
+                    .register(registry);
+            FunctionCounter.builder("shareit.item.cache.evictions", evictions, AtomicLong::get)
+                    .description("Item detail cache evictions by weight limit")
+                    .tag("layer", name)
+                    .register(registry);
+            Gauge.builder("shareit.item.cache.weight", this, Layer::getWeight)
+                    .description("Estimated size of cached item details in bytes")
+                    .tag("layer", name)
+                    .register(registry);
+            Gauge.builder("shareit.item.cache.hit.ratio", this, Layer::getHitRatio)
+                    .description("Share of item detail reads served from the cache")
+                    .tag("layer", name)
+                    .register(registry);
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.shareit.item.comment.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отзыв с именем автора, прочитанный одним запросом без загрузки сущностей
+ */
+public interface CommentView {
+    Long getId();
+
+    Long getItemId();
+
+    String getText();
+
+    String getAuthorName();
+
+    LocalDateTime getCreated();
+}
@@ -1,12 +1,40 @@
 package ru.practicum.shareit.item.comment.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.item.comment.dto.CommentView;
 import ru.practicum.shareit.item.comment.model.Comment;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findAllByItemId(Long itemId);
+
+    /**
+     * Не больше limit последних отзывов каждой из вещей одним запросом вместе с именами авторов
+     */
+    @Query(value = "SELECT t.id AS id, t.item_id AS itemId, t.text AS text, u.name AS authorName, " +
+            "t.start_date AS created " +
+            "FROM (SELECT c.*, ROW_NUMBER() OVER (PARTITION BY c.item_id ORDER BY c.id DESC) AS rn " +
+            "FROM comments c WHERE c.item_id IN (:itemIds)) t " +
+            "JOIN users u ON u.id = t.author_id " +
+            "WHERE t.rn <= :limit ORDER BY t.item_id, t.id", nativeQuery = true)
+    List<CommentView> findLatestByItemIdIn(@Param("itemIds") Collection<Long> itemIds, @Param("limit") int limit);
+
+    /**
+     * Страница истории отзывов вещи от новых к старым по ключу id, условие по item_id без соединения с items
+     */
+    @EntityGraph(attributePaths = {"author"})
+    @Query("select c from Comment c where c.item.id = :itemId and c.id < :id order by c.id desc")
+    List<Comment> findAllByItemIdAndIdLessThanOrderByIdDesc(@Param("itemId") long itemId, @Param("id") long id,
+                                                            Pageable pageable);
+
+    @Query("select distinct c.item.id from Comment c where c.author.id = :authorId")
+    List<Long> findItemIdsByAuthorId(@Param("authorId") long authorId);
 }
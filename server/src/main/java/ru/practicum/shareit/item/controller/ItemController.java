@@ -2,11 +2,26 @@ package ru.practicum.shareit.item.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import ru.practicum.shareit.item.comment.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
+import ru.practicum.shareit.item.dto.ItemBulkResultDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemSearchResultDto;
+import ru.practicum.shareit.item.service.ItemBulkImporter;
 import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.util.CursorExporter;
+import ru.practicum.shareit.util.ExportFormat;
 
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -16,8 +31,11 @@ import java.util.List;
 public class ItemController {
 
     private static final String USER_ID = "X-Sharer-User-Id";
+    private static final String NEXT_AFTER = "X-Next-After";
 
     private final ItemService itemService;
+    private final ItemBulkImporter bulkImporter;
+    private final CursorExporter exporter;
 
     @PostMapping
     public ItemDto create(@RequestBody ItemDto itemDto, @RequestHeader(USER_ID) long userId) {
@@ -25,6 +43,20 @@ public class ItemController {
         return itemService.create(itemDto, userId);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ItemBulkResultDto> createAll(InputStream body,
+                                             @RequestHeader(USER_ID) long userId) throws IOException {
+        log.info("POST method: bulk import items from JSON for user with id={}", userId);
+        return bulkImporter.importJson(body, userId);
+    }
+
+    @PostMapping(value = "/bulk", consumes = ItemBulkImporter.NDJSON_VALUE)
+    public List<ItemBulkResultDto> createAllFromNdjson(InputStream body,
+                                                       @RequestHeader(USER_ID) long userId) throws IOException {
+        log.info("POST method: bulk import items from NDJSON for user with id={}", userId);
+        return bulkImporter.importNdjson(body, userId);
+    }
+
     @PatchMapping("/{itemId}")
     public ItemDto update(@RequestBody ItemDto itemDto, @PathVariable long itemId,
                           @RequestHeader(USER_ID) long userId) {
@@ -45,10 +77,52 @@ public class ItemController {
         return itemService.findAllByUserId(userId);
     }
 
+    /**
+     * Все вещи владельца одним потоком, format - ndjson или csv
+     */
+    @GetMapping("/export")
+    public WebAsyncTask<Void> export(@RequestHeader(USER_ID) long userId,
+                                     @RequestParam(value = "format", required = false,
+                                             defaultValue = "ndjson") String format,
+                                     HttpServletResponse response) {
+        log.info("GET method: export items of owner with id={} as {}", userId, format);
+        var exportFormat = ExportFormat.of(format);
+        return exporter.respond(itemService.exportAllByOwner(userId, exportFormat), exportFormat, response);
+    }
+
     @GetMapping("/search")
-    public List<ItemDto> findByText(@RequestParam(required = false, name = "text") String text) {
-        log.info("GET method: find item by text={}", text);
-        return itemService.searchByText(text);
+    public List<ItemDto> findByText(@RequestParam(required = false, name = "text") String text,
+                                    @RequestParam(value = "ranked", required = false, defaultValue = "false") boolean ranked,
+                                    @RequestParam(value = "fuzzy", required = false, defaultValue = "false") boolean fuzzy,
+                                    @RequestParam(value = "from", required = false, defaultValue = "0") int from,
+                                    @RequestParam(value = "size", required = false, defaultValue = "10") int size) {
+        log.info("GET method: find item by text={}, ranked={}, fuzzy={}", text, ranked, fuzzy);
+        return itemService.searchByText(text, ranked, fuzzy, from, size);
+    }
+
+    @GetMapping(value = "/search", params = "facets=true")
+    public ItemSearchResultDto findByTextWithFacets(@RequestParam(required = false, name = "text") String text,
+                                                    @RequestParam(value = "ranked", required = false, defaultValue = "false") boolean ranked,
+                                                    @RequestParam(value = "fuzzy", required = false, defaultValue = "false") boolean fuzzy,
+                                                    @RequestParam(value = "from", required = false, defaultValue = "0") int from,
+                                                    @RequestParam(value = "size", required = false, defaultValue = "10") int size) {
+        log.info("GET method: find item by text={} with facets, ranked={}, fuzzy={}", text, ranked, fuzzy);
+        return itemService.searchWithFacets(text, ranked, fuzzy, from, size);
+    }
+
+    @GetMapping("/suggest")
+    public List<String> suggest(@RequestParam(name = "prefix") String prefix,
+                                @RequestParam(value = "size", required = false, defaultValue = "10") int size) {
+        log.info("GET method: suggest item names by prefix={}", prefix);
+        return itemService.suggest(prefix, size);
+    }
+
+    @GetMapping("/{itemId}/availability")
+    public ItemAvailabilityDto findAvailability(@PathVariable long itemId,
+                                                @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.info("GET method: get availability of item with id={} from {} to {}", itemId, from, to);
+        return itemService.findAvailability(itemId, from, to);
     }
 
     @PostMapping("/{itemId}/comment")
@@ -58,4 +132,22 @@ public class ItemController {
         log.info("POST/id/comment: added comment from user with id={} for item with id={}", userId, itemId);
         return itemService.addComment(itemId, userId, commentDto);
     }
+
+    /**
+     * История отзывов вещи от новых к старым. Если страница заполнена, id последнего отзыва
+     * возвращается в заголовке X-Next-After и передается в параметре after за следующей страницей
+     */
+    @GetMapping("/{itemId}/comments")
+    public ResponseEntity<List<CommentDto>> findComments(@PathVariable long itemId,
+                                                         @RequestHeader(USER_ID) long userId,
+                                                         @RequestParam(value = "after", required = false) Long after,
+                                                         @RequestParam(value = "size", required = false, defaultValue = "20") int size) {
+        log.info("GET/id/comments: get comments of item with id={} after {}", itemId, after);
+        var comments = itemService.findComments(itemId, after, size);
+        var response = ResponseEntity.ok();
+        if (!comments.isEmpty() && comments.size() == size) {
+            response.header(NEXT_AFTER, String.valueOf(comments.get(comments.size() - 1).getId()));
+        }
+        return response.body(comments);
+    }
 }
@@ -0,0 +1,33 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ItemAvailabilityDto {
+    private Long itemId;
+    private LocalDate from;
+    private LocalDate to;
+    private List<DateRange> busy;
+    private List<DateRange> free;
+
+    /**
+     * Отрезок дней, обе границы включительно
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class DateRange {
+        private LocalDate from;
+        private LocalDate to;
+    }
+}
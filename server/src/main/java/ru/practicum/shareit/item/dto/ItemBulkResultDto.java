@@ -0,0 +1,27 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат импорта одной строки: id созданной вещи либо текст ошибки
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemBulkResultDto {
+    private int index;
+    private Long itemId;
+    private String error;
+
+    public static ItemBulkResultDto ok(int index, long itemId) {
+        return new ItemBulkResultDto(index, itemId, null);
+    }
+
+    public static ItemBulkResultDto failed(int index, String error) {
+        return new ItemBulkResultDto(index, null, error);
+    }
+}
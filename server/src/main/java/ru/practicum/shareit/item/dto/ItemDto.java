@@ -12,7 +12,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class ItemDto {
     private Long id;
     private String name;
@@ -21,7 +21,11 @@ public class ItemDto {
     private NearByBooking lastBooking;
     private NearByBooking nextBooking;
     private Long requestId;
+    /**
+     * Последние отзывы, не больше ItemServiceImpl.EMBEDDED_COMMENTS, полная история - GET /items/{id}/comments
+     */
     private List<CommentDto> comments;
+    private Integer commentCount;
 
     @Data
     @Builder
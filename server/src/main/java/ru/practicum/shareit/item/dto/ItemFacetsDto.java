@@ -0,0 +1,29 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ItemFacetsDto {
+    private long available;
+    private long unavailable;
+    private long withRequest;
+    private long withoutRequest;
+    private List<OwnerCount> topOwners;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class OwnerCount {
+        private Long ownerId;
+        private long count;
+    }
+}
@@ -16,6 +16,16 @@ public class ItemMapper {
                 .build();
     }
 
+    public static ItemDto toItemDto(ItemView view) {
+        return ItemDto.builder()
+                .id(view.getId())
+                .name(view.getName())
+                .description(view.getDescription())
+                .available(view.getAvailable())
+                .requestId(view.getRequestId())
+                .build();
+    }
+
     public static Item toItem(ItemDto itemDto, User user) {
         return Item.builder()
                 .id(itemDto.getId())
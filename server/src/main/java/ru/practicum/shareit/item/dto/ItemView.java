@@ -0,0 +1,27 @@
+package ru.practicum.shareit.item.dto;
+
+/**
+ * Вещь для списков: колонки ответа вместе с указателями на бронирования и числом отзывов,
+ * без владельца и запроса
+ */
+public interface ItemView {
+    Long getId();
+
+    String getName();
+
+    String getDescription();
+
+    Boolean getAvailable();
+
+    Long getRequestId();
+
+    Long getLastBookingId();
+
+    Long getLastBookerId();
+
+    Long getNextBookingId();
+
+    Long getNextBookerId();
+
+    Integer getCommentCount();
+}
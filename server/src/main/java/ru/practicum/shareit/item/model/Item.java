@@ -40,4 +40,31 @@ public class Item extends AbstractNamedEntity {
     @OnDelete(action = OnDeleteAction.CASCADE)
     @ToString.Exclude
     private ItemRequest request;
+
+    /**
+     * Последнее и ближайшее следующее бронирование вещи. Колонки пишет только ItemBookingPointers,
+     * поэтому сохранение вещи их не затирает
+     */
+    @Column(name = "last_booking_id", insertable = false, updatable = false)
+    @JsonIgnore
+    private Long lastBookingId;
+
+    @Column(name = "last_booker_id", insertable = false, updatable = false)
+    @JsonIgnore
+    private Long lastBookerId;
+
+    @Column(name = "next_booking_id", insertable = false, updatable = false)
+    @JsonIgnore
+    private Long nextBookingId;
+
+    @Column(name = "next_booker_id", insertable = false, updatable = false)
+    @JsonIgnore
+    private Long nextBookerId;
+
+    /**
+     * Число отзывов, меняется только запросами ItemRepository
+     */
+    @Column(name = "comment_count", insertable = false, updatable = false)
+    @JsonIgnore
+    private Integer commentCount;
 }
@@ -0,0 +1,25 @@
+package ru.practicum.shareit.item.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Запросы к колонкам-указателям items.last_booking_id и items.next_booking_id.
+ * Последнее бронирование - начавшееся с самым поздним окончанием, следующее - подтвержденное
+ * с самым ранним началом в будущем, при равенстве выбирается меньший id
+ */
+public interface ItemBookingPointerRepository {
+    /**
+     * Метод пересчитывает указатели перечисленных вещей на момент now
+     */
+    @Transactional
+    int refreshBookingPointers(Collection<Long> itemIds, LocalDateTime now);
+
+    /**
+     * Метод возвращает вещи из полуинтервала id (fromId, toId], указатели которых расходятся с пересчитанными
+     */
+    List<Long> findAllWithStaleBookingPointers(long fromId, long toId, LocalDateTime now);
+}
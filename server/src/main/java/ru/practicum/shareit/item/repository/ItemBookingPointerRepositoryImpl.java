@@ -0,0 +1,51 @@
+package ru.practicum.shareit.item.repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ItemBookingPointerRepositoryImpl implements ItemBookingPointerRepository {
+    private static final String LAST_BOOKING = "FROM bookings b WHERE b.item_id = i.id AND b.start_date < :now " +
+            "ORDER BY b.end_date DESC, b.id LIMIT 1";
+    private static final String NEXT_BOOKING = "FROM bookings b WHERE b.item_id = i.id AND b.status = 'APPROVED' " +
+            "AND b.start_date > :now ORDER BY b.start_date, b.id LIMIT 1";
+    private static final String SET_POINTERS = "UPDATE items i SET " +
+            "last_booking_id = (SELECT b.id " + LAST_BOOKING + "), " +
+            "last_booker_id = (SELECT b.owner_id " + LAST_BOOKING + "), " +
+            "next_booking_id = (SELECT b.id " + NEXT_BOOKING + "), " +
+            "next_booker_id = (SELECT b.owner_id " + NEXT_BOOKING + ") ";
+    private static final String FIND_STALE = "SELECT i.id FROM items i WHERE i.id > :fromId AND i.id <= :toId " +
+            "AND (COALESCE(i.last_booking_id, 0) <> COALESCE((SELECT b.id " + LAST_BOOKING + "), 0) " +
+            "OR COALESCE(i.next_booking_id, 0) <> COALESCE((SELECT b.id " + NEXT_BOOKING + "), 0)) " +
+            "ORDER BY i.id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int refreshBookingPointers(Collection<Long> itemIds, LocalDateTime now) {
+        if (itemIds.isEmpty()) {
+            return 0;
+        }
+        entityManager.flush();  //Несохраненные изменения бронирований сбрасываются заранее, чтобы пересчет их видел
+        return entityManager.createNativeQuery(SET_POINTERS + "WHERE i.id IN (:ids)")
+                .setParameter("ids", itemIds)
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> findAllWithStaleBookingPointers(long fromId, long toId, LocalDateTime now) {
+        return ((List<Number>) entityManager.createNativeQuery(FIND_STALE)
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .setParameter("now", now)
+                .getResultList()).stream()
+                .map(Number::longValue)
+                .collect(Collectors.toList());
+    }
+}
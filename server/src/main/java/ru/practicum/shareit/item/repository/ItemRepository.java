@@ -1,14 +1,101 @@
 package ru.practicum.shareit.item.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.item.dto.ItemView;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemFacetView;
+import ru.practicum.shareit.item.search.ItemSearchView;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ItemRepository extends JpaRepository<Item, Long> {
+public interface ItemRepository extends JpaRepository<Item, Long>, ItemBookingPointerRepository {
+    /**
+     * Проекция ItemView для списков вещей, id запроса берется из колонки вещи без соединения с requests
+     */
+    String ITEM_VIEW_SELECT = "select i.id as id, i.name as name, i.description as description, " +
+            "i.available as available, i.request.id as requestId, i.lastBookingId as lastBookingId, " +
+            "i.lastBookerId as lastBookerId, i.nextBookingId as nextBookingId, i.nextBookerId as nextBookerId, " +
+            "i.commentCount as commentCount from Item i ";
+
+    /**
+     * SQL выгрузки всех вещей владельца для CursorExporter
+     */
+    String EXPORT_BY_OWNER = "SELECT id AS \"id\", name AS \"name\", description AS \"description\", " +
+            "available AS \"available\", request_id AS \"requestId\", last_booking_id AS \"lastBookingId\", " +
+            "next_booking_id AS \"nextBookingId\", comment_count AS \"commentCount\" " +
+            "FROM items WHERE owner_id = ? ORDER BY id";
+
     List<Item> findAllByOwnerId(long id);
 
-    List<Item> findAllByRequestId(long id);
+    @Query(ITEM_VIEW_SELECT + "where i.owner.id = :ownerId order by i.id")
+    List<ItemView> findAllViewsByOwnerId(@Param("ownerId") long ownerId);
+
+    /**
+     * Вещи, предложенные в ответ на несколько запросов, одним запросом
+     */
+    @Query(ITEM_VIEW_SELECT + "where i.request.id in :requestIds order by i.id")
+    List<ItemView> findAllViewsByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
+
+    @EntityGraph(attributePaths = {"owner"})
+    List<Item> findAllByIdIn(Collection<Long> ids);
+
+    @Query("select i.id as id, i.name as name, i.description as description, " +
+            "i.available as available, i.owner.id as ownerId, i.request.id as requestId from Item i")
+    List<ItemSearchView> findAllForSearch();
+
+    /**
+     * Поиск подстроки на стороне базы данных с той же семантикой, что и у ItemSearchIndex.
+     * На Postgres условия обслуживаются триграммными GIN-индексами по lower(name) и lower(description)
+     */
+    @Query(value = "SELECT * FROM items i " +
+            "WHERE lower(i.name) LIKE :pattern " +
+            "OR lower(i.description) LIKE :pattern AND i.available = TRUE " +
+            "ORDER BY i.id LIMIT :size OFFSET :from", nativeQuery = true)
+    List<Item> search(@Param("pattern") String pattern, @Param("from") int from, @Param("size") int size);
+
+    /**
+     * Упрощенное ранжирование для поиска в базе: сначала совпадения по имени, затем по описанию
+     */
+    @Query(value = "SELECT * FROM items i " +
+            "WHERE lower(i.name) LIKE :pattern " +
+            "OR lower(i.description) LIKE :pattern AND i.available = TRUE " +
+            "ORDER BY CASE WHEN lower(i.name) LIKE :pattern THEN 0 ELSE 1 END, i.id " +
+            "LIMIT :size OFFSET :from", nativeQuery = true)
+    List<Item> searchRanked(@Param("pattern") String pattern, @Param("from") int from, @Param("size") int size);
+
+    /**
+     * Фасеты поиска в базе одним сгруппированным запросом с тем же условием, что и у search
+     */
+    @Query("select i.available as available, case when i.request is null then false else true end as answered, " +
+            "i.owner.id as ownerId, count(i) as total from Item i " +
+            "where lower(i.name) like :pattern or lower(i.description) like :pattern and i.available = true " +
+            "group by i.available, case when i.request is null then false else true end, i.owner.id")
+    List<ItemFacetView> searchFacets(@Param("pattern") String pattern);
+
+    @Query("select max(i.id) from Item i")
+    Long findMaxId();
+
+    @Modifying
+    @Query("update Item i set i.commentCount = i.commentCount + 1 where i.id = :itemId")
+    int incrementCommentCount(@Param("itemId") long itemId);
+
+    /**
+     * Пересчет счетчика отзывов, например после каскадного удаления отзывов вместе с автором
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Item i set i.commentCount = (select count(c) from Comment c where c.item.id = i.id) " +
+            "where i.id in :itemIds")
+    int refreshCommentCounts(@Param("itemIds") Collection<Long> itemIds);
+
+    @Query("select i.name from Item i where lower(i.name) like :prefix " +
+            "group by i.name order by count(i) desc, lower(i.name)")
+    List<String> suggestNames(@Param("prefix") String prefix, Pageable pageable);
 }
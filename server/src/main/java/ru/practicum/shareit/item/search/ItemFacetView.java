@@ -0,0 +1,14 @@
+package ru.practicum.shareit.item.search;
+
+/**
+ * Строка группировки найденных вещей по доступности, наличию запроса и владельцу
+ */
+public interface ItemFacetView {
+    Boolean getAvailable();
+
+    Boolean getAnswered();
+
+    Long getOwnerId();
+
+    Long getTotal();
+}
@@ -0,0 +1,54 @@
+package ru.practicum.shareit.item.search;
+
+import ru.practicum.shareit.item.dto.ItemFacetsDto;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Накапливает счетчики фасетов за один проход по найденным вещам
+ * или по строкам группировки из базы данных
+ */
+public class ItemFacetsCollector {
+    private long available;
+    private long unavailable;
+    private long withRequest;
+    private long withoutRequest;
+    private final Map<Long, Long> owners = new HashMap<>();
+
+    public void add(boolean isAvailable, boolean answered, Long ownerId, long count) {
+        if (isAvailable) {
+            available += count;
+        } else {
+            unavailable += count;
+        }
+        if (answered) {
+            withRequest += count;
+        } else {
+            withoutRequest += count;
+        }
+        if (ownerId != null) {
+            owners.merge(ownerId, count, Long::sum);
+        }
+    }
+
+    /**
+     * Владельцы упорядочены по числу найденных вещей, при равенстве по id
+     */
+    public ItemFacetsDto build(int topOwners) {
+        return ItemFacetsDto.builder()
+                .available(available)
+                .unavailable(unavailable)
+                .withRequest(withRequest)
+                .withoutRequest(withoutRequest)
+                .topOwners(owners.entrySet().stream()
+                        .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder())
+                                .thenComparing(Map.Entry.comparingByKey()))
+                        .limit(topOwners)
+                        .map(entry -> new ItemFacetsDto.OwnerCount(entry.getKey(), entry.getValue()))
+                        .collect(Collectors.toList()))
+                .build();
+    }
+}
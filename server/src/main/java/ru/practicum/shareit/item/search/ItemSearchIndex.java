@@ -0,0 +1,444 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.dto.ItemFacetsDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Инвертированный индекс вещей для поиска по тексту.
+ * Строится при старте приложения и обновляется при создании и изменении вещей.
+ * Семантика поиска совпадает с поиском подстроки без учета регистра:
+ * кандидаты отбираются пересечением списков вещей по токенам запроса,
+ * после чего каждый кандидат проверяется на вхождение подстроки.
+ * Индекс живет в памяти одного экземпляра сервера, поэтому при нескольких экземплярах
+ * его следует отключить (shareit.search.index.enabled=false) и искать в базе данных
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ItemSearchIndex {
+    public static final int MAX_SUGGESTIONS = SuggestTrie.MAX_SUGGESTIONS;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double NAME_WEIGHT = 3.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    private static final Comparator<ScoredItem> BY_SCORE = Comparator.comparingDouble(ScoredItem::getScore)
+            .thenComparing(ScoredItem::getId, Comparator.reverseOrder());
+
+    private final ItemRepository itemRepository;
+
+    @Value("${shareit.search.index.enabled:true}")
+    private boolean enabled = true;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<Long, IndexedItem> items = new TreeMap<>();
+    private final Map<String, NavigableSet<Long>> postings = new HashMap<>();
+    private final NGramIndex vocabulary = new NGramIndex();
+    private final SuggestTrie names = new SuggestTrie();
+    private long totalNameLength;
+    private long totalDescriptionLength;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            log.info("Search index is disabled, search is served by the database");
+            return;
+        }
+        var views = itemRepository.findAllForSearch();
+        lock.writeLock().lock();
+        try {
+            items.clear();
+            postings.clear();
+            vocabulary.clear();
+            names.clear();
+            totalNameLength = 0;
+            totalDescriptionLength = 0;
+            views.forEach(view -> put(new IndexedItem(view.getId(), view.getOwnerId(), view.getRequestId(),
+                    view.getName(), view.getDescription(), view.getAvailable())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index built for {} items", views.size());
+    }
+
+    /**
+     * Метод добавляет или обновляет вещь в индексе,
+     * изменения применяются только после успешного коммита транзакции
+     */
+    public void index(Item item) {
+        if (!enabled) {
+            return;
+        }
+        var indexed = new IndexedItem(item.getId(), item.getOwner() != null ? item.getOwner().getId() : null,
+                item.getRequest() != null ? item.getRequest().getId() : null,
+                item.getName(), item.getDescription(), item.getAvailable());
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                put(indexed);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Вещи удаляются из базы каскадно вместе с владельцем
+     */
+    public void removeByOwner(long ownerId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                items.values().stream()
+                        .filter(item -> Objects.equals(item.ownerId, ownerId))
+                        .map(item -> item.id)
+                        .collect(Collectors.toList())
+                        .forEach(this::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Метод возвращает id найденных вещей в порядке возрастания.
+     * В нечетком режиме к совпадениям по подстроке добавляются вещи, у которых каждый токен
+     * запроса находится в пределах допустимого числа опечаток от какого-либо термина
+     */
+    public List<Long> search(String text, boolean fuzzy) {
+        var query = text.toLowerCase();
+        lock.readLock().lock();
+        try {
+            var termsByToken = expand(tokenize(query), fuzzy);
+            return candidates(lookup(termsByToken)).stream()
+                    .filter(id -> items.get(id).matches(query, fuzzy ? termsByToken : null))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Фасеты по всем совпадениям запроса, считаются за один проход по кандидатам
+     */
+    public ItemFacetsDto facets(String text, boolean fuzzy, int topOwners) {
+        var query = text.toLowerCase();
+        var collector = new ItemFacetsCollector();
+        lock.readLock().lock();
+        try {
+            var termsByToken = expand(tokenize(query), fuzzy);
+            for (Long id : candidates(lookup(termsByToken))) {
+                var item = items.get(id);
+                if (item.matches(query, fuzzy ? termsByToken : null)) {
+                    collector.add(item.available, item.requestId != null, item.ownerId, 1);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return collector.build(topOwners);
+    }
+
+    /**
+     * Ранжированный поиск: те же совпадения, что и у search, упорядоченные по BM25F,
+     * где вхождения в имя весят больше вхождений в описание.
+     * Возвращаются limit лучших id, отбор идет через ограниченную кучу без сортировки всех совпадений
+     */
+    public List<Long> searchRanked(String text, boolean fuzzy, int limit) {
+        var query = text.toLowerCase();
+        lock.readLock().lock();
+        try {
+            var termsByToken = expand(tokenize(query), fuzzy);
+            var postingsByToken = lookup(termsByToken);
+            Map<String, Double> idf = new HashMap<>();
+            postingsByToken.forEach((token, list) -> idf.put(token, idf(list.size())));
+
+            var heap = new PriorityQueue<>(BY_SCORE);
+            for (Long id : candidates(postingsByToken)) {
+                var item = items.get(id);
+                if (!item.matches(query, fuzzy ? termsByToken : null)) {
+                    continue;
+                }
+                var scored = new ScoredItem(id, score(item, termsByToken, idf));
+                if (heap.size() < limit) {
+                    heap.add(scored);
+                } else if (BY_SCORE.compare(scored, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(scored);
+                }
+            }
+            return heap.stream()
+                    .sorted(BY_SCORE.reversed())
+                    .map(ScoredItem::getId)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Автодополнение названий вещей по префиксу. Узлы дерева хранят только MAX_SUGGESTIONS лучших вариантов,
+     * поэтому limit больше MAX_SUGGESTIONS отклоняется
+     */
+    public List<String> suggest(String prefix, int limit) {
+        if (limit <= 0 || limit > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("Suggestion limit must be from 1 to " + MAX_SUGGESTIONS);
+        }
+        lock.readLock().lock();
+        try {
+            return names.suggest(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (items.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private double score(IndexedItem item, Map<String, Set<String>> termsByToken, Map<String, Double> idf) {
+        double avgNameLength = Math.max(1.0, (double) totalNameLength / items.size());
+        double avgDescriptionLength = Math.max(1.0, (double) totalDescriptionLength / items.size());
+        double score = 0;
+        for (var entry : idf.entrySet()) {
+            var terms = termsByToken.get(entry.getKey());
+            double tf = NAME_WEIGHT * frequency(item.nameTerms, terms)
+                    / (1 - B + B * item.nameLength / avgNameLength)
+                    + DESCRIPTION_WEIGHT * frequency(item.descriptionTerms, terms)
+                    / (1 - B + B * item.descriptionLength / avgDescriptionLength);
+            score += entry.getValue() * tf / (K1 + tf);
+        }
+        return score;
+    }
+
+    /**
+     * Частота токена запроса в поле: сумма частот всех терминов поля, сопоставленных токену
+     */
+    private static int frequency(Map<String, Integer> fieldTerms, Set<String> terms) {
+        return fieldTerms.entrySet().stream()
+                .filter(entry -> terms.contains(entry.getKey()))
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+    }
+
+    /**
+     * Для каждого токена запроса подбираются термины словаря: содержащие токен,
+     * а в нечетком режиме еще и отличающиеся от него не больше чем на maxTypos(token) правок
+     */
+    private Map<String, Set<String>> expand(Set<String> tokens, boolean fuzzy) {
+        Map<String, Set<String>> result = new HashMap<>();
+        tokens.forEach(token -> {
+            var terms = vocabulary.containing(token);
+            if (fuzzy) {
+                terms.addAll(vocabulary.similar(token, maxTypos(token)));
+            }
+            result.put(token, terms);
+        });
+        return result;
+    }
+
+    /**
+     * Допустимое число опечаток растет с длиной слова, в коротких словах опечатки не допускаются
+     */
+    static int maxTypos(String token) {
+        if (token.length() <= 2) {
+            return 0;
+        }
+        return token.length() <= 5 ? 1 : 2;
+    }
+
+    private Map<String, NavigableSet<Long>> lookup(Map<String, Set<String>> termsByToken) {
+        Map<String, NavigableSet<Long>> result = new HashMap<>();
+        termsByToken.forEach((token, terms) -> result.put(token, union(terms)));
+        return result;
+    }
+
+    /**
+     * Для каждого токена запроса берется объединение списков всех подобранных ему терминов,
+     * затем списки пересекаются начиная с самого короткого.
+     * Если запрос не содержит букв и цифр, кандидатами являются все вещи
+     */
+    private Collection<Long> candidates(Map<String, NavigableSet<Long>> postingsByToken) {
+        if (postingsByToken.isEmpty()) {
+            return items.keySet();
+        }
+        var lists = postingsByToken.values().stream()
+                .sorted(Comparator.comparingInt(Set::size))
+                .collect(Collectors.toList());
+        NavigableSet<Long> result = new TreeSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private NavigableSet<Long> union(Set<String> terms) {
+        if (terms.size() == 1) {
+            return postings.get(terms.iterator().next());
+        }
+        NavigableSet<Long> union = new TreeSet<>();
+        terms.forEach(term -> union.addAll(postings.get(term)));
+        return union;
+    }
+
+    private void put(IndexedItem item) {
+        remove(item.id);
+        items.put(item.id, item);
+        totalNameLength += item.nameLength;
+        totalDescriptionLength += item.descriptionLength;
+        if (!item.displayName.isEmpty()) {
+            names.add(item.displayName);
+        }
+        item.terms.forEach(term -> postings.computeIfAbsent(term, t -> {
+            vocabulary.add(t);
+            return new TreeSet<>();
+        }).add(item.id));
+    }
+
+    private void remove(Long id) {
+        var old = items.remove(id);
+        if (old == null) {
+            return;
+        }
+        totalNameLength -= old.nameLength;
+        totalDescriptionLength -= old.descriptionLength;
+        if (!old.displayName.isEmpty()) {
+            names.remove(old.displayName);
+        }
+        old.terms.forEach(term -> {
+            var list = postings.get(term);
+            list.remove(id);
+            if (list.isEmpty()) {
+                postings.remove(term);
+                vocabulary.remove(term);
+            }
+        });
+    }
+
+    static Set<String> tokenize(String text) {
+        return new HashSet<>(tokens(text));
+    }
+
+    /**
+     * Метод разбивает текст в нижнем регистре на токены из букв и цифр
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class ScoredItem {
+        private final Long id;
+        private final double score;
+    }
+
+    /**
+     * Вещь в индексе вместе с предвычисленной статистикой для ранжирования:
+     * частоты терминов и длины полей в токенах
+     */
+    private static final class IndexedItem {
+        private final Long id;
+        private final Long ownerId;
+        private final Long requestId;
+        private final String displayName;
+        private final String name;
+        private final String description;
+        private final boolean available;
+        private final Map<String, Integer> nameTerms;
+        private final Map<String, Integer> descriptionTerms;
+        private final int nameLength;
+        private final int descriptionLength;
+        private final Set<String> terms;
+
+        private IndexedItem(Long id, Long ownerId, Long requestId, String name, String description,
+                            Boolean available) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.requestId = requestId;
+            this.displayName = name == null ? "" : name;
+            this.name = this.displayName.toLowerCase();
+            this.description = description == null ? "" : description.toLowerCase();
+            this.available = Boolean.TRUE.equals(available);
+            var nameTokens = tokens(this.name);
+            var descriptionTokens = tokens(this.description);
+            this.nameTerms = frequencies(nameTokens);
+            this.descriptionTerms = frequencies(descriptionTokens);
+            this.nameLength = nameTokens.size();
+            this.descriptionLength = descriptionTokens.size();
+            this.terms = new HashSet<>(nameTerms.keySet());
+            this.terms.addAll(descriptionTerms.keySet());
+        }
+
+        private static Map<String, Integer> frequencies(List<String> tokens) {
+            Map<String, Integer> result = new HashMap<>();
+            tokens.forEach(token -> result.merge(token, 1, Integer::sum));
+            return result;
+        }
+
+        /**
+         * Условие совпадает с прежней фильтрацией в ItemServiceImpl.searchByText:
+         * совпадение по имени, либо по описанию у доступной вещи.
+         * Если переданы подобранные токенам термины (нечеткий режим), совпадением поля также считается
+         * наличие в нем подобранного термина для каждого токена запроса
+         */
+        private boolean matches(String query, Map<String, Set<String>> termsByToken) {
+            if (name.contains(query) || description.contains(query) && available) {
+                return true;
+            }
+            if (termsByToken == null || termsByToken.isEmpty()) {
+                return false;
+            }
+            return containsAll(nameTerms, termsByToken) || available && containsAll(descriptionTerms, termsByToken);
+        }
+
+        private static boolean containsAll(Map<String, Integer> fieldTerms, Map<String, Set<String>> termsByToken) {
+            return termsByToken.values().stream()
+                    .allMatch(terms -> fieldTerms.keySet().stream().anyMatch(terms::contains));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.practicum.shareit.item.search;
+
+/**
+ * Узкая проекция вещи для построения поискового индекса,
+ * без загрузки владельца и запроса
+ */
+public interface ItemSearchView {
+    Long getId();
+
+    String getName();
+
+    String getDescription();
+
+    Boolean getAvailable();
+
+    Long getOwnerId();
+
+    Long getRequestId();
+}
@@ -0,0 +1,123 @@
+package ru.practicum.shareit.item.search;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Триграммный индекс словаря терминов.
+ * Термин дополняется граничным символом с обеих сторон и раскладывается на триграммы,
+ * что позволяет быстро находить термины, содержащие подстроку,
+ * и термины в пределах заданного расстояния Левенштейна без перебора всего словаря.
+ * Не потокобезопасен, синхронизация лежит на ItemSearchIndex
+ */
+class NGramIndex {
+    private static final int N = 3;
+    private static final char BOUNDARY = '$';
+
+    private final Map<String, Set<String>> termsByGram = new HashMap<>();
+    private final Set<String> terms = new HashSet<>();
+
+    void add(String term) {
+        if (terms.add(term)) {
+            grams(BOUNDARY + term + BOUNDARY)
+                    .forEach(gram -> termsByGram.computeIfAbsent(gram, g -> new HashSet<>()).add(term));
+        }
+    }
+
+    void remove(String term) {
+        if (terms.remove(term)) {
+            grams(BOUNDARY + term + BOUNDARY).forEach(gram -> {
+                var set = termsByGram.get(gram);
+                set.remove(term);
+                if (set.isEmpty()) {
+                    termsByGram.remove(gram);
+                }
+            });
+        }
+    }
+
+    void clear() {
+        termsByGram.clear();
+        terms.clear();
+    }
+
+    /**
+     * Термины, содержащие токен как подстроку. Термин должен содержать все триграммы токена,
+     * поэтому кандидаты берутся пересечением, а для коротких токенов перебирается словарь
+     */
+    Set<String> containing(String token) {
+        if (token.length() < N) {
+            return terms.stream()
+                    .filter(term -> term.contains(token))
+                    .collect(Collectors.toSet());
+        }
+        Set<String> result = null;
+        for (String gram : grams(token)) {
+            var set = termsByGram.getOrDefault(gram, Collections.emptySet());
+            if (result == null) {
+                result = new HashSet<>(set);
+            } else {
+                result.retainAll(set);
+            }
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        result.removeIf(term -> !term.contains(token));
+        return result;
+    }
+
+    /**
+     * Термины на расстоянии Левенштейна не больше maxDistance от токена.
+     * Одна правка затрагивает не больше N триграмм, поэтому у подходящего термина
+     * не меньше grams(token) - N * maxDistance общих триграмм с токеном
+     */
+    Set<String> similar(String token, int maxDistance) {
+        var tokenGrams = grams(BOUNDARY + token + BOUNDARY);
+        int threshold = Math.max(1, tokenGrams.size() - N * maxDistance);
+        Map<String, Integer> common = new HashMap<>();
+        tokenGrams.forEach(gram -> termsByGram.getOrDefault(gram, Collections.emptySet())
+                .forEach(term -> common.merge(term, 1, Integer::sum)));
+        return common.entrySet().stream()
+                .filter(entry -> entry.getValue() >= threshold)
+                .map(Map.Entry::getKey)
+                .filter(term -> Math.abs(term.length() - token.length()) <= maxDistance)
+                .filter(term -> distance(token, term, maxDistance) <= maxDistance)
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + N <= text.length(); i++) {
+            result.add(text.substring(i, i + N));
+        }
+        return result;
+    }
+
+    /**
+     * Расстояние Левенштейна с ранним выходом, как только оно превысило limit
+     */
+    static int distance(String a, String b, int limit) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            var swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
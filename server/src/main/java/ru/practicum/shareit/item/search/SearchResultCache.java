@@ -0,0 +1,246 @@
+package ru.practicum.shareit.item.search;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш результатов поиска вещей по тексту, ключом служит нормализованный запрос вместе с режимом и страницей.
+ * Размер кэша ограничен суммарным весом результатов (примерным объемом строк в байтах),
+ * при переполнении вытесняются давно не читавшиеся записи.
+ * При создании или изменении вещи сбрасываются только записи, токены запроса которых
+ * совпадают с токенами прежнего или нового текста вещи.
+ * Счетчики попаданий, промахов и вытеснений публикуются через actuator (shareit.search.cache.*).
+ * Кэш локален для экземпляра сервера, при нескольких экземплярах его следует отключить
+ * (shareit.search.cache.max-weight=0)
+ */
+@Component
+@Slf4j
+public class SearchResultCache implements MeterBinder {
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int ITEM_OVERHEAD = 48;
+
+    private final long maxWeight;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long weight;
+    private long version;
+
+    public SearchResultCache(@Value("${shareit.search.cache.max-weight:1048576}") long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Метод возвращает результат из кэша или вычисляет и сохраняет его.
+     * Если за время вычисления была инвалидация, результат не сохраняется, так как мог устареть
+     */
+    public List<ItemDto> get(String text, boolean ranked, boolean fuzzy, int from, int size,
+                             Supplier<List<ItemDto>> loader) {
+        if (maxWeight <= 0) {
+            return loader.get();
+        }
+        var key = new Key(normalize(text), ranked, fuzzy, from, size);
+        long startVersion;
+        synchronized (this) {
+            var entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return copy(entry.result);
+            }
+            misses.incrementAndGet();
+            startVersion = version;
+        }
+        var result = loader.get();
+        var entry = new Entry(copy(result), ItemSearchIndex.tokenize(key.query), fuzzy);
+        synchronized (this) {
+            if (version == startVersion && entry.weight <= maxWeight) {
+                var old = entries.put(key, entry);
+                weight += entry.weight - (old != null ? old.weight : 0);
+                evict();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Метод сбрасывает записи, которые могли измениться из-за записи вещи,
+     * до и после коммита транзакции, чтобы в кэш не попал результат, прочитанный до коммита
+     */
+    public void invalidate(Collection<String> texts) {
+        if (maxWeight <= 0) {
+            return;
+        }
+        var terms = texts.stream()
+                .filter(Objects::nonNull)
+                .map(String::toLowerCase)
+                .flatMap(text -> ItemSearchIndex.tokens(text).stream())
+                .collect(Collectors.toSet());
+        afterCommit(() -> removeIf(entry -> entry.affectedBy(terms)));
+    }
+
+    public void invalidateAll() {
+        if (maxWeight <= 0) {
+            return;
+        }
+        afterCommit(() -> removeIf(entry -> true));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("shareit.search.cache.hits", hits, AtomicLong::get)
+                .description("Search result cache hits")
+                .register(registry);
+        FunctionCounter.builder("shareit.search.cache.misses", misses, AtomicLong::get)
+                .description("Search result cache misses")
+                .register(registry);
+        FunctionCounter.builder("shareit.search.cache.evictions", evictions, AtomicLong::get)
+                .description("Search result cache evictions by weight limit")
+                .register(registry);
+        Gauge.builder("shareit.search.cache.weight", this, SearchResultCache::getWeight)
+                .description("Estimated size of cached search results in bytes")
+                .register(registry);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    private synchronized void removeIf(Predicate<Entry> condition) {
+        version++;
+        var iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (condition.test(entry)) {
+                weight -= entry.weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evict() {
+        var iterator = entries.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Поиск не зависит от регистра, поэтому запросы, отличающиеся только регистром, считаются одинаковыми.
+     * Пробелы не схлопываются: они входят в искомую подстроку
+     */
+    static String normalize(String text) {
+        return text.toLowerCase();
+    }
+
+    private static List<ItemDto> copy(List<ItemDto> result) {
+        return result.stream()
+                .map(item -> item.toBuilder().build())
+                .collect(Collectors.toList());
+    }
+
+    private void afterCommit(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private static final class Key {
+        private final String query;
+        private final boolean ranked;
+        private final boolean fuzzy;
+        private final int from;
+        private final int size;
+
+        private Key(String query, boolean ranked, boolean fuzzy, int from, int size) {
+            this.query = query;
+            this.ranked = ranked;
+            this.fuzzy = fuzzy;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            var key = (Key) o;
+            return ranked == key.ranked && fuzzy == key.fuzzy && from == key.from && size == key.size
+                    && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, ranked, fuzzy, from, size);
+        }
+    }
+
+    private static final class Entry {
+        private final List<ItemDto> result;
+        private final Set<String> tokens;
+        private final boolean fuzzy;
+        private final long weight;
+
+        private Entry(List<ItemDto> result, Set<String> tokens, boolean fuzzy) {
+            this.result = result;
+            this.tokens = tokens;
+            this.fuzzy = fuzzy;
+            this.weight = ENTRY_OVERHEAD + result.stream()
+                    .mapToLong(item -> ITEM_OVERHEAD + 2L * (length(item.getName()) + length(item.getDescription())))
+                    .sum();
+        }
+
+        /**
+         * Запись затронута, если каждый токен запроса входит в какой-либо термин вещи,
+         * а в нечетком режиме еще и если отличается от термина в пределах допустимых опечаток.
+         * Запрос без букв и цифр совпадает с любой вещью
+         */
+        private boolean affectedBy(Set<String> terms) {
+            return tokens.stream().allMatch(token -> terms.stream().anyMatch(term -> term.contains(token)
+                    || fuzzy && NGramIndex.distance(token, term, ItemSearchIndex.maxTypos(token))
+                    <= ItemSearchIndex.maxTypos(token)));
+        }
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+}
@@ -0,0 +1,197 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Сжатое префиксное дерево (radix trie) названий вещей для автодополнения.
+ * Каждый узел хранит готовый список лучших продолжений своего поддерева,
+ * поэтому ответ на запрос стоит O(длина префикса). Списки пересчитываются только
+ * на пути от измененного названия к корню. Лучшими считаются самые частые названия,
+ * при равенстве - в алфавитном порядке. Названия, отличающиеся только регистром, делят узел,
+ * узел показывает самое частое из их написаний.
+ * Не потокобезопасен, синхронизация лежит на ItemSearchIndex
+ */
+class SuggestTrie {
+    static final int MAX_SUGGESTIONS = 10;
+
+    private static final Comparator<Completion> BY_RANK = Comparator.comparingInt(Completion::getCount).reversed()
+            .thenComparing(Completion::getKey);
+
+    private Node root = new Node("");
+
+    void add(String name) {
+        var key = name.toLowerCase();
+        var path = new ArrayList<Node>();
+        var node = insert(key, path);
+        node.count++;
+        node.displays.merge(name, 1, Integer::sum);
+        refresh(path);
+    }
+
+    void remove(String name) {
+        var key = name.toLowerCase();
+        var path = new ArrayList<Node>();
+        var node = find(key, path);
+        if (node == null || node.count == 0) {
+            return;
+        }
+        node.count--;
+        node.displays.computeIfPresent(name, (display, count) -> count > 1 ? count - 1 : null);
+        compact(path);
+        refresh(path);
+    }
+
+    void clear() {
+        root = new Node("");
+    }
+
+    List<String> suggest(String prefix, int limit) {
+        var rest = prefix.toLowerCase();
+        var node = root;
+        while (!rest.isEmpty()) {
+            var child = node.children.get(rest.charAt(0));
+            if (child == null) {
+                return Collections.emptyList();
+            }
+            if (child.edge.startsWith(rest)) {
+                node = child;
+                break;
+            }
+            if (!rest.startsWith(child.edge)) {
+                return Collections.emptyList();
+            }
+            rest = rest.substring(child.edge.length());
+            node = child;
+        }
+        return node.top.stream()
+                .limit(limit)
+                .map(Completion::getDisplay)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Метод находит или создает узел для ключа, при необходимости разделяя ребро
+     */
+    private Node insert(String key, List<Node> path) {
+        var node = root;
+        var rest = key;
+        path.add(node);
+        while (!rest.isEmpty()) {
+            var child = node.children.get(rest.charAt(0));
+            if (child == null) {
+                child = new Node(rest);
+                node.children.put(rest.charAt(0), child);
+                path.add(child);
+                return child;
+            }
+            int common = commonPrefixLength(child.edge, rest);
+            if (common < child.edge.length()) {
+                var middle = new Node(child.edge.substring(0, common));
+                child.edge = child.edge.substring(common);
+                middle.children.put(child.edge.charAt(0), child);
+                node.children.put(middle.edge.charAt(0), middle);
+                child = middle;
+            }
+            rest = rest.substring(common);
+            node = child;
+            path.add(node);
+        }
+        return node;
+    }
+
+    private Node find(String key, List<Node> path) {
+        var node = root;
+        var rest = key;
+        path.add(node);
+        while (!rest.isEmpty()) {
+            var child = node.children.get(rest.charAt(0));
+            if (child == null || !rest.startsWith(child.edge)) {
+                return null;
+            }
+            rest = rest.substring(child.edge.length());
+            node = child;
+            path.add(node);
+        }
+        return node;
+    }
+
+    /**
+     * Удаляет опустевший лист и склеивает узел без названия с единственным потомком
+     */
+    private void compact(List<Node> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            var node = path.get(i);
+            var parent = path.get(i - 1);
+            if (node.count == 0 && node.children.isEmpty()) {
+                parent.children.remove(node.edge.charAt(0));
+                path.remove(i);
+            } else if (node.count == 0 && node.children.size() == 1) {
+                var child = node.children.values().iterator().next();
+                child.edge = node.edge + child.edge;
+                parent.children.put(child.edge.charAt(0), child);
+                if (i + 1 < path.size() && path.get(i + 1) == child) {
+                    path.remove(i + 1);
+                }
+                path.set(i, child);
+            }
+        }
+    }
+
+    private void refresh(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            var node = path.get(i);
+            var key = path.stream()
+                    .limit(i + 1L)
+                    .map(n -> n.edge)
+                    .collect(Collectors.joining());
+            var own = node.count > 0 ? Stream.of(new Completion(key, node.display(), node.count)) : Stream.<Completion>empty();
+            node.top = Stream.concat(own, node.children.values().stream().flatMap(child -> child.top.stream()))
+                    .sorted(BY_RANK)
+                    .limit(MAX_SUGGESTIONS)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int i = 0;
+        while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node {
+        private String edge;
+        private final Map<Character, Node> children = new TreeMap<>();
+        private int count;
+        private final Map<String, Integer> displays = new TreeMap<>();
+        private List<Completion> top = Collections.emptyList();
+
+        private Node(String edge) {
+            this.edge = edge;
+        }
+
+        /**
+         * Самое частое написание названия, при равенстве - первое в алфавитном порядке
+         */
+        private String display() {
+            return displays.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse(edge);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class Completion {
+        private final String key;
+        private final String display;
+        private final int count;
+    }
+}
@@ -0,0 +1,255 @@
+package ru.practicum.shareit.item.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.item.dto.ItemBulkResultDto;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.item.search.SearchResultCache;
+import ru.practicum.shareit.request.repository.RequestRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.util.EntityUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Импорт вещей для POST /items/bulk. Тело читается потоком (JSON-массив или NDJSON - объект на строку),
+ * в памяти держится только текущая порция из batchSize строк. Порция проверяется построчно и
+ * вставляется в своей транзакции JDBC-пакетами: id выдает пул последовательности, поэтому Hibernate
+ * не ждет ключ после каждой вставки. Ошибка строки попадает в ее результат и не прерывает импорт,
+ * а если порция не записалась целиком, ее строки повторяются по одной. Общий EntityManager не переводит
+ * ошибки flush в DataAccessException, поэтому ловится и PersistenceException
+ */
+@Component
+@Slf4j
+public class ItemBulkImporter {
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_DESCRIPTION_LENGTH = 512;
+
+    private final ItemRepository itemRepository;
+    private final RequestRepository requestRepository;
+    private final ItemSearchIndex searchIndex;
+    private final SearchResultCache searchCache;
+    private final EntityUtils utils;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public ItemBulkImporter(ItemRepository itemRepository,
+                            RequestRepository requestRepository,
+                            ItemSearchIndex searchIndex,
+                            SearchResultCache searchCache,
+                            EntityUtils utils,
+                            EntityManager entityManager,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${shareit.item.bulk.batch-size:500}") int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Bulk batch size must be positive");
+        }
+        this.itemRepository = itemRepository;
+        this.requestRepository = requestRepository;
+        this.searchIndex = searchIndex;
+        this.searchCache = searchCache;
+        this.utils = utils;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * JSON-массив вещей. После синтаксической ошибки позиция в массиве теряется, поэтому чтение
+     * останавливается, а уже прочитанные строки импортируются
+     */
+    public List<ItemBulkResultDto> importJson(InputStream body, long userId) throws IOException {
+        var itemImport = new Import(utils.getUserIfExists(userId));
+        try (MappingIterator<ItemDto> rows = objectMapper.readerFor(ItemDto.class).readValues(body)) {
+            while (rows.hasNextValue()) {
+                itemImport.add(rows.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            itemImport.reject("Malformed item: " + e.getOriginalMessage());
+        }
+        return itemImport.finish(userId);
+    }
+
+    /**
+     * NDJSON: каждая непустая строка - отдельная вещь, ошибка разбора строки не мешает следующим
+     */
+    public List<ItemBulkResultDto> importNdjson(InputStream body, long userId) throws IOException {
+        var itemImport = new Import(utils.getUserIfExists(userId));
+        var reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                itemImport.add(objectMapper.readValue(line, ItemDto.class));
+            } catch (JsonProcessingException e) {
+                itemImport.reject("Malformed item: " + e.getOriginalMessage());
+            }
+        }
+        return itemImport.finish(userId);
+    }
+
+    private static String validate(ItemDto dto) {
+        if (dto == null) {
+            return "Item must not be null";
+        }
+        if (dto.getName() == null || dto.getName().isBlank()) {
+            return "Item name must not be blank";
+        }
+        if (dto.getName().length() > MAX_NAME_LENGTH) {
+            return "Item name must not be longer than " + MAX_NAME_LENGTH + " characters";
+        }
+        if (dto.getDescription() == null || dto.getDescription().isBlank()) {
+            return "Item description must not be blank";
+        }
+        if (dto.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
+            return "Item description must not be longer than " + MAX_DESCRIPTION_LENGTH + " characters";
+        }
+        if (dto.getAvailable() == null) {
+            return "Item availability must be set";
+        }
+        return null;
+    }
+
+    private void insert(List<Item> items) {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            itemRepository.saveAll(items);
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+
+    /**
+     * Состояние одного импорта: результаты всех строк и еще не записанная порция
+     */
+    private class Import {
+        private final User owner;
+        private final List<ItemBulkResultDto> results = new ArrayList<>();
+        private final List<Integer> pending = new ArrayList<>();
+        private final List<ItemDto> pendingRows = new ArrayList<>();
+
+        Import(User owner) {
+            this.owner = owner;
+        }
+
+        void add(ItemDto dto) {
+            var index = results.size();
+            var error = validate(dto);
+            results.add(error == null ? null : ItemBulkResultDto.failed(index, error));
+            if (error == null) {
+                pending.add(index);
+                pendingRows.add(dto);
+                if (pending.size() == batchSize) {
+                    flush();
+                }
+            }
+        }
+
+        void reject(String error) {
+            results.add(ItemBulkResultDto.failed(results.size(), error));
+        }
+
+        List<ItemBulkResultDto> finish(long userId) {
+            flush();
+            var saved = results.stream().filter(result -> result.getError() == null).count();
+            log.info("Imported {} of {} items for user with id={}", saved, results.size(), userId);
+            return results;
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            var requestIds = pendingRows.stream()
+                    .map(ItemDto::getRequestId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            var existingRequests = requestIds.isEmpty() ? Set.<Long>of()
+                    : new HashSet<>(requestRepository.findIdsByIdIn(requestIds));
+            var indexes = new ArrayList<Integer>();
+            var items = new ArrayList<Item>();
+            for (int i = 0; i < pending.size(); i++) {
+                var dto = pendingRows.get(i);
+                var index = pending.get(i);
+                if (dto.getRequestId() != null && !existingRequests.contains(dto.getRequestId())) {
+                    results.set(index, ItemBulkResultDto.failed(index,
+                            String.format("Item request with id=%d not exists", dto.getRequestId())));
+                    continue;
+                }
+                var item = ItemMapper.toItem(dto, owner);
+                if (dto.getRequestId() != null) {
+                    item.setRequest(requestRepository.getReferenceById(dto.getRequestId()));
+                }
+                indexes.add(index);
+                items.add(item);
+            }
+            pending.clear();
+            pendingRows.clear();
+            if (items.isEmpty()) {
+                return;
+            }
+            try {
+                insert(items);
+                for (int i = 0; i < items.size(); i++) {
+                    saved(indexes.get(i), items.get(i));
+                }
+            } catch (DataAccessException | PersistenceException | TransactionException e) {
+                log.warn("Batch of {} items failed, retrying one by one: {}", items.size(), e.getMessage());
+                for (int i = 0; i < items.size(); i++) {
+                    var item = items.get(i);
+                    item.setId(null);
+                    try {
+                        insert(List.of(item));
+                        saved(indexes.get(i), item);
+                    } catch (DataAccessException | PersistenceException | TransactionException rowError) {
+                        results.set(indexes.get(i), ItemBulkResultDto.failed(indexes.get(i), "Failed to save item"));
+                    }
+                }
+            }
+            searchCache.invalidate(items.stream()
+                    .flatMap(item -> Stream.of(item.getName(), item.getDescription()))
+                    .collect(Collectors.toList()));
+        }
+
+        /**
+         * Вызывается после коммита, поэтому в индекс не попадают id откаченных вставок
+         */
+        private void saved(int index, Item item) {
+            searchIndex.index(item);
+            results.set(index, ItemBulkResultDto.ok(index, item.getId()));
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package ru.practicum.shareit.item.service;
 
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.shareit.item.comment.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemSearchResultDto;
+import ru.practicum.shareit.util.ExportFormat;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public interface ItemService {
@@ -20,8 +25,23 @@ public interface ItemService {
     List<ItemDto> findAllByUserId(long userId);
 
     @Transactional(readOnly = true)
-    List<ItemDto> searchByText(String text);
+    StreamingResponseBody exportAllByOwner(long userId, ExportFormat format);
+
+    @Transactional(readOnly = true)
+    List<ItemDto> searchByText(String text, boolean ranked, boolean fuzzy, int from, int size);
+
+    @Transactional(readOnly = true)
+    ItemSearchResultDto searchWithFacets(String text, boolean ranked, boolean fuzzy, int from, int size);
+
+    @Transactional(readOnly = true)
+    List<String> suggest(String prefix, int size);
+
+    @Transactional(readOnly = true)
+    ItemAvailabilityDto findAvailability(long itemId, LocalDate from, LocalDate to);
 
     @Transactional
     CommentDto addComment(long itemId, long userId, CommentDto commentDto);
+
+    @Transactional(readOnly = true)
+    List<CommentDto> findComments(long itemId, Long after, int size);
 }
@@ -2,24 +2,41 @@ package ru.practicum.shareit.item.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.practicum.shareit.booking.model.Booking;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.UserOwnershipException;
 import ru.practicum.shareit.item.comment.dto.CommentDto;
 import ru.practicum.shareit.item.comment.dto.CommentMapper;
+import ru.practicum.shareit.item.comment.dto.CommentView;
+import ru.practicum.shareit.item.cache.ItemDetailCache;
 import ru.practicum.shareit.item.comment.repository.CommentRepository;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.dto.ItemView;
+import ru.practicum.shareit.item.dto.ItemSearchResultDto;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemFacetsCollector;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.item.search.SearchResultCache;
 import ru.practicum.shareit.request.repository.RequestRepository;
+import ru.practicum.shareit.util.CursorExporter;
 import ru.practicum.shareit.util.EntityUtils;
+import ru.practicum.shareit.util.ExportFormat;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static ru.practicum.shareit.item.dto.ItemMapper.toItem;
@@ -29,11 +46,21 @@ import static ru.practicum.shareit.item.dto.ItemMapper.toItemDto;
 @RequiredArgsConstructor
 @Slf4j
 public class ItemServiceImpl implements ItemService {
+    private static final int TOP_OWNERS = 5;
+    private static final int MAX_AVAILABILITY_DAYS = 366;
+    public static final int EMBEDDED_COMMENTS = 10;
+    public static final int MAX_COMMENTS_PAGE = 100;
 
     private final ItemRepository itemRepository;
     private final BookingRepository bookingRepository;
+    private final OwnerBookingViewRepository ownerBookingViewRepository;
     private final CommentRepository commentRepository;
     private final RequestRepository requestRepository;
+    private final ItemSearchIndex searchIndex;
+    private final SearchResultCache searchCache;
+    private final ItemDetailCache detailCache;
+    private final BookingIntervalIndex intervalIndex;
+    private final CursorExporter exporter;
     private final EntityUtils utils;
 
     @Override
@@ -44,10 +71,16 @@ public class ItemServiceImpl implements ItemService {
             var request = requestRepository.findById(itemDto.getRequestId()).orElseThrow();
             var item = ItemMapper.toItem(itemDto, user);
             item.setRequest(request);
-            return toItemDto(itemRepository.save(item));
+            var savedItem = itemRepository.save(item);
+            searchIndex.index(savedItem);
+            searchCache.invalidate(Arrays.asList(savedItem.getName(), savedItem.getDescription()));
+            return toItemDto(savedItem);
         }
         log.info("Created item with id={} from user with id={}", itemDto, userId);
-        return toItemDto(itemRepository.save(toItem(itemDto, utils.getUserIfExists(userId))));
+        var savedItem = itemRepository.save(toItem(itemDto, utils.getUserIfExists(userId)));
+        searchIndex.index(savedItem);
+        searchCache.invalidate(Arrays.asList(savedItem.getName(), savedItem.getDescription()));
+        return toItemDto(savedItem);
     }
 
     @Override
@@ -58,6 +91,8 @@ public class ItemServiceImpl implements ItemService {
             throw new UserOwnershipException("User with id=" + userId +
                     " is not the owner of the item with id=" + itemId);
         }
+        var oldName = updatedItem.getName();
+        var oldDescription = updatedItem.getDescription();
 
         Optional.ofNullable(itemDto.getName()).ifPresent(updatedItem::setName);
         Optional.ofNullable(itemDto.getDescription()).ifPresent(updatedItem::setDescription);
@@ -65,6 +100,13 @@ public class ItemServiceImpl implements ItemService {
 
         updatedItem.setOwner(utils.getUserIfExists(userId));
         itemRepository.save(updatedItem);
+        if (!Objects.equals(oldName, updatedItem.getName())) {  //Название вещи скопировано в проекцию бронирований
+            ownerBookingViewRepository.updateItemName(itemId, updatedItem.getName());
+        }
+        searchIndex.index(updatedItem);
+        detailCache.invalidateSnapshot(itemId);
+        searchCache.invalidate(Arrays.asList(oldName, oldDescription,
+                updatedItem.getName(), updatedItem.getDescription()));
 
         log.info("Item with id={} updated by user with id={}", itemId, userId);
         return toItemDto(updatedItem);
@@ -73,13 +115,25 @@ public class ItemServiceImpl implements ItemService {
     @Override
     @Transactional(readOnly = true)
     public ItemDto findById(long itemId, long userId) {
-        var item = utils.getItemIfExists(itemId);
-        var itemDto = ItemMapper.toItemDto(item);
-        if (Objects.equals(item.getOwner().getId(), userId)) {
-            addBookings(itemDto);
+        //Вещь с отзывами общая для всех, бронирования владельца кэшируются отдельным слоем
+        var loaded = new AtomicReference<Item>();
+        var snapshot = detailCache.getSnapshot(itemId, () -> {
+            var item = utils.getItemIfExists(itemId);
+            loaded.set(item);
+            var comments = commentRepository.findLatestByItemIdIn(List.of(itemId), EMBEDDED_COMMENTS);
+            return new ItemDetailCache.Snapshot(addCommentsDto(toItemDto(item), item.getCommentCount(), comments),
+                    item.getOwner() != null ? item.getOwner().getId() : null);
+        });
+        var itemDto = snapshot.getItem();
+        if (Objects.equals(snapshot.getOwnerId(), userId)) {
+            var bookings = detailCache.getBookings(itemId, () -> {
+                var item = loaded.get() != null ? loaded.get() : utils.getItemIfExists(itemId);
+                var withBookings = addBookings(new ItemDto(), item);
+                return new ItemDetailCache.Bookings(withBookings.getLastBooking(), withBookings.getNextBooking());
+            });
+            itemDto.setLastBooking(bookings.getLast());
+            itemDto.setNextBooking(bookings.getNext());
         }
-
-        addCommentsDto(itemDto);
         log.info("Get item by id={}", itemId);
         return itemDto;
     }
@@ -88,26 +142,132 @@ public class ItemServiceImpl implements ItemService {
     @Transactional(readOnly = true)
     public List<ItemDto> findAllByUserId(long userId) {
         log.info("Get all items by user with id={}", userId);
-        return itemRepository.findAllByOwnerId(userId)
-                .stream()
-                .map(ItemMapper::toItemDto)
-                .map(this::addCommentsDto)
-                .map(this::addBookings)
-                .sorted(Comparator.comparing(ItemDto::getId))
+        var items = itemRepository.findAllViewsByOwnerId(userId);
+        if (items.isEmpty()) {
+            return Collections.emptyList();
+        }
+        //Последние отзывы всех вещей загружаются одним запросом, бронирования и число отзывов читаются из колонок вещей
+        var itemIds = items.stream()
+                .map(ItemView::getId)
                 .collect(Collectors.toList());
+        var comments = commentRepository.findLatestByItemIdIn(itemIds, EMBEDDED_COMMENTS).stream()
+                .collect(Collectors.groupingBy(CommentView::getItemId));
+        return items.stream()
+                .map(item -> {
+                    var itemDto = ItemMapper.toItemDto(item);
+                    itemDto.setLastBooking(nearBy(item.getLastBookingId(), item.getLastBookerId()));
+                    itemDto.setNextBooking(nearBy(item.getNextBookingId(), item.getNextBookerId()));
+                    return addCommentsDto(itemDto, item.getCommentCount(),
+                            comments.getOrDefault(item.getId(), List.of()));
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public StreamingResponseBody exportAllByOwner(long userId, ExportFormat format) {
+        utils.getUserIfExists(userId);
+        log.info("Export items of owner with id={} as {}", userId, format);
+        return exporter.export(ItemRepository.EXPORT_BY_OWNER, format, userId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemDto> searchByText(String text, boolean ranked, boolean fuzzy, int from, int size) {
+        if (from < 0 || size <= 0) {
+            throw new BadRequestException("Bad params from or size for request");
+        }
+        log.info("Get list by search by text='{}', ranked={}, fuzzy={}", text, ranked, fuzzy);
+        if (text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return searchCache.get(text, ranked, fuzzy, from, size, () -> search(text, ranked, fuzzy, from, size));
+    }
+
+    private List<ItemDto> search(String text, boolean ranked, boolean fuzzy, int from, int size) {
+        if (!searchIndex.isEnabled()) {   //Нечеткий поиск доступен только в индексе, в базе ищем подстроку
+            var pattern = toLikePattern(text);
+            return (ranked ? itemRepository.searchRanked(pattern, from, size)
+                    : itemRepository.search(pattern, from, size)).stream()
+                    .map(ItemMapper::toItemDto)
+                    .collect(Collectors.toList());
+        }
+        var ids = ranked ? searchIndex.searchRanked(text, fuzzy, (int) Math.min((long) from + size, Integer.MAX_VALUE))
+                : searchIndex.search(text, fuzzy);
+        return findAllInOrder(ids.stream()
+                .skip(from)
+                .limit(size)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Метод возвращает страницу найденных вещей вместе с фасетами по всем совпадениям:
+     * доступность, наличие запроса и владельцы с наибольшим числом найденных вещей
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ItemSearchResultDto searchWithFacets(String text, boolean ranked, boolean fuzzy, int from, int size) {
+        var items = searchByText(text, ranked, fuzzy, from, size);
+        if (text.isEmpty()) {
+            return new ItemSearchResultDto(items, new ItemFacetsCollector().build(TOP_OWNERS));
+        }
+        if (searchIndex.isEnabled()) {
+            return new ItemSearchResultDto(items, searchIndex.facets(text, fuzzy, TOP_OWNERS));
+        }
+        var collector = new ItemFacetsCollector();
+        itemRepository.searchFacets(toLikePattern(text)).forEach(row -> collector.add(row.getAvailable(),
+                row.getAnswered(), row.getOwnerId(), row.getTotal()));
+        return new ItemSearchResultDto(items, collector.build(TOP_OWNERS));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<ItemDto> searchByText(String text) {
-        log.info("Get list by search by text='{}'", text);
-        return text.isEmpty() ? Collections.emptyList() :
-                itemRepository.findAll().stream()
-                        .filter(item -> item.getName().toLowerCase().contains(text.toLowerCase())
-                                || item.getDescription().toLowerCase().contains(text.toLowerCase())
-                                && item.getAvailable())
-                        .map(ItemMapper::toItemDto)
-                        .collect(Collectors.toList());
+    public List<String> suggest(String prefix, int size) {
+        if (size <= 0 || size > ItemSearchIndex.MAX_SUGGESTIONS) {
+            throw new BadRequestException("Size must be from 1 to " + ItemSearchIndex.MAX_SUGGESTIONS);
+        }
+        log.info("Get name suggestions by prefix='{}'", prefix);
+        if (prefix == null || prefix.isBlank()) {
+            return Collections.emptyList();
+        }
+        return searchIndex.isEnabled() ? searchIndex.suggest(prefix, size)
+                : itemRepository.suggestNames(toLikePrefix(prefix), PageRequest.of(0, size));
+    }
+
+    /**
+     * Метод возвращает календарь вещи на отрезке [from, to]: занятые и свободные отрезки дней.
+     * Календарь строится по битовой карте занятых дней без загрузки бронирований.
+     * Отрезки начинаются не раньше сегодняшнего дня, одинаково с индексом и без него
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ItemAvailabilityDto findAvailability(long itemId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= MAX_AVAILABILITY_DAYS) {
+            throw new BadRequestException("Bad params from or to for request");
+        }
+        utils.getItemIfExists(itemId);
+        List<ItemAvailabilityDto.DateRange> busy = new ArrayList<>();
+        List<ItemAvailabilityDto.DateRange> free = new ArrayList<>();
+        var today = LocalDate.now();
+        var first = from.isBefore(today) ? today : from;   //Прошедшие дни не бронируются, индекс их не хранит
+        if (!first.isAfter(to)) {
+            var busyDays = intervalIndex.findBusyDays(itemId, first, to);
+            int length = (int) ChronoUnit.DAYS.between(first, to) + 1;
+            for (int day = 0; day < length; ) {
+                boolean isBusy = busyDays.get(day);
+                int next = Math.min(length, isBusy ? busyDays.nextClearBit(day) : nextSetBit(busyDays, day, length));
+                (isBusy ? busy : free).add(new ItemAvailabilityDto.DateRange(first.plusDays(day),
+                        first.plusDays(next - 1)));
+                day = next;
+            }
+        }
+        log.info("Get availability of item with id={} from {} to {}", itemId, from, to);
+        return new ItemAvailabilityDto(itemId, from, to, busy, free);
+    }
+
+    private static int nextSetBit(BitSet bits, int from, int length) {
+        int next = bits.nextSetBit(from);
+        return next < 0 ? length : next;
     }
 
     @Override
@@ -121,11 +281,31 @@ public class ItemServiceImpl implements ItemService {
         comment.setAuthor(utils.getUserIfExists(userId));
         comment.setItem(utils.getItemIfExists(itemId));
         comment.setCreated(LocalDateTime.now());
+        itemRepository.incrementCommentCount(itemId);
+        detailCache.invalidateSnapshot(itemId);
 
         log.info("Comment from user with id={} to item with id={} added", userId, itemId);
         return CommentMapper.toCommentDto(commentRepository.save(comment));
     }
 
+    /**
+     * Метод возвращает страницу истории отзывов вещи от новых к старым, не больше MAX_COMMENTS_PAGE отзывов.
+     * Следующая страница запрашивается по id последнего отзыва предыдущей
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<CommentDto> findComments(long itemId, Long after, int size) {
+        if (size <= 0 || size > MAX_COMMENTS_PAGE) {
+            throw new BadRequestException("Size must be from 1 to " + MAX_COMMENTS_PAGE);
+        }
+        utils.getItemIfExists(itemId);
+        log.info("Get comments of item with id={} after {}", itemId, after);
+        return commentRepository.findAllByItemIdAndIdLessThanOrderByIdDesc(itemId,
+                        after != null ? after : Long.MAX_VALUE, PageRequest.of(0, size)).stream()
+                .map(CommentMapper::toCommentDto)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Метод проверяет наличие бронирования вещи пользователем,
      * создан для увеличения читаемости кода
@@ -136,37 +316,57 @@ public class ItemServiceImpl implements ItemService {
                         && booking.getStart().isBefore(LocalDateTime.now()));
     }
 
-    private ItemDto addCommentsDto(ItemDto itemDto) {
-        var comments = commentRepository.findAllByItemId(itemDto.getId());
+    /**
+     * Метод загружает вещи по списку id, сохраняя порядок списка
+     */
+    private List<ItemDto> findAllInOrder(List<Long> ids) {
+        var itemsById = itemRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Item::getId, ItemMapper::toItemDto));
+        return ids.stream()
+                .map(itemsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Метод экранирует спецсимволы LIKE и оборачивает текст в шаблон поиска подстроки
+     */
+    private static String toLikePattern(String text) {
+        return "%" + toLikePrefix(text);
+    }
+
+    private static String toLikePrefix(String text) {
+        return text.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Метод встраивает в вещь последние отзывы в порядке добавления и общее число отзывов из счетчика вещи
+     */
+    private static ItemDto addCommentsDto(ItemDto itemDto, Integer commentCount, List<CommentView> comments) {
         itemDto.setComments(comments.stream()
                 .map(CommentMapper::toCommentDto)
                 .collect(Collectors.toList()));
+        itemDto.setCommentCount(commentCount != null ? commentCount : comments.size());
         return itemDto;
     }
 
-    private ItemDto addBookings(ItemDto itemDto) {
-        var bookings = bookingRepository.findAllByItemId(itemDto.getId());
-
-        var prevBooking = bookings.stream()
-                .filter(b -> b.getStart().isBefore(LocalDateTime.now()))
-                .max(Comparator.comparing(Booking::getEnd))
-                .orElse(null);
-
-        var nextBooking = bookings.stream()
-                .filter(b -> b.getStatus().equals(Status.APPROVED))
-                .filter(b -> b.getStart().isAfter(LocalDateTime.now()))
-                .min(Comparator.comparing(Booking::getStart))
-                .orElse(null);
-
-        itemDto.setLastBooking(prevBooking != null ? ItemDto.NearByBooking.builder()
-                .id(prevBooking.getId())
-                .bookerId(prevBooking.getBooker().getId())
-                .build() : null);
-
-        itemDto.setNextBooking(nextBooking != null ? ItemDto.NearByBooking.builder()
-                .id(nextBooking.getId())
-                .bookerId(nextBooking.getBooker().getId())
-                .build() : null);
+    /**
+     * Метод заполняет последнее и ближайшее следующее бронирование вещи из ее колонок-указателей,
+     * которые поддерживает ItemBookingPointers
+     */
+    private static ItemDto addBookings(ItemDto itemDto, Item item) {
+        itemDto.setLastBooking(nearBy(item.getLastBookingId(), item.getLastBookerId()));
+        itemDto.setNextBooking(nearBy(item.getNextBookingId(), item.getNextBookerId()));
         return itemDto;
     }
+
+    private static ItemDto.NearByBooking nearBy(Long bookingId, Long bookerId) {
+        return bookingId != null ? ItemDto.NearByBooking.builder()
+                .id(bookingId)
+                .bookerId(bookerId)
+                .build() : null;
+    }
 }
@@ -18,6 +18,15 @@ public class ItemRequestMapper {
                 .build();
     }
 
+    public static ItemRequestDto toItemRequestDto(ItemRequestView view, List<ItemDto> items) {
+        return ItemRequestDto.builder()
+                .id(view.getId())
+                .description(view.getDescription())
+                .created(view.getCreated())
+                .items(items)
+                .build();
+    }
+
     public static ItemRequest toItemRequest(ItemRequestDto dto) {
         return ItemRequest.builder()
                 .id(dto.getId())
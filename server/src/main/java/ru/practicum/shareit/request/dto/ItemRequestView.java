@@ -0,0 +1,14 @@
+package ru.practicum.shareit.request.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запрос вещи без автора для списков запросов
+ */
+public interface ItemRequestView {
+    Long getId();
+
+    String getDescription();
+
+    LocalDateTime getCreated();
+}
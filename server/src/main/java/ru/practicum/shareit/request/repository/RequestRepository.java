@@ -1,16 +1,29 @@
 package ru.practicum.shareit.request.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.request.dto.ItemRequestView;
 import ru.practicum.shareit.request.model.ItemRequest;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface RequestRepository extends JpaRepository<ItemRequest, Long> {
-    Page<ItemRequest> findAllByRequestorIdNot(long id, Pageable pageable);
+    /**
+     * Списки запросов читаются в проекцию без автора, страница запросов других пользователей - без подсчета строк
+     */
+    @Query("select r.id as id, r.description as description, r.created as created from ItemRequest r " +
+            "where r.requestor.id <> :requestorId")
+    List<ItemRequestView> findAllByRequestorIdNot(@Param("requestorId") long id, Pageable pageable);
 
-    List<ItemRequest> findAllByRequestorId(long id);
+    @Query("select r.id as id, r.description as description, r.created as created from ItemRequest r " +
+            "where r.requestor.id = :requestorId")
+    List<ItemRequestView> findAllByRequestorId(@Param("requestorId") long id);
+
+    @Query("select r.id from ItemRequest r where r.id in :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
 }
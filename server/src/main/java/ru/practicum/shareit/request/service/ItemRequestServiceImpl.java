@@ -3,13 +3,15 @@ package ru.practicum.shareit.request.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.dto.ItemView;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.request.dto.ItemRequestView;
 import ru.practicum.shareit.request.repository.RequestRepository;
 import ru.practicum.shareit.util.EntityUtils;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -36,12 +38,7 @@ public class ItemRequestServiceImpl implements ItemRequestService {
     @Override
     public List<ItemRequestDto> findAllByUser(long userId) {
         entityUtils.getUserIfExists(userId);
-        return requestRepository.findAllByRequestorId(userId).stream()
-                .map(itemRequest -> toItemRequestDto(itemRequest,
-                        itemRepository.findAllByRequestId(itemRequest.getId()).stream()
-                                .map(ItemMapper::toItemDto)
-                                .collect(Collectors.toList())))
-                .collect(Collectors.toList());
+        return withItems(requestRepository.findAllByRequestorId(userId));
     }
 
     @Override
@@ -50,7 +47,7 @@ public class ItemRequestServiceImpl implements ItemRequestService {
 
         var itemRequest = entityUtils.getItemRequestIfExists(id);
 
-        var items = itemRepository.findAllByRequestId(id).stream()
+        var items = itemRepository.findAllViewsByRequestIdIn(List.of(id)).stream()
                 .map(ItemMapper::toItemDto)
                 .collect(Collectors.toList());
         return toItemRequestDto(itemRequest, items);
@@ -58,19 +55,23 @@ public class ItemRequestServiceImpl implements ItemRequestService {
 
     @Override
     public List<ItemRequestDto> findAllByParams(long userId, Pageable pageable) {
-        return requestRepository.findAllByRequestorIdNot(userId, pageable).stream()
-                .map(itemRequest -> toItemRequestDto(itemRequest,
-                        getItemDtoListByRequestId(itemRequest.getId())))
-                .collect(Collectors.toList());
+        return withItems(requestRepository.findAllByRequestorIdNot(userId, pageable));
     }
 
     /**
-     * Метод по requestsId достает список вещей и преобразует их в Dto
-     * нужен для упрощения чтения кода
+     * Метод достает вещи всех запросов списка одним запросом и раскладывает их по запросам
      */
-    private List<ItemDto> getItemDtoListByRequestId(long requestsId) {
-        return itemRepository.findAllByRequestId(requestsId).stream()
-                .map(ItemMapper::toItemDto)
+    private List<ItemRequestDto> withItems(List<ItemRequestView> requests) {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        var items = itemRepository.findAllViewsByRequestIdIn(requests.stream()
+                        .map(ItemRequestView::getId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.groupingBy(ItemView::getRequestId,
+                        Collectors.mapping(ItemMapper::toItemDto, Collectors.toList())));
+        return requests.stream()
+                .map(request -> toItemRequestDto(request, items.getOrDefault(request.getId(), List.of())))
                 .collect(Collectors.toList());
     }
 }
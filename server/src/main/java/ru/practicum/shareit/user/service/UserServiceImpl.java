@@ -4,7 +4,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
 import ru.practicum.shareit.exception.AlreadyExistsException;
+import ru.practicum.shareit.item.cache.ItemDetailCache;
+import ru.practicum.shareit.item.comment.repository.CommentRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.item.search.SearchResultCache;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.repository.UserRepository;
@@ -23,6 +29,12 @@ import static ru.practicum.shareit.user.dto.UserMapper.toUserDto;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository repository;
+    private final ItemRepository itemRepository;
+    private final CommentRepository commentRepository;
+    private final ItemSearchIndex searchIndex;
+    private final SearchResultCache searchCache;
+    private final ItemDetailCache detailCache;
+    private final BookingIntervalIndex intervalIndex;
     private final EntityUtils utils;
 
     @Override
@@ -45,6 +57,9 @@ public class UserServiceImpl implements UserService {
         var updatedUser = utils.getUserIfExists(userId);
 
         if (userDto.getName() != null) {
+            if (!userDto.getName().equals(updatedUser.getName())) {
+                detailCache.invalidateAll();    //Имя пользователя входит в закэшированные отзывы
+            }
             updatedUser.setName(userDto.getName());
         }
         if (userDto.getEmail() != null) {
@@ -58,7 +73,15 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public void deleteById(long id) {
+        var commentedItemIds = commentRepository.findItemIdsByAuthorId(id);
         repository.deleteById(id);
+        if (!commentedItemIds.isEmpty()) {   //Отзывы пользователя удаляются каскадно, счетчики вещей пересчитываются
+            itemRepository.refreshCommentCounts(commentedItemIds);
+        }
+        searchIndex.removeByOwner(id);
+        searchCache.invalidateAll();
+        detailCache.invalidateAll();
+        intervalIndex.removeByUser(id);
         log.info("User with id={} deleted", id);
     }
 
@@ -0,0 +1,198 @@
+package ru.practicum.shareit.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.exception.TooManyRequestsException;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Выгрузка результата запроса прямо в ответ. Строки читаются однонаправленным курсором порциями
+ * по fetchSize и сразу пишутся в поток, поэтому память не зависит от числа строк. PostgreSQL держит
+ * курсор только внутри транзакции, поэтому вне транзакции на время выгрузки autocommit выключается.
+ * Имена полей берутся из псевдонимов колонок запроса.
+ * Выгрузка держит соединение с базой, пока клиент читает ответ, поэтому одновременных выгрузок
+ * не больше maxConcurrent (остальные получают 429), и пишутся они в собственном пуле потоков
+ * того же размера с отдельным таймаутом, а не в общем пуле асинхронных запросов
+ */
+@Component
+public class CursorExporter {
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final ThreadPoolTaskExecutor executor;
+
+    public CursorExporter(JdbcTemplate jdbcTemplate,
+                          ObjectMapper objectMapper,
+                          @Value("${shareit.export.fetch-size:500}") int fetchSize,
+                          @Value("${shareit.export.max-concurrent:4}") int maxConcurrent,
+                          @Value("${shareit.export.timeout-ms:1800000}") long timeoutMillis) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Export fetch size must be positive");
+        }
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Export concurrency must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(maxConcurrent);
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setThreadNamePrefix("export-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Место для выгрузки занимается сразу, чтобы отказ пришел обычным ответом до начала тела.
+     * Запрос выполняется при записи тела ответа, после нее место освобождается
+     */
+    public StreamingResponseBody export(String sql, ExportFormat format, Object... args) {
+        if (!permits.tryAcquire()) {
+            throw new TooManyRequestsException("Too many concurrent exports, try again later");
+        }
+        return out -> {
+            try {
+                jdbcTemplate.execute((ConnectionCallback<Object>) connection -> {
+                    query(connection, sql, args, format, out);
+                    return null;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    /**
+     * Асинхронный ответ с телом выгрузки в пуле выгрузок и с таймаутом выгрузок
+     */
+    public WebAsyncTask<Void> respond(StreamingResponseBody body, ExportFormat format, HttpServletResponse response) {
+        response.setContentType(format.getMediaType().toString());
+        return new WebAsyncTask<>(timeoutMillis, executor, () -> {
+            body.writeTo(response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+
+    private void query(Connection connection, String sql, Object[] args, ExportFormat format, OutputStream out)
+            throws SQLException {
+        var autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try (var statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            try (var rows = statement.executeQuery()) {
+                if (format == ExportFormat.CSV) {
+                    writeCsv(rows, out);
+                } else {
+                    writeNdjson(rows, out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } finally {
+            if (autoCommit) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void writeNdjson(ResultSet rows, OutputStream out) throws SQLException, IOException {
+        var columns = rows.getMetaData().getColumnCount();
+        var generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        var count = 0;
+        while (rows.next()) {
+            generator.writeStartObject();
+            for (int i = 1; i <= columns; i++) {
+                generator.writeObjectField(rows.getMetaData().getColumnLabel(i), value(rows, i));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (++count % fetchSize == 0) {
+                generator.flush();
+            }
+        }
+        generator.close();
+    }
+
+    private void writeCsv(ResultSet rows, OutputStream out) throws SQLException, IOException {
+        var columns = rows.getMetaData().getColumnCount();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (int i = 1; i <= columns; i++) {
+            writer.write((i > 1 ? "," : "") + csv(rows.getMetaData().getColumnLabel(i)));
+        }
+        writer.write("\r\n");
+        var count = 0;
+        while (rows.next()) {
+            for (int i = 1; i <= columns; i++) {
+                var value = value(rows, i);
+                writer.write((i > 1 ? "," : "") + (value == null ? "" : csv(value.toString())));
+            }
+            writer.write("\r\n");
+            if (++count % fetchSize == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+
+    private static Object value(ResultSet rows, int column) throws SQLException {
+        var value = rows.getObject(column);
+        if (value instanceof Timestamp) {
+            return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(((Timestamp) value).toLocalDateTime());
+        }
+        return value;
+    }
+
+    /**
+     * Значение с запятой, кавычкой или переводом строки заключается в кавычки по RFC 4180
+     */
+    static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
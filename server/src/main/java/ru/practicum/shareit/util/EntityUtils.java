@@ -3,8 +3,6 @@ package ru.practicum.shareit.util;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import ru.practicum.shareit.booking.model.Booking;
-import ru.practicum.shareit.booking.model.State;
-import ru.practicum.shareit.booking.model.Status;
 import ru.practicum.shareit.booking.repository.BookingRepository;
 import ru.practicum.shareit.exception.NotExistException;
 import ru.practicum.shareit.item.model.Item;
@@ -14,11 +12,6 @@ import ru.practicum.shareit.request.repository.RequestRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
-import java.time.LocalDateTime;
-import java.util.EnumMap;
-import java.util.Map;
-import java.util.function.Predicate;
-
 @Component
 @RequiredArgsConstructor
 public class EntityUtils {
@@ -27,27 +20,6 @@ public class EntityUtils {
     private final BookingRepository bookingRepository;
     private final RequestRepository requestRepository;
 
-    /**
-     * Фильтр для определения статуса бронирования
-     * EnumMap для быстрого доступа и статический утильный метод
-     */
-    private static final Map<State, Predicate<Booking>> STATE_FILTER = new EnumMap<>(State.class);
-
-    static {
-        STATE_FILTER.put(State.ALL, b -> true);
-        STATE_FILTER.put(State.PAST, b -> b.getEnd().isBefore(LocalDateTime.now()));
-        STATE_FILTER.put(State.FUTURE, b -> b.getStart().isAfter(LocalDateTime.now()));
-        STATE_FILTER.put(State.CURRENT, b -> b.getStart().isBefore(LocalDateTime.now())
-                && b.getEnd().isAfter(LocalDateTime.now()));
-        STATE_FILTER.put(State.WAITING, b -> b.getStatus().equals(Status.WAITING));
-        STATE_FILTER.put(State.REJECTED, b -> b.getStatus().equals(Status.REJECTED));
-    }
-
-    public static Predicate<Booking>
-    stateBy(State state) {
-        return STATE_FILTER.get(state);
-    }
-
     /**
      * Методы проверки наличия сущности
      * возвращают либо сущность, либо выбрасывают исключение
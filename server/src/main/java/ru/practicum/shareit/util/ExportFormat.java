@@ -0,0 +1,29 @@
+package ru.practicum.shareit.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import ru.practicum.shareit.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Формат выгрузки: NDJSON - JSON-объект на строку, CSV - строка заголовка и значения через запятую
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+    NDJSON(MediaType.parseMediaType("application/x-ndjson")),
+    CSV(new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+    private final MediaType mediaType;
+
+    public static ExportFormat of(String format) {
+        for (var value : values()) {
+            if (value.name().equalsIgnoreCase(format)) {
+                return value;
+            }
+        }
+        throw new BadRequestException("Unknown export format: " + format);
+    }
+}
@@ -1,50 +1,115 @@
+DROP TABLE IF EXISTS owner_booking_view CASCADE;
 DROP TABLE IF EXISTS comments CASCADE;
 DROP TABLE IF EXISTS bookings CASCADE;
 DROP TABLE IF EXISTS requests CASCADE;
 DROP TABLE IF EXISTS users CASCADE;
 DROP TABLE IF EXISTS items CASCADE;
+DROP SEQUENCE IF EXISTS user_seq;
+DROP SEQUENCE IF EXISTS item_request_seq;
+DROP SEQUENCE IF EXISTS item_seq;
+DROP SEQUENCE IF EXISTS booking_seq;
+DROP SEQUENCE IF EXISTS comment_seq;
+
+-- Id выдает пул Hibernate: nextval резервирует блок из 50 id (AbstractBaseEntity), шаг последовательности
+-- должен совпадать с размером блока. Вставки в обход Hibernate берут nextval из умолчания колонки
+CREATE SEQUENCE IF NOT EXISTS user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS item_request_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS item_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS booking_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS comment_seq START WITH 1 INCREMENT BY 50;
 
 CREATE TABLE IF NOT EXISTS users
 (
-    id    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id    BIGINT DEFAULT nextval('user_seq') PRIMARY KEY,
     name  VARCHAR(255)                            NOT NULL,
     email VARCHAR(128)                            NOT NULL
 );
 CREATE UNIQUE INDEX IF NOT EXISTS users_unique_email_idx ON users(email);
 
 CREATE TABLE IF NOT EXISTS requests (
-    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id              BIGINT DEFAULT nextval('item_request_seq') PRIMARY KEY,
     description     VARCHAR                                     NOT NULL,
     requestor_id    BIGINT                                      NOT NULL,
-    created         TIMESTAMP WITHOUT TIME ZONE DEFAULT now(),
-    CONSTRAINT fk_requests_users FOREIGN KEY (requestor_id) REFERENCES users(id) ON DELETE CASCADE
+    created         TIMESTAMP WITHOUT TIME ZONE DEFAULT now()
 );
+-- Внешние ключи объявляются после индексов по их колонкам: H2 тогда использует для ключа готовый индекс
+-- и не создает собственный, поэтому планы запросов на H2 опираются на те же индексы, что и на Postgres
+CREATE INDEX IF NOT EXISTS requests_requestor_id_idx ON requests(requestor_id);
+ALTER TABLE requests ADD CONSTRAINT fk_requests_users
+    FOREIGN KEY (requestor_id) REFERENCES users(id) ON DELETE CASCADE;
 
 CREATE TABLE IF NOT EXISTS items
 (
-    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id          BIGINT DEFAULT nextval('item_seq') PRIMARY KEY,
     name        VARCHAR(255)                            NOT NULL,
     description VARCHAR(512)                            NOT NULL,
     available   BOOLEAN DEFAULT TRUE                    NOT NULL,
-    owner_id    BIGINT REFERENCES users(id)     ON DELETE CASCADE,
-    request_id  BIGINT REFERENCES requests(id)  ON DELETE CASCADE
+    owner_id    BIGINT,
+    request_id  BIGINT,
+    last_booking_id BIGINT,
+    last_booker_id  BIGINT,
+    next_booking_id BIGINT,
+    next_booker_id  BIGINT,
+    comment_count   INT     DEFAULT 0               NOT NULL
 );
+CREATE INDEX IF NOT EXISTS items_owner_id_idx ON items(owner_id);
+CREATE INDEX IF NOT EXISTS items_request_id_idx ON items(request_id);
+ALTER TABLE items ADD CONSTRAINT fk_items_owner FOREIGN KEY (owner_id) REFERENCES users(id) ON DELETE CASCADE;
+ALTER TABLE items ADD CONSTRAINT fk_items_request
+    FOREIGN KEY (request_id) REFERENCES requests(id) ON DELETE CASCADE;
 
 CREATE TABLE IF NOT EXISTS bookings
 (
-    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id          BIGINT DEFAULT nextval('booking_seq') PRIMARY KEY,
     start_date  TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
     end_date    TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
     status      TEXT                                    NOT NULL,
-    item_id     BIGINT REFERENCES items(id) ON DELETE CASCADE,
-    owner_id    BIGINT REFERENCES users(id) ON DELETE CASCADE
+    phase       VARCHAR(16)                             NOT NULL,
+    item_id     BIGINT,
+    owner_id    BIGINT
+);
+CREATE INDEX IF NOT EXISTS bookings_owner_id_start_date_idx ON bookings(owner_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS bookings_item_id_status_start_date_idx ON bookings(item_id, status, start_date);
+CREATE INDEX IF NOT EXISTS bookings_owner_id_phase_start_date_idx ON bookings(owner_id, phase, start_date DESC);
+CREATE INDEX IF NOT EXISTS bookings_item_id_phase_start_date_idx ON bookings(item_id, phase, start_date DESC);
+CREATE INDEX IF NOT EXISTS bookings_phase_start_date_idx ON bookings(phase, start_date);
+CREATE INDEX IF NOT EXISTS bookings_phase_end_date_idx ON bookings(phase, end_date);
+CREATE INDEX IF NOT EXISTS bookings_item_id_start_date_idx ON bookings(item_id, start_date);
+ALTER TABLE bookings ADD CONSTRAINT fk_bookings_item FOREIGN KEY (item_id) REFERENCES items(id) ON DELETE CASCADE;
+ALTER TABLE bookings ADD CONSTRAINT fk_bookings_booker FOREIGN KEY (owner_id) REFERENCES users(id) ON DELETE CASCADE;
+ALTER TABLE items ADD CONSTRAINT fk_items_last_booking
+    FOREIGN KEY (last_booking_id) REFERENCES bookings(id) ON DELETE SET NULL;
+ALTER TABLE items ADD CONSTRAINT fk_items_next_booking
+    FOREIGN KEY (next_booking_id) REFERENCES bookings(id) ON DELETE SET NULL;
+
+CREATE TABLE IF NOT EXISTS owner_booking_view
+(
+    booking_id  BIGINT PRIMARY KEY REFERENCES bookings(id) ON DELETE CASCADE,
+    owner_id    BIGINT                                  NOT NULL,
+    item_id     BIGINT                                  NOT NULL,
+    item_name   VARCHAR(255)                            NOT NULL,
+    booker_id   BIGINT                                  NOT NULL,
+    status      VARCHAR(16)                             NOT NULL,
+    phase       VARCHAR(16)                             NOT NULL,
+    start_date  TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    end_date    TIMESTAMP WITHOUT TIME ZONE             NOT NULL
 );
+CREATE INDEX IF NOT EXISTS owner_booking_view_owner_id_start_date_idx ON owner_booking_view(owner_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS owner_booking_view_owner_id_phase_start_date_idx
+    ON owner_booking_view(owner_id, phase, start_date DESC);
+CREATE INDEX IF NOT EXISTS owner_booking_view_owner_id_status_start_date_idx
+    ON owner_booking_view(owner_id, status, start_date DESC);
+CREATE INDEX IF NOT EXISTS owner_booking_view_item_id_idx ON owner_booking_view(item_id);
+CREATE INDEX IF NOT EXISTS owner_booking_view_phase_start_date_idx ON owner_booking_view(phase, start_date);
+CREATE INDEX IF NOT EXISTS owner_booking_view_phase_end_date_idx ON owner_booking_view(phase, end_date);
 
 CREATE TABLE IF NOT EXISTS comments
 (
-    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id          BIGINT DEFAULT nextval('comment_seq') PRIMARY KEY,
     text        VARCHAR NOT NULL,
-    item_id     BIGINT REFERENCES items(id) ON DELETE CASCADE,
+    item_id     BIGINT,
     author_id   BIGINT REFERENCES users(id) ON DELETE CASCADE,
     start_date  TIMESTAMP WITHOUT TIME ZONE DEFAULT now()
-);
\ No newline at end of file
+);
+CREATE INDEX IF NOT EXISTS comments_item_id_idx ON comments(item_id, id);
+ALTER TABLE comments ADD CONSTRAINT fk_comments_item FOREIGN KEY (item_id) REFERENCES items(id) ON DELETE CASCADE;
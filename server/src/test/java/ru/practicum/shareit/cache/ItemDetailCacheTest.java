@@ -0,0 +1,121 @@
+package ru.practicum.shareit.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.cache.ItemDetailCache;
+import ru.practicum.shareit.item.comment.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ItemDetailCacheTest {
+    private final ItemDetailCache cache = new ItemDetailCache(1024, 200);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void snapshotIsSharedBetweenViewersAndNotMutable() {
+        snapshot(1L).getItem().setName("Пила");
+        snapshot(1L).getItem().getComments().add(CommentDto.builder().text("Лишний").build());
+        var result = snapshot(1L);
+        assertEquals("Дрель", result.getItem().getName());
+        assertEquals(1, result.getItem().getComments().size());
+        assertEquals(2L, result.getOwnerId());
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.getHits(ItemDetailCache.SNAPSHOT));
+        assertEquals(1, cache.getMisses(ItemDetailCache.SNAPSHOT));
+    }
+
+    @Test
+    public void layersAreInvalidatedSeparately() {
+        snapshot(1L);
+        bookings(1L);
+        cache.invalidateBookings(List.of(1L));
+        snapshot(1L);
+        bookings(1L);
+        assertEquals(3, loads.get());
+
+        cache.invalidateSnapshot(1L);
+        snapshot(1L);
+        bookings(1L);
+        assertEquals(4, loads.get());
+
+        cache.invalidateAll();
+        snapshot(1L);
+        bookings(1L);
+        assertEquals(6, loads.get());
+    }
+
+    @Test
+    public void evictLeastRecentlyReadByWeight() {
+        bookings(1L);
+        bookings(2L);
+        bookings(1L);
+        bookings(3L);
+        assertEquals(1, cache.getEvictions(ItemDetailCache.BOOKINGS));
+        assertEquals(192, cache.getWeight(ItemDetailCache.BOOKINGS));
+
+        bookings(1L);
+        assertEquals(3, loads.get());
+        bookings(2L);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void valueLoadedDuringInvalidationIsNotStored() {
+        cache.getBookings(1L, () -> {
+            cache.invalidateBookings(List.of(1L));
+            return new ItemDetailCache.Bookings(null, null);
+        });
+        bookings(1L);
+        assertEquals(1, loads.get());
+        assertEquals(0, cache.getHits(ItemDetailCache.BOOKINGS));
+    }
+
+    @Test
+    public void disabledCacheAlwaysLoads() {
+        var disabled = new ItemDetailCache(0, 0);
+        disabled.getSnapshot(1L, this::load);
+        disabled.getSnapshot(1L, this::load);
+        assertEquals(2, loads.get());
+        assertEquals(0, disabled.getMisses(ItemDetailCache.SNAPSHOT));
+    }
+
+    @Test
+    public void hitRatioIsPublished() {
+        var registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        snapshot(1L);
+        snapshot(1L);
+        snapshot(1L);
+        snapshot(2L);
+        assertEquals(0.5, registry.get("shareit.item.cache.hit.ratio").tag("layer", "snapshot").gauge().value());
+        assertEquals(2.0, registry.get("shareit.item.cache.hits").tag("layer", "snapshot").functionCounter().count());
+        assertEquals(0.0, registry.get("shareit.item.cache.hit.ratio").tag("layer", "bookings").gauge().value());
+    }
+
+    private ItemDetailCache.Snapshot snapshot(long itemId) {
+        return cache.getSnapshot(itemId, this::load);
+    }
+
+    private ItemDetailCache.Bookings bookings(long itemId) {
+        var result = cache.getBookings(itemId, () -> {
+            loads.incrementAndGet();
+            return new ItemDetailCache.Bookings(null, ItemDto.NearByBooking.builder().id(itemId).build());
+        });
+        assertNull(result.getLast());
+        assertEquals(itemId, result.getNext().getId());
+        return result;
+    }
+
+    private ItemDetailCache.Snapshot load() {
+        loads.incrementAndGet();
+        var comments = new ArrayList<CommentDto>();
+        comments.add(CommentDto.builder().text("Отличная дрель").authorName("user").build());
+        return new ItemDetailCache.Snapshot(ItemDto.builder().id(1L).name("Дрель").comments(comments).build(), 2L);
+    }
+}
@@ -11,19 +11,25 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import ru.practicum.shareit.booking.controller.BookingController;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingStatusUpdateDto;
 import ru.practicum.shareit.booking.model.Status;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.util.CursorExporter;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.model.User;
 
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -32,6 +38,9 @@ public class BookingControllerTest {
     @Mock
     private BookingService bookingService;
 
+    @Mock
+    private CursorExporter exporter;
+
     @InjectMocks
     private BookingController bookingController;
 
@@ -88,6 +97,42 @@ public class BookingControllerTest {
                 .andExpect(jsonPath("$.status", is(bookingDto.getStatus().name())));
     }
 
+    @Test
+    public void createAll() throws Exception {
+        when(bookingService.createAll(anyList(), anyLong())).thenReturn(List.of(
+                BookingBatchResultDto.ok(0, bookingDto),
+                BookingBatchResultDto.failed(1, null, "Item is not available")));
+
+        mvc.perform(post("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1L)
+                        .content("[{\"itemId\": 1}, {\"itemId\": 2}]")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bookingId", is(bookingDto.getId()), Long.class))
+                .andExpect(jsonPath("$[1].error", is("Item is not available")));
+    }
+
+    @Test
+    public void updateStatuses() throws Exception {
+        var updates = List.of(new BookingStatusUpdateDto(1L, true), new BookingStatusUpdateDto(2L, true));
+        when(bookingService.updateStatuses(1L, updates)).thenReturn(List.of(
+                BookingBatchResultDto.ok(0, bookingDto),
+                BookingBatchResultDto.failed(1, 2L, "Booking with id=2 not exists")));
+
+        mvc.perform(patch("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1L)
+                        .content(mapper.writeValueAsString(updates))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].booking.id", is(bookingDto.getId()), Long.class))
+                .andExpect(jsonPath("$[1].index", is(1)))
+                .andExpect(jsonPath("$[1].error", is("Booking with id=2 not exists")));
+    }
+
     @Test
     public void findById() throws Exception {
         when(bookingService.findById(anyLong(), anyLong())).thenReturn(bookingDto);
@@ -134,4 +179,36 @@ public class BookingControllerTest {
                 .andExpect(jsonPath("$.[0].booker.name", is(bookingDto.getBooker().getName())))
                 .andExpect(jsonPath("$.[0].status", is(bookingDto.getStatus().name())));
     }
+
+    @Test
+    public void findAllForBookerAfterCursor() throws Exception {
+        bookingDto.setStart(LocalDateTime.of(2030, 1, 1, 12, 0));
+        var after = new BookingCursor(LocalDateTime.of(2030, 2, 1, 12, 0), 5L).encode();
+        when(bookingService.findByBookerAndStateAfter(1L, "ALL", after, 1)).thenReturn(List.of(bookingDto));
+
+        mvc.perform(get("/bookings")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("after", after)
+                        .param("size", "1")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-After", BookingCursor.of(bookingDto).encode()))
+                .andExpect(jsonPath("$.[0].id", is(bookingDto.getId()), Long.class));
+    }
+
+    @Test
+    public void findAllItemsForOwnerAfterCursor() throws Exception {
+        var after = new BookingCursor(LocalDateTime.of(2030, 2, 1, 12, 0), 5L).encode();
+        when(bookingService.findAllItemsByOwnerAndStateAfter(1L, "ALL", after, 10)).thenReturn(List.of(bookingDto));
+
+        mvc.perform(get("/bookings/owner")
+                        .header("X-Sharer-User-Id", 1L)
+                        .param("after", after)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-After"))
+                .andExpect(jsonPath("$.[0].id", is(bookingDto.getId()), Long.class));
+    }
 }
@@ -6,23 +6,37 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.practicum.shareit.exception.CustomExceptionHandler;
 import ru.practicum.shareit.item.comment.dto.CommentDto;
 import ru.practicum.shareit.item.controller.ItemController;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
+import ru.practicum.shareit.item.dto.ItemBulkResultDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemFacetsDto;
+import ru.practicum.shareit.item.dto.ItemSearchResultDto;
+import ru.practicum.shareit.item.service.ItemBulkImporter;
 import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.util.CursorExporter;
+import ru.practicum.shareit.util.ExportFormat;
 
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +44,12 @@ public class ItemControllerTest {
     @Mock
     private ItemService itemService;
 
+    @Mock
+    private ItemBulkImporter bulkImporter;
+
+    @Spy
+    private CursorExporter exporter = new CursorExporter(null, null, 500, 1, 60000);
+
     @InjectMocks
     private ItemController itemController;
 
@@ -70,6 +90,62 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.available", is(itemDto.getAvailable())));
     }
 
+    @Test
+    public void createAllFromNdjson() throws Exception {
+        when(bulkImporter.importNdjson(any(InputStream.class), eq(1L)))
+                .thenReturn(List.of(ItemBulkResultDto.ok(0, 5L), ItemBulkResultDto.failed(1, "Item name must not be blank")));
+
+        mvc.perform(post("/items/bulk")
+                        .header("X-Sharer-User-Id", 1)
+                        .content("{\"name\":\"name\",\"description\":\"desc\",\"available\":true}\n{}")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(ItemBulkImporter.NDJSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].itemId", is(5)))
+                .andExpect(jsonPath("$[1].index", is(1)))
+                .andExpect(jsonPath("$[1].error", is("Item name must not be blank")));
+    }
+
+    @Test
+    public void createAllFromJsonArray() throws Exception {
+        when(bulkImporter.importJson(any(InputStream.class), eq(1L))).thenReturn(List.of(ItemBulkResultDto.ok(0, 5L)));
+
+        mvc.perform(post("/items/bulk")
+                        .header("X-Sharer-User-Id", 1)
+                        .content(mapper.writeValueAsString(List.of(itemDto)))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].itemId", is(5)));
+    }
+
+    @Test
+    public void exportAsCsv() throws Exception {
+        when(itemService.exportAllByOwner(1L, ExportFormat.CSV))
+                .thenReturn(out -> out.write("id,name\r\n1,name\r\n".getBytes(StandardCharsets.UTF_8)));
+
+        var result = mvc.perform(get("/items/export")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(content().string("id,name\r\n1,name\r\n"));
+    }
+
+    @Test
+    public void exportWithUnknownFormat() throws Exception {
+        MockMvcBuilders.standaloneSetup(itemController)
+                .setControllerAdvice(new CustomExceptionHandler())
+                .build()
+                .perform(get("/items/export")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void update() throws Exception {
         when(itemService.update(any(ItemDto.class), anyLong(), anyLong())).thenReturn(itemDto);
@@ -119,7 +195,7 @@ public class ItemControllerTest {
 
     @Test
     public void findByText() throws Exception {
-        when(itemService.searchByText(anyString())).thenReturn(List.of(itemDto));
+        when(itemService.searchByText(anyString(), anyBoolean(), anyBoolean(), anyInt(), anyInt())).thenReturn(List.of(itemDto));
 
         mvc.perform(get("/items/search")
                         .header("X-Sharer-User-Id", 1)
@@ -133,6 +209,54 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.[0].available", is(itemDto.getAvailable())));
     }
 
+    @Test
+    public void findByTextWithFacets() throws Exception {
+        var facets = ItemFacetsDto.builder().available(1).withoutRequest(1)
+                .topOwners(List.of(new ItemFacetsDto.OwnerCount(1L, 1))).build();
+        when(itemService.searchWithFacets(anyString(), anyBoolean(), anyBoolean(), anyInt(), anyInt()))
+                .thenReturn(new ItemSearchResultDto(List.of(itemDto), facets));
+
+        mvc.perform(get("/items/search")
+                        .param("text", "name")
+                        .param("facets", "true")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id", is(itemDto.getId()), Long.class))
+                .andExpect(jsonPath("$.facets.available", is(1)))
+                .andExpect(jsonPath("$.facets.topOwners[0].ownerId", is(1)));
+    }
+
+    @Test
+    public void suggest() throws Exception {
+        when(itemService.suggest(anyString(), anyInt())).thenReturn(List.of("name"));
+
+        mvc.perform(get("/items/suggest")
+                        .param("prefix", "na")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0]", is("name")));
+    }
+
+    @Test
+    public void findAvailability() throws Exception {
+        var day = LocalDate.of(2030, 1, 1);
+        when(itemService.findAvailability(1L, day, day.plusDays(1))).thenReturn(new ItemAvailabilityDto(1L, day,
+                day.plusDays(1), List.of(new ItemAvailabilityDto.DateRange(day, day)),
+                List.of(new ItemAvailabilityDto.DateRange(day.plusDays(1), day.plusDays(1)))));
+
+        mvc.perform(get("/items/1/availability")
+                        .param("from", "2030-01-01")
+                        .param("to", "2030-01-02")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemId", is(1)))
+                .andExpect(jsonPath("$.busy.length()", is(1)))
+                .andExpect(jsonPath("$.free.length()", is(1)));
+    }
+
     @Test
     public void addComment() throws Exception {
         var commentDto = CommentDto.builder()
@@ -151,4 +275,29 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.id", is(commentDto.getId()), Long.class))
                 .andExpect(jsonPath("$.text", is(commentDto.getText())));
     }
+
+    @Test
+    public void findCommentsSetsNextCursorOnFullPage() throws Exception {
+        var comments = List.of(CommentDto.builder().id(9L).text("text").build(),
+                CommentDto.builder().id(7L).text("text").build());
+        when(itemService.findComments(1L, 10L, 2)).thenReturn(comments);
+
+        mvc.perform(get("/items/1/comments?after=10&size=2")
+                        .header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-After", "7"))
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$.[0].id", is(9L), Long.class));
+    }
+
+    @Test
+    public void findCommentsWithoutNextCursorOnLastPage() throws Exception {
+        when(itemService.findComments(1L, null, 20)).thenReturn(List.of());
+
+        mvc.perform(get("/items/1/comments")
+                        .header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-After"))
+                .andExpect(jsonPath("$.length()", is(0)));
+    }
 }
@@ -0,0 +1,299 @@
+package ru.practicum.shareit.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingView;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Phase;
+import ru.practicum.shareit.booking.model.State;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.util.OffsetPageRequest;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DataJpaTest
+public class BookingRepositoryTest {
+    private static final Sort BY_START_DESC = Sort.by(Sort.Order.desc("start"), Sort.Order.asc("id"));
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private OwnerBookingViewRepository ownerBookingViewRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User owner;
+    private User booker;
+
+    @BeforeEach
+    public void init() {
+        owner = userRepository.save(User.builder().name("owner").email("owner@mail.ru").build());
+        booker = userRepository.save(User.builder().name("booker").email("booker@mail.ru").build());
+        var item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+        var now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        save(item, now.minusDays(10), now.minusDays(9), Status.APPROVED);
+        save(item, now.minusDays(8), now.minusDays(7), Status.REJECTED);
+        save(item, now.minusDays(1), now.plusDays(1), Status.APPROVED);
+        save(item, now.plusDays(1), now.plusDays(2), Status.WAITING);
+        save(item, now.plusDays(1), now.plusDays(3), Status.APPROVED);
+        save(item, now.plusDays(5), now.plusDays(6), Status.REJECTED);
+    }
+
+    @Test
+    public void insertAllAssignsGeneratedIds() {
+        var item = itemRepository.findAllByOwnerId(owner.getId()).get(0);
+        var start = LocalDateTime.now().plusDays(10).truncatedTo(ChronoUnit.SECONDS);
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bookings.add(Booking.builder().item(item).booker(booker).status(Status.WAITING)
+                    .start(start.plusDays(i)).end(start.plusDays(i).plusHours(1)).build());
+        }
+        bookingRepository.insertAll(bookings);
+        for (var booking : bookings) {
+            var saved = bookingRepository.findById(booking.getId()).orElseThrow();
+            assertEquals(booking.getStart(), saved.getStart());
+            assertEquals(booker.getId(), saved.getBooker().getId());
+        }
+    }
+
+    @Test
+    public void stateQueriesMatchStateFilter() {
+        var all = bookingRepository.findAll();
+        var page = OffsetPageRequest.of(0, 100, BY_START_DESC);
+
+        assertEquals(expected(all, State.ALL), ids(bookingRepository.findAllByBookerId(booker.getId(), page)));
+        assertEquals(expected(all, State.PAST),
+                ids(bookingRepository.findAllByBookerIdAndPhase(booker.getId(), Phase.PAST, page)));
+        assertEquals(expected(all, State.FUTURE),
+                viewIds(ownerBookingViewRepository.findAllByOwnerIdAndPhase(owner.getId(), Phase.FUTURE, page)));
+        assertEquals(expected(all, State.CURRENT),
+                viewIds(ownerBookingViewRepository.findAllByOwnerIdAndPhase(owner.getId(), Phase.CURRENT, page)));
+        assertEquals(expected(all, State.WAITING),
+                viewIds(ownerBookingViewRepository.findAllByOwnerIdAndStatus(owner.getId(), Status.WAITING, page)));
+        assertEquals(expected(all, State.REJECTED),
+                ids(bookingRepository.findAllByBookerIdAndStatus(booker.getId(), Status.REJECTED, page)));
+    }
+
+    @Test
+    public void pageByOffset() {
+        var all = viewIds(ownerBookingViewRepository.findAllByOwnerId(owner.getId(),
+                OffsetPageRequest.of(0, 100, BY_START_DESC)));
+        assertEquals(all.subList(3, 5), viewIds(ownerBookingViewRepository.findAllByOwnerId(owner.getId(),
+                OffsetPageRequest.of(3, 2, BY_START_DESC))));
+        assertEquals(List.of(), ids(bookingRepository.findAllByBookerId(owner.getId(), OffsetPageRequest.of(0, 2, BY_START_DESC))));
+    }
+
+    @Test
+    public void keysetPagesMatchOffsetPages() {
+        for (var state : State.values()) {
+            var expected = viewIds(ownerBookingViewRepository.findAllByOwnerId(owner.getId(),
+                    OffsetPageRequest.of(0, 100, BY_START_DESC))).stream()
+                    .filter(id -> stateBy(state).test(bookingRepository.findById(id).orElseThrow()))
+                    .collect(Collectors.toList());
+            List<Long> byOwner = new ArrayList<>();
+            List<Long> byBooker = new ArrayList<>();
+            var ownerCursor = new BookingCursor(LocalDateTime.of(9999, 1, 1, 0, 0), 0);
+            var bookerCursor = ownerCursor;
+            for (int i = 0; i < 10; i++) {
+                var ownerPage = ownerAfter(state, ownerCursor);
+                var bookerPage = bookerAfter(state, bookerCursor);
+                byOwner.addAll(viewIds(ownerPage));
+                byBooker.addAll(ids(bookerPage));
+                if (!ownerPage.isEmpty()) {
+                    ownerCursor = BookingCursor.of(BookingMapper.toBookingDto(ownerPage.get(ownerPage.size() - 1)));
+                }
+                if (!bookerPage.isEmpty()) {
+                    bookerCursor = BookingCursor.of(BookingMapper.toBookingDto(bookerPage.get(bookerPage.size() - 1)));
+                }
+            }
+            assertEquals(expected, byOwner, state.name());
+            assertEquals(expected, byBooker, state.name());
+        }
+    }
+
+    private List<BookingView> ownerAfter(State state, BookingCursor cursor) {
+        var page = PageRequest.of(0, 2);
+        switch (state) {
+            case PAST:
+            case FUTURE:
+            case CURRENT:
+                return ownerBookingViewRepository.findAllByOwnerIdAndPhaseAfter(owner.getId(),
+                        Phase.valueOf(state.name()), cursor.getStart(), cursor.getId(), page);
+            case WAITING:
+            case REJECTED:
+                return ownerBookingViewRepository.findAllByOwnerIdAndStatusAfter(owner.getId(),
+                        Status.valueOf(state.name()), cursor.getStart(), cursor.getId(), page);
+            default:
+                return ownerBookingViewRepository.findAllByOwnerIdAfter(owner.getId(), cursor.getStart(),
+                        cursor.getId(), page);
+        }
+    }
+
+    private List<BookingView> bookerAfter(State state, BookingCursor cursor) {
+        var page = PageRequest.of(0, 2);
+        switch (state) {
+            case PAST:
+            case FUTURE:
+            case CURRENT:
+                return bookingRepository.findAllByBookerIdAndPhaseAfter(booker.getId(),
+                        Phase.valueOf(state.name()), cursor.getStart(), cursor.getId(), page);
+            case WAITING:
+            case REJECTED:
+                return bookingRepository.findAllByBookerIdAndStatusAfter(booker.getId(),
+                        Status.valueOf(state.name()), cursor.getStart(), cursor.getId(), page);
+            default:
+                return bookingRepository.findAllByBookerIdAfter(booker.getId(), cursor.getStart(),
+                        cursor.getId(), page);
+        }
+    }
+
+    @Test
+    public void ownerViewFollowsStatusAndItemName() {
+        var item = itemRepository.findAllByOwnerId(owner.getId()).get(0);
+        var booking = bookingRepository.findAllByItemId(item.getId()).stream()
+                .filter(b -> b.getStatus() == Status.WAITING)
+                .findFirst()
+                .orElseThrow();
+        ownerBookingViewRepository.updateStatus(List.of(booking.getId()), Status.APPROVED);
+        ownerBookingViewRepository.updateItemName(item.getId(), "Перфоратор");
+        entityManager.clear();
+        var views = ownerBookingViewRepository.findAllByOwnerId(owner.getId(), PageRequest.of(0, 100));
+        assertEquals(6, views.size());
+        views.forEach(view -> {
+            assertEquals("Перфоратор", view.getItemName());
+            assertEquals(booker.getId(), view.getBookerId());
+        });
+        assertEquals(List.of(), views.stream()
+                .filter(view -> view.getStatus() == Status.WAITING)
+                .map(BookingView::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void bookerViewReadsItemAndBookerColumns() {
+        var views = bookingRepository.findAllByBookerId(booker.getId(), OffsetPageRequest.of(0, 1, BY_START_DESC));
+        assertEquals(1, views.size());
+        var booking = BookingMapper.toBookingDto(views.get(0));
+        assertEquals(Status.REJECTED, booking.getStatus());
+        assertEquals("Дрель", booking.getItem().getName());
+        assertEquals("Простая дрель", booking.getItem().getDescription());
+        assertEquals(true, booking.getItem().getAvailable());
+        assertNull(booking.getItem().getRequest());
+        assertEquals(booker.getId(), booking.getBooker().getId());
+        assertEquals("booker@mail.ru", booking.getBooker().getEmail());
+    }
+
+    /**
+     * Ответ владельцу совпадает по составу с ответом бронирующему
+     */
+    @Test
+    public void ownerViewReadsItemAndBookerColumns() {
+        var views = ownerBookingViewRepository.findAllByOwnerId(owner.getId(), OffsetPageRequest.of(0, 1, BY_START_DESC));
+        assertEquals(1, views.size());
+        var booking = BookingMapper.toBookingDto(views.get(0));
+        var bookerBooking = BookingMapper.toBookingDto(bookingRepository.findAllByBookerId(booker.getId(),
+                OffsetPageRequest.of(0, 1, BY_START_DESC)).get(0));
+        assertEquals(bookerBooking, booking);
+        assertEquals("Простая дрель", booking.getItem().getDescription());
+        assertEquals(true, booking.getItem().getAvailable());
+        assertEquals("booker", booking.getBooker().getName());
+        assertEquals("booker@mail.ru", booking.getBooker().getEmail());
+    }
+
+    @Test
+    public void ownerViewFollowsPhaseUpdates() {
+        var now = LocalDateTime.now().plusDays(2).plusHours(12);
+        assertEquals(bookingRepository.updatePhaseOfEnded(now), ownerBookingViewRepository.updatePhaseOfEnded(now));
+        assertEquals(bookingRepository.updatePhaseOfStarted(now),
+                ownerBookingViewRepository.updatePhaseOfStarted(now));
+        entityManager.clear();
+        var phases = bookingRepository.findAll().stream()
+                .collect(Collectors.toMap(Booking::getId, Booking::getPhase));
+        ownerBookingViewRepository.findAll().forEach(view -> assertEquals(phases.get(view.getId()), view.getPhase()));
+    }
+
+    /**
+     * Проекция владельца заполняется так же, как в сервисе бронирований
+     */
+    private void save(Item item, LocalDateTime start, LocalDateTime end, Status status) {
+        var booking = bookingRepository.save(Booking.builder().item(item).booker(booker).start(start).end(end)
+                .status(status).build());
+        ownerBookingViewRepository.save(BookingMapper.toOwnerBookingView(booking));
+    }
+
+    /**
+     * Ожидаемый результат считается прежним способом: фильтр в памяти и стабильная сортировка по началу
+     */
+    private static List<Long> expected(List<Booking> bookings, State state) {
+        return bookings.stream()
+                .sorted(Comparator.comparing(Booking::getId))
+                .filter(stateBy(state))
+                .sorted(Comparator.comparing(Booking::getStart).reversed())
+                .map(Booking::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Определение состояний в памяти, по которому проверяются SQL-запросы каждого состояния
+     */
+    private static Predicate<Booking> stateBy(State state) {
+        var now = LocalDateTime.now();
+        switch (state) {
+            case PAST:
+                return b -> b.getEnd().isBefore(now);
+            case FUTURE:
+                return b -> b.getStart().isAfter(now);
+            case CURRENT:
+                return b -> b.getStart().isBefore(now) && b.getEnd().isAfter(now);
+            case WAITING:
+                return b -> b.getStatus() == Status.WAITING;
+            case REJECTED:
+                return b -> b.getStatus() == Status.REJECTED;
+            default:
+                return b -> true;
+        }
+    }
+
+    private static List<Long> viewIds(List<BookingView> views) {
+        return views.stream()
+                .map(BookingView::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<BookingView> bookings) {
+        return bookings.stream()
+                .map(BookingView::getId)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,207 @@
+package ru.practicum.shareit.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.comment.dto.CommentView;
+import ru.practicum.shareit.item.comment.model.Comment;
+import ru.practicum.shareit.item.comment.repository.CommentRepository;
+import ru.practicum.shareit.item.dto.ItemView;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.request.repository.RequestRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DataJpaTest
+public class ItemRepositoryTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User booker;
+    private Item item;
+
+    @BeforeEach
+    public void init() {
+        var owner = userRepository.save(User.builder().name("owner").email("owner@mail.ru").build());
+        booker = userRepository.save(User.builder().name("booker").email("booker@mail.ru").build());
+        item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                .available(true).owner(owner).build());
+    }
+
+    @Test
+    public void refreshBookingPointersFollowsLastAndNextRules() {
+        save(Status.APPROVED, NOW.minusDays(3), NOW.minusDays(2));
+        var last = save(Status.REJECTED, NOW.minusDays(1), NOW.plusHours(1));
+        save(Status.WAITING, NOW.plusDays(1), NOW.plusDays(2));
+        var next = save(Status.APPROVED, NOW.plusDays(2), NOW.plusDays(3));
+        save(Status.APPROVED, NOW.plusDays(4), NOW.plusDays(5));
+
+        assertEquals(1, itemRepository.refreshBookingPointers(List.of(item.getId()), NOW));
+        entityManager.clear();
+
+        var result = itemRepository.findById(item.getId()).orElseThrow();
+        assertEquals(last.getId(), result.getLastBookingId());
+        assertEquals(booker.getId(), result.getLastBookerId());
+        assertEquals(next.getId(), result.getNextBookingId());
+        assertEquals(booker.getId(), result.getNextBookerId());
+    }
+
+    @Test
+    public void refreshBookingPointersMovesStartedNextToLast() {
+        var first = save(Status.APPROVED, NOW.plusHours(1), NOW.plusHours(2));
+        var second = save(Status.APPROVED, NOW.plusHours(3), NOW.plusHours(4));
+        itemRepository.refreshBookingPointers(List.of(item.getId()), NOW);
+
+        itemRepository.refreshBookingPointers(List.of(item.getId()), NOW.plusHours(1).plusSeconds(1));
+        entityManager.clear();
+
+        var result = itemRepository.findById(item.getId()).orElseThrow();
+        assertEquals(first.getId(), result.getLastBookingId());
+        assertEquals(second.getId(), result.getNextBookingId());
+    }
+
+    @Test
+    public void findAllWithStaleBookingPointers() {
+        assertEquals(List.of(), itemRepository.findAllWithStaleBookingPointers(0, item.getId(), NOW));
+        save(Status.APPROVED, NOW.plusHours(1), NOW.plusHours(2));
+        assertEquals(List.of(item.getId()), itemRepository.findAllWithStaleBookingPointers(0, item.getId(), NOW));
+        assertEquals(List.of(), itemRepository.findAllWithStaleBookingPointers(item.getId(), item.getId(), NOW));
+
+        itemRepository.refreshBookingPointers(List.of(item.getId()), NOW);
+        assertEquals(List.of(), itemRepository.findAllWithStaleBookingPointers(0, item.getId(), NOW));
+        assertEquals(item.getId(), itemRepository.findMaxId());
+    }
+
+    @Test
+    public void saveItemKeepsBookingPointers() {
+        var next = save(Status.APPROVED, NOW.plusHours(1), NOW.plusHours(2));
+        itemRepository.refreshBookingPointers(List.of(item.getId()), NOW);
+        entityManager.clear();
+
+        var loaded = itemRepository.findById(item.getId()).orElseThrow();
+        loaded.setName("Дрель ударная");
+        itemRepository.saveAndFlush(loaded);
+        entityManager.clear();
+
+        var result = itemRepository.findById(item.getId()).orElseThrow();
+        assertEquals(next.getId(), result.getNextBookingId());
+        assertNull(result.getLastBookingId());
+    }
+
+    @Test
+    public void commentCountIsIncrementedAndRefreshed() {
+        saveComment("Первый");
+        itemRepository.incrementCommentCount(item.getId());
+        itemRepository.incrementCommentCount(item.getId());
+        entityManager.clear();
+        assertEquals(2, itemRepository.findById(item.getId()).orElseThrow().getCommentCount());
+
+        itemRepository.refreshCommentCounts(List.of(item.getId()));
+        entityManager.clear();
+        assertEquals(1, itemRepository.findById(item.getId()).orElseThrow().getCommentCount());
+    }
+
+    @Test
+    public void findLatestCommentsPerItemAndPageByKeyset() {
+        var other = itemRepository.save(Item.builder().name("Пила").description("Ручная пила")
+                .available(true).owner(booker).build());
+        var first = saveComment("Первый");
+        var second = saveComment("Второй");
+        var third = saveComment("Третий");
+        commentRepository.save(Comment.builder().text("Чужой").item(other).author(booker)
+                .created(NOW).build());
+
+        var latest = commentRepository.findLatestByItemIdIn(List.of(item.getId(), other.getId()), 2);
+        assertEquals(List.of(second.getId(), third.getId()), latest.stream()
+                .filter(view -> view.getItemId().equals(item.getId()))
+                .map(CommentView::getId)
+                .collect(Collectors.toList()));
+        assertEquals(3, latest.size());
+        assertEquals("booker", latest.get(0).getAuthorName());
+
+        var page = commentRepository.findAllByItemIdAndIdLessThanOrderByIdDesc(item.getId(), second.getId(),
+                PageRequest.of(0, 2));
+        assertEquals(List.of(first.getId()), page.stream().map(Comment::getId).collect(Collectors.toList()));
+        assertEquals(Set.of(item.getId(), other.getId()),
+                Set.copyOf(commentRepository.findItemIdsByAuthorId(booker.getId())));
+    }
+
+    @Test
+    public void itemViewsReadListColumns() {
+        var next = save(Status.APPROVED, NOW.plusHours(1), NOW.plusHours(2));
+        itemRepository.refreshBookingPointers(List.of(item.getId()), NOW);
+        itemRepository.incrementCommentCount(item.getId());
+        var owner = item.getOwner();
+        var request = requestRepository.save(ItemRequest.builder().description("Нужна пила").requestor(booker)
+                .created(NOW).build());
+        var requested = itemRepository.save(Item.builder().name("Пила").description("Ручная пила")
+                .available(false).owner(owner).request(request).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        var views = itemRepository.findAllViewsByOwnerId(owner.getId());
+        assertEquals(List.of(item.getId(), requested.getId()), views.stream()
+                .map(ItemView::getId)
+                .collect(Collectors.toList()));
+        assertNull(views.get(0).getRequestId());
+        assertEquals(next.getId(), views.get(0).getNextBookingId());
+        assertEquals(booker.getId(), views.get(0).getNextBookerId());
+        assertEquals(1, views.get(0).getCommentCount());
+        assertEquals("Пила", views.get(1).getName());
+        assertEquals(false, views.get(1).getAvailable());
+        assertEquals(request.getId(), views.get(1).getRequestId());
+
+        assertEquals(List.of(requested.getId()), itemRepository.findAllViewsByRequestIdIn(List.of(request.getId()))
+                .stream()
+                .map(ItemView::getId)
+                .collect(Collectors.toList()));
+        var requests = requestRepository.findAllByRequestorIdNot(owner.getId(),
+                PageRequest.of(0, 10, Sort.by("created").descending()));
+        assertEquals(1, requests.size());
+        assertEquals("Нужна пила", requests.get(0).getDescription());
+        assertEquals(List.of(), requestRepository.findAllByRequestorId(owner.getId()));
+    }
+
+    private Comment saveComment(String text) {
+        return commentRepository.save(Comment.builder().text(text).item(item).author(booker).created(NOW).build());
+    }
+
+    private Booking save(Status status, LocalDateTime start, LocalDateTime end) {
+        return bookingRepository.save(Booking.builder().item(item).booker(booker).status(status)
+                .start(start).end(end).build());
+    }
+}
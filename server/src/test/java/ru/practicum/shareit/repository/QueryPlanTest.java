@@ -0,0 +1,335 @@
+package ru.practicum.shareit.repository;
+
+import lombok.Value;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.model.Phase;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
+import ru.practicum.shareit.item.comment.repository.CommentRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.request.repository.RequestRepository;
+import ru.practicum.shareit.util.OffsetPageRequest;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongFunction;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка планов горячих запросов на синтетическом наборе данных.
+ * Тест вызывает методы репозиториев, перехватывает отправленный ими SQL с параметрами и разбирает его план:
+ * в плане не должно быть полного просмотра таблицы и должен быть ожидаемый индекс.
+ * Тест работает с настроенной базой: в профиле test это H2, при запуске с профилем по умолчанию - Postgres.
+ * H2 не выбирает индекс по сортировке, поэтому выборки бронирующего только по owner_id на H2 идут по индексу
+ * внешнего ключа fk_bookings_booker, а запрос переходов фаз с OR по двум индексам H2 не разбирает:
+ * эти индексы проверяются по имени только на Postgres.
+ * Поиск по подстроке (LIKE '%...%') сюда не входит: на Postgres его обслуживают триграммные индексы
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class QueryPlanTest {
+    private static final int USERS = 1_000;
+    private static final int ITEMS = 5_000;
+    private static final int BOOKINGS = 20_000;
+    private static final long BASE = 1_000_000;
+    private static final long ID = BASE + 5;
+    private static final long OTHER_ID = BASE + 7;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final LocalDateTime PHASE_NOW = EPOCH.plusHours(BOOKINGS / 2);
+    private static final LocalDateTime CURSOR = LocalDateTime.of(2021, 1, 1, 0, 0);
+    private static final Sort BY_START_DESC = Sort.by(Sort.Order.desc("start"), Sort.Order.asc("id"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private StatementRecorder recorder;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private OwnerBookingViewRepository ownerBookingViewRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private RequestRepository requestRepository;
+
+    /**
+     * Явные id начинаются с BASE, чтобы не зависеть от счетчиков identity после откатов других тестов
+     */
+    @BeforeEach
+    public void init() {
+        insert("INSERT INTO users(id, name, email) VALUES (?, ?, ?)", USERS,
+                x -> new Object[]{BASE + x, "user" + x, "user" + x + "@plan.ru"});
+        insert("INSERT INTO requests(id, description, requestor_id) VALUES (?, ?, ?)", USERS,
+                x -> new Object[]{BASE + x, "request" + x, user(x)});
+        insert("INSERT INTO items(id, name, description, available, owner_id, request_id) VALUES (?, ?, ?, ?, ?, ?)",
+                ITEMS, x -> new Object[]{BASE + x, "item" + x, "description" + x, x % 3 > 0, user(x),
+                        x % 10 == 0 ? user(x) : null});
+        insert("INSERT INTO bookings(id, start_date, end_date, status, phase, item_id, owner_id) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                BOOKINGS, x -> new Object[]{BASE + x, Timestamp.valueOf(EPOCH.plusHours(x)),
+                        Timestamp.valueOf(EPOCH.plusHours(x + 5)), List.of("APPROVED", "WAITING", "REJECTED").get((int) (x % 3)),
+                        Phase.of(EPOCH.plusHours(x), EPOCH.plusHours(x + 5), PHASE_NOW).name(),
+                        BASE + x % ITEMS + 1, user(x * 7)});
+        jdbcTemplate.update("INSERT INTO owner_booking_view(booking_id, owner_id, item_id, item_name, booker_id, " +
+                "status, phase, start_date, end_date) SELECT b.id, i.owner_id, i.id, i.name, b.owner_id, b.status, " +
+                "b.phase, b.start_date, b.end_date FROM bookings b JOIN items i ON b.item_id = i.id");
+        insert("INSERT INTO comments(id, text, item_id, author_id) VALUES (?, ?, ?, ?)", ITEMS,
+                x -> new Object[]{BASE + x, "comment" + x, BASE + x % ITEMS + 1, user(x)});
+        if (isPostgres()) {
+            jdbcTemplate.execute("ANALYZE");
+        }
+    }
+
+    @Test
+    public void curatedIndexesExist() {
+        Set<String> indexes = new HashSet<>();
+        jdbcTemplate.execute((Connection connection) -> {
+            for (String table : List.of("bookings", "items", "comments", "requests", "owner_booking_view")) {
+                for (String name : List.of(table, table.toUpperCase())) {
+                    try (var rs = connection.getMetaData().getIndexInfo(null, null, name, false, true)) {
+                        while (rs.next()) {
+                            if (rs.getString("INDEX_NAME") != null) {
+                                indexes.add(rs.getString("INDEX_NAME").toLowerCase());
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+        assertTrue(indexes.containsAll(List.of("bookings_owner_id_start_date_idx",
+                "bookings_item_id_status_start_date_idx", "items_owner_id_idx", "items_request_id_idx",
+                "comments_item_id_idx", "requests_requestor_id_idx", "bookings_owner_id_phase_start_date_idx",
+                "bookings_item_id_phase_start_date_idx", "bookings_phase_start_date_idx", "bookings_phase_end_date_idx",
+                "owner_booking_view_owner_id_start_date_idx", "owner_booking_view_owner_id_phase_start_date_idx",
+                "owner_booking_view_owner_id_status_start_date_idx", "owner_booking_view_item_id_idx")), () -> "Indexes: " + indexes);
+    }
+
+    @Test
+    public void bookingsByBooker() {
+        var page = OffsetPageRequest.of(100, 10, BY_START_DESC);
+        assertPlanUses(byBookerIndex(), () -> bookingRepository.findAllByBookerId(ID, page));
+        assertPlanUses("bookings_owner_id_phase_start_date_idx",
+                () -> bookingRepository.findAllByBookerIdAndPhase(ID, Phase.PAST, page));
+        assertPlanUses(byBookerIndex(), () -> bookingRepository.findAllByBookerIdAndStatus(ID, Status.WAITING, page));
+    }
+
+    @Test
+    public void bookingsByBookerAfterCursor() {
+        var page = PageRequest.of(0, 10);
+        assertPlanUses(byBookerIndex(), () -> bookingRepository.findAllByBookerIdAfter(ID, CURSOR, ID, page));
+        assertPlanUses("bookings_owner_id_phase_start_date_idx",
+                () -> bookingRepository.findAllByBookerIdAndPhaseAfter(ID, Phase.PAST, CURSOR, ID, page));
+        assertPlanUses(byBookerIndex(),
+                () -> bookingRepository.findAllByBookerIdAndStatusAfter(ID, Status.WAITING, CURSOR, ID, page));
+    }
+
+    @Test
+    public void bookingsByOwnerView() {
+        var page = OffsetPageRequest.of(100, 10, BY_START_DESC);
+        assertPlanUses("owner_booking_view_owner_id_start_date_idx",
+                () -> ownerBookingViewRepository.findAllByOwnerId(ID, page));
+        assertPlanUses("owner_booking_view_owner_id_phase_start_date_idx",
+                () -> ownerBookingViewRepository.findAllByOwnerIdAndPhase(ID, Phase.PAST, page));
+        assertPlanUses("owner_booking_view_owner_id_status_start_date_idx",
+                () -> ownerBookingViewRepository.findAllByOwnerIdAndStatus(ID, Status.WAITING, page));
+        assertPlanUses("owner_booking_view_item_id_idx",
+                () -> ownerBookingViewRepository.updateItemName(ID, "drill"));
+    }
+
+    @Test
+    public void bookingsByOwnerViewAfterCursor() {
+        var page = PageRequest.of(0, 10);
+        assertPlanUses("owner_booking_view_owner_id_start_date_idx",
+                () -> ownerBookingViewRepository.findAllByOwnerIdAfter(ID, CURSOR, ID, page));
+        assertPlanUses("owner_booking_view_owner_id_phase_start_date_idx",
+                () -> ownerBookingViewRepository.findAllByOwnerIdAndPhaseAfter(ID, Phase.PAST, CURSOR, ID, page));
+        assertPlanUses("owner_booking_view_owner_id_status_start_date_idx",
+                () -> ownerBookingViewRepository.findAllByOwnerIdAndStatusAfter(ID, Status.WAITING, CURSOR, ID, page));
+    }
+
+    @Test
+    public void bookingsByPhaseTransition() {
+        assertPlanUses("bookings_phase_end_date_idx", () -> bookingRepository.updatePhaseOfEnded(CURSOR));
+        if (isPostgres()) {
+            assertPlanUses("bookings_phase_start_date_idx",
+                    () -> bookingRepository.findAllPhaseTransitions(CURSOR, CURSOR.plusHours(1)));
+        }
+        assertPlanUses("bookings_phase_start_date_idx", () -> bookingRepository.updatePhaseOfStarted(CURSOR));
+        assertPlanUses("owner_booking_view_phase_end_date_idx",
+                () -> ownerBookingViewRepository.updatePhaseOfEnded(CURSOR));
+        assertPlanUses("owner_booking_view_phase_start_date_idx",
+                () -> ownerBookingViewRepository.updatePhaseOfStarted(CURSOR));
+    }
+
+    @Test
+    public void bookingsByItem() {
+        var statuses = List.of(Status.WAITING, Status.APPROVED);
+        assertPlanUses("bookings_item_id_status_start_date_idx",
+                () -> bookingRepository.findAllIntervalsByItemIdAndStatusIn(ID, statuses, CURSOR.plusDays(1), CURSOR));
+        assertPlanUses("bookings_item_id_status_start_date_idx",
+                () -> bookingRepository.existsByItemIdAndStatusInAndStartBeforeAndEndAfter(ID, statuses,
+                        CURSOR.plusDays(1), CURSOR));
+    }
+
+    @Test
+    public void itemsByOwnerAndRequest() {
+        assertPlanUses("items_owner_id_idx", () -> itemRepository.findAllViewsByOwnerId(ID));
+        assertPlanUses("items_request_id_idx", () -> itemRepository.findAllViewsByRequestIdIn(List.of(ID, OTHER_ID)));
+    }
+
+    @Test
+    public void commentsByItem() {
+        assertPlanUses("comments_item_id_idx",
+                () -> commentRepository.findAllByItemIdAndIdLessThanOrderByIdDesc(ID, Long.MAX_VALUE,
+                        PageRequest.of(0, 10)));
+    }
+
+    @Test
+    public void requestsByRequestor() {
+        assertPlanUses("requests_requestor_id_idx", () -> requestRepository.findAllByRequestorId(ID));
+    }
+
+    private void insert(String sql, int count, LongFunction<Object[]> row) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (long x = 1; x <= count; x++) {
+            rows.add(row.apply(x));
+        }
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    private static long user(long x) {
+        return BASE + x % USERS + 1;
+    }
+
+    private String byBookerIndex() {
+        return isPostgres() ? "bookings_owner_id_start_date_idx" : "fk_bookings_booker_index";
+    }
+
+    private boolean isPostgres() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((Connection connection) ->
+                connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres")));
+    }
+
+    /**
+     * Выполняет запрос репозитория и разбирает план последнего отправленного им SQL с теми же параметрами.
+     * Индекс должен использоваться с условием: H2 пишет его как "индекс: условие" (к имени индекса внешнего ключа
+     * H2 добавляет суффикс), Postgres - как "using индекс" или "scan on индекс".
+     * Индекс без условия в плане H2 означает полный просмотр индекса
+     */
+    private void assertPlanUses(String index, Runnable query) {
+        recorder.clear();
+        query.run();
+        var statement = recorder.last();
+        var plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + statement.getSql(), String.class,
+                statement.getParameters().toArray()));
+        assertFalse(plan.contains(".tableScan") || plan.contains("Seq Scan"),
+                () -> "Sequential scan in plan:\n" + plan);
+        var lowerPlan = plan.toLowerCase();
+        assertTrue(Pattern.compile(Pattern.quote(index) + "\\w*:").matcher(lowerPlan).find()
+                        || lowerPlan.contains("using " + index) || lowerPlan.contains("scan on " + index),
+                () -> "No " + index + " lookup in plan:\n" + plan);
+    }
+
+    @TestConfiguration
+    static class RecorderConfig {
+        @Bean
+        static StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+    }
+
+    @Value
+    static class RecordedStatement {
+        String sql;
+        List<Object> parameters;
+    }
+
+    /**
+     * Оборачивает DataSource и запоминает SQL и параметры каждого выполненного PreparedStatement
+     */
+    static class StatementRecorder implements BeanPostProcessor {
+        private final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource)) {
+                return bean;
+            }
+            return proxy(DataSource.class, bean, (method, result, args) ->
+                    result instanceof Connection ? connection((Connection) result) : result);
+        }
+
+        void clear() {
+            statements.clear();
+        }
+
+        RecordedStatement last() {
+            assertFalse(statements.isEmpty(), "No statements executed");
+            return statements.get(statements.size() - 1);
+        }
+
+        private Connection connection(Connection connection) {
+            return proxy(Connection.class, connection, (method, result, args) ->
+                    method.getName().equals("prepareStatement")
+                            ? statement((PreparedStatement) result, (String) args[0]) : result);
+        }
+
+        private PreparedStatement statement(PreparedStatement statement, String sql) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            return proxy(PreparedStatement.class, statement, (method, result, args) -> {
+                var name = method.getName();
+                if (name.startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer) {
+                    parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.startsWith("execute")) {
+                    statements.add(new RecordedStatement(sql, new ArrayList<>(parameters.values())));
+                }
+                return result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Object target, Interceptor interceptor) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return interceptor.intercept(method, method.invoke(target, args), args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            });
+        }
+
+        private interface Interceptor {
+            Object intercept(Method method, Object result, Object[] args) throws Exception;
+        }
+    }
+}
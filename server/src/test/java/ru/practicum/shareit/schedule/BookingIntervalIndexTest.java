@@ -0,0 +1,148 @@
+package ru.practicum.shareit.schedule;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
+import ru.practicum.shareit.booking.schedule.BookingIntervalView;
+import ru.practicum.shareit.exception.NotAvailableException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BookingIntervalIndexTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @InjectMocks
+    private BookingIntervalIndex intervalIndex;
+
+    @Test
+    public void reserveRejectsOverlapAndAllowsAdjacent() {
+        intervalIndex.reserve(booking(1L, 1L, 2L, 10, 20));
+        var exception = assertThrows(NotAvailableException.class,
+                () -> intervalIndex.reserve(booking(2L, 1L, 3L, 15, 25)));
+        assertEquals("Item with id=1 is already booked for this period", exception.getMessage());
+        assertThrows(NotAvailableException.class, () -> intervalIndex.reserve(booking(3L, 1L, 3L, 5, 30)));
+        assertDoesNotThrow(() -> intervalIndex.reserve(booking(4L, 1L, 3L, 20, 30)));
+        assertDoesNotThrow(() -> intervalIndex.reserve(booking(5L, 1L, 3L, 0, 10)));
+        assertDoesNotThrow(() -> intervalIndex.reserve(booking(6L, 2L, 3L, 15, 25)));
+    }
+
+    @Test
+    public void releaseFreesPeriod() {
+        var booking = booking(1L, 1L, 2L, 10, 20);
+        intervalIndex.reserve(booking);
+        intervalIndex.release(booking);
+        assertDoesNotThrow(() -> intervalIndex.reserve(booking(2L, 1L, 3L, 15, 25)));
+    }
+
+    @Test
+    public void removeByUser() {
+        intervalIndex.reserve(booking(1L, 1L, 2L, 10, 20));
+        intervalIndex.reserve(booking(2L, 2L, 3L, 10, 20));
+        intervalIndex.removeByUser(2L);
+        assertDoesNotThrow(() -> intervalIndex.reserve(booking(3L, 1L, 4L, 10, 20)));
+        assertThrows(NotAvailableException.class, () -> intervalIndex.reserve(booking(4L, 2L, 4L, 10, 20)));
+        intervalIndex.removeByUser(102L);
+        assertDoesNotThrow(() -> intervalIndex.reserve(booking(5L, 2L, 4L, 10, 20)));
+    }
+
+    @Test
+    public void findBusyDays() {
+        var day = BASE.toLocalDate();
+        intervalIndex.reserve(booking(1L, 1L, 2L, 20, 30));
+        intervalIndex.reserve(booking(2L, 1L, 2L, 30, 48));
+        intervalIndex.reserve(booking(3L, 1L, 2L, 24 * 70, 24 * 70 + 1));
+        assertEquals(BitSet.valueOf(new long[]{0b11}), intervalIndex.findBusyDays(1L, day, day.plusDays(3)));
+        intervalIndex.release(booking(1L, 1L, 2L, 20, 30));
+        assertEquals(BitSet.valueOf(new long[]{0b10}), intervalIndex.findBusyDays(1L, day, day.plusDays(3)));
+        intervalIndex.release(booking(2L, 1L, 2L, 30, 48));
+        assertEquals(new BitSet(), intervalIndex.findBusyDays(1L, day, day.plusDays(3)));
+        assertEquals(BitSet.valueOf(new long[]{0b1}), intervalIndex.findBusyDays(1L, day.plusDays(70), day.plusDays(80)));
+        assertEquals(new BitSet(), intervalIndex.findBusyDays(2L, day, day.plusDays(3)));
+    }
+
+    @Test
+    public void evictEnded() {
+        var day = BASE.toLocalDate();
+        intervalIndex.reserve(booking(1L, 1L, 2L, 10, 20));
+        intervalIndex.reserve(booking(2L, 1L, 2L, 30, 40));
+        intervalIndex.evictEnded(BASE.plusHours(20));
+        assertFalse(intervalIndex.isFree(1L, BASE.plusHours(10), BASE.plusHours(20)));
+        intervalIndex.evictEnded(BASE.plusHours(30));
+        assertEquals(BitSet.valueOf(new long[]{0b10}), intervalIndex.findBusyDays(1L, day, day.plusDays(1)));
+        assertTrue(intervalIndex.isFree(1L, BASE.plusHours(10), BASE.plusHours(20)));
+        assertFalse(intervalIndex.isFree(1L, BASE.plusHours(30), BASE.plusHours(40)));
+        intervalIndex.evictEnded(BASE.plusHours(48));
+        assertEquals(new BitSet(), intervalIndex.findBusyDays(1L, day, day.plusDays(1)));
+    }
+
+    @Test
+    public void rebuild() {
+        var view = mock(BookingIntervalView.class);
+        when(view.getId()).thenReturn(1L);
+        when(view.getItemId()).thenReturn(1L);
+        when(view.getOwnerId()).thenReturn(1L);
+        when(view.getBookerId()).thenReturn(2L);
+        when(view.getStart()).thenReturn(BASE.plusHours(10));
+        when(view.getEnd()).thenReturn(BASE.plusHours(20));
+        var ended = mock(BookingIntervalView.class);
+        when(ended.getEnd()).thenReturn(LocalDateTime.of(2020, 1, 1, 0, 0));
+        when(bookingRepository.findAllIntervalsByStatusIn(BookingIntervalIndex.ACTIVE)).thenReturn(List.of(view, ended));
+        intervalIndex.rebuild();
+        assertThrows(NotAvailableException.class, () -> intervalIndex.reserve(booking(2L, 1L, 3L, 19, 21)));
+        verify(ended, never()).getItemId();
+        verify(bookingRepository, times(1)).findAllIntervalsByStatusIn(BookingIntervalIndex.ACTIVE);
+    }
+
+    @Test
+    public void reserveMatchesBruteForce() {
+        var random = new Random(42);
+        List<int[]> reserved = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            if (!bookings.isEmpty() && random.nextInt(4) == 0) {
+                var index = random.nextInt(bookings.size());
+                intervalIndex.release(bookings.remove(index));
+                reserved.remove(index);
+            }
+            int start = random.nextInt(5000);
+            int end = start + 1 + random.nextInt(50);
+            var booking = booking(id, 1L, 2L, start, end);
+            boolean overlaps = reserved.stream().anyMatch(r -> r[0] < end && start < r[1]);
+            if (overlaps) {
+                assertThrows(NotAvailableException.class, () -> intervalIndex.reserve(booking));
+            } else {
+                intervalIndex.reserve(booking);
+                reserved.add(new int[]{start, end});
+                bookings.add(booking);
+            }
+        }
+    }
+
+    private static Booking booking(long id, long itemId, long bookerId, int startHour, int endHour) {
+        return Booking.builder()
+                .id(id)
+                .item(Item.builder().id(itemId).owner(User.builder().id(itemId + 100).build()).build())
+                .booker(User.builder().id(bookerId).build())
+                .start(BASE.plusHours(startHour))
+                .end(BASE.plusHours(endHour))
+                .build();
+    }
+}
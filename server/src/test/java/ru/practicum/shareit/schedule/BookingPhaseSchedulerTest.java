@@ -0,0 +1,150 @@
+package ru.practicum.shareit.schedule;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Phase;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
+import ru.practicum.shareit.booking.schedule.BookingPhaseScheduler;
+import ru.practicum.shareit.booking.schedule.ItemBookingPointers;
+import ru.practicum.shareit.booking.schedule.BookingPhaseView;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BookingPhaseSchedulerTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private OwnerBookingViewRepository ownerBookingViewRepository;
+
+    @Mock
+    private ItemBookingPointers itemBookingPointers;
+
+    @Mock
+    private BookingIntervalIndex intervalIndex;
+
+    private BookingPhaseScheduler scheduler;
+
+    @BeforeEach
+    public void init() {
+        scheduler = new BookingPhaseScheduler(bookingRepository, ownerBookingViewRepository, itemBookingPointers, intervalIndex,
+                1000, 24, true);
+    }
+
+    @Test
+    public void recoverUpdatesMissedPhasesAndLoadsHorizon() {
+        when(bookingRepository.findAllPhaseTransitions(NOW, NOW.plusHours(24)))
+                .thenReturn(List.of(view(1L, NOW.plusSeconds(1), NOW.plusSeconds(3))));
+        scheduler.recover(NOW);
+        verify(bookingRepository).updatePhaseOfEnded(NOW);
+        verify(bookingRepository).updatePhaseOfStarted(NOW);
+        verify(ownerBookingViewRepository).updatePhaseOfEnded(NOW);
+        verify(ownerBookingViewRepository).updatePhaseOfStarted(NOW);
+        verify(intervalIndex).evictEnded(NOW);
+
+        scheduler.tick(NOW.plusNanos(999_000_000));
+        verify(bookingRepository, never()).updatePhase(any(), any(), any());
+
+        scheduler.tick(NOW.plusSeconds(1));
+        verify(bookingRepository).updatePhase(Set.of(1L), EnumSet.of(Phase.FUTURE), Phase.CURRENT);
+        verify(itemBookingPointers).onStarted(Set.of(1L), NOW.plusSeconds(1));
+        verify(intervalIndex, times(1)).evictEnded(any());
+
+        scheduler.tick(NOW.plusSeconds(3));
+        verify(bookingRepository).updatePhase(Set.of(1L), EnumSet.of(Phase.FUTURE, Phase.CURRENT), Phase.PAST);
+        verify(ownerBookingViewRepository).updatePhase(Set.of(1L), EnumSet.of(Phase.FUTURE, Phase.CURRENT),
+                Phase.PAST);
+        verify(intervalIndex).evictEnded(NOW.plusSeconds(3));
+        verify(itemBookingPointers, times(1)).onStarted(any(), any());
+    }
+
+    @Test
+    public void transitionBetweenTicksIsNotAppliedEarly() {
+        scheduler.recover(NOW);
+        scheduler.schedule(booking(2L, NOW.plusNanos(1_500_000_000), NOW.plusDays(2)));
+
+        scheduler.tick(NOW.plusSeconds(1));
+        verify(bookingRepository, never()).updatePhase(any(), any(), any());
+
+        scheduler.tick(NOW.plusSeconds(2));
+        verify(bookingRepository).updatePhase(Set.of(2L), EnumSet.of(Phase.FUTURE), Phase.CURRENT);
+    }
+
+    @Test
+    public void horizonIsReloadedWhenHalfPassed() {
+        scheduler.recover(NOW);
+        var later = NOW.plusHours(13);
+        when(bookingRepository.findAllPhaseTransitions(NOW, later.plusHours(24)))
+                .thenReturn(List.of(view(3L, NOW.plusHours(25), NOW.plusHours(26))));
+        scheduler.tick(later);
+        scheduler.tick(NOW.plusHours(25));
+        verify(bookingRepository).updatePhase(Set.of(3L), EnumSet.of(Phase.FUTURE), Phase.CURRENT);
+    }
+
+    /**
+     * Бронирование создано на другом экземпляре внутри уже загруженного окна и в колесо этого экземпляра
+     * не попало. Перезагрузка горизонта перечитывает окно с прошлого восстановления и выполняет
+     * наступивший переход вместе с указателями вещи
+     */
+    @Test
+    public void horizonReloadCatchesUpBookingsScheduledElsewhere() {
+        scheduler.recover(NOW);
+        var later = NOW.plusHours(13);
+        when(bookingRepository.findAllPhaseTransitions(NOW, later.plusHours(24)))
+                .thenReturn(List.of(view(5L, NOW.plusHours(2), NOW.plusHours(30))));
+
+        scheduler.tick(later);
+
+        verify(bookingRepository).updatePhaseOfEnded(later);
+        verify(bookingRepository).updatePhaseOfStarted(later);
+        verify(ownerBookingViewRepository).updatePhaseOfStarted(later);
+        verify(bookingRepository).updatePhase(Set.of(5L), EnumSet.of(Phase.FUTURE), Phase.CURRENT);
+        verify(ownerBookingViewRepository).updatePhase(Set.of(5L), EnumSet.of(Phase.FUTURE), Phase.CURRENT);
+        verify(itemBookingPointers).onStarted(Set.of(5L), later);
+
+        scheduler.tick(NOW.plusHours(30));
+        verify(bookingRepository).updatePhase(Set.of(5L), EnumSet.of(Phase.FUTURE, Phase.CURRENT), Phase.PAST);
+    }
+
+    private static Booking booking(long id, LocalDateTime start, LocalDateTime end) {
+        return Booking.builder()
+                .id(id)
+                .start(start)
+                .end(end)
+                .build();
+    }
+
+    private static BookingPhaseView view(long id, LocalDateTime start, LocalDateTime end) {
+        return new BookingPhaseView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getStart() {
+                return start;
+            }
+
+            @Override
+            public LocalDateTime getEnd() {
+                return end;
+            }
+        };
+    }
+}
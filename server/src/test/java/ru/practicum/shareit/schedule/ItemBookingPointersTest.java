@@ -0,0 +1,122 @@
+package ru.practicum.shareit.schedule;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.schedule.ItemBookingPointers;
+import ru.practicum.shareit.item.cache.ItemDetailCache;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemBookingPointersTest {
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private ItemDetailCache detailCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ItemBookingPointers pointers;
+
+    @BeforeEach
+    public void init() {
+        pointers = new ItemBookingPointers(itemRepository, bookingRepository, detailCache, transactionManager, 1000, 60);
+    }
+
+    @AfterEach
+    public void stop() {
+        pointers.stop();
+    }
+
+    /**
+     * Указатели меняют начавшиеся бронирования и подтвержденные будущие, ожидающие будущие - нет
+     */
+    @Test
+    public void onCreatedRefreshesStartedAndApprovedFutureBookings() {
+        var now = LocalDateTime.now();
+        pointers.onCreated(List.of(
+                booking(1L, Status.WAITING, now.minusHours(1)),
+                booking(2L, Status.APPROVED, now.plusHours(1)),
+                booking(3L, Status.WAITING, now.plusHours(1))));
+        verify(itemRepository).refreshBookingPointers(argThat(ids -> Set.copyOf(ids).equals(Set.of(1L, 2L))),
+                any(LocalDateTime.class));
+        verify(detailCache).invalidateBookings(Set.of(1L, 2L));
+    }
+
+    @Test
+    public void onCreatedSkipsWaitingFutureBookings() {
+        pointers.onCreated(List.of(booking(1L, Status.WAITING, LocalDateTime.now().plusHours(1))));
+        verifyNoInteractions(itemRepository, detailCache);
+    }
+
+    /**
+     * Смена статуса начавшегося бронирования указатели не меняет
+     */
+    @Test
+    public void onStatusChangedRefreshesOnlyNotStartedBookings() {
+        var now = LocalDateTime.now();
+        pointers.onStatusChanged(List.of(
+                booking(1L, Status.APPROVED, now.minusHours(1)),
+                booking(2L, Status.REJECTED, now.plusHours(1))));
+        verify(itemRepository).refreshBookingPointers(argThat(ids -> Set.copyOf(ids).equals(Set.of(2L))),
+                any(LocalDateTime.class));
+        verify(detailCache).invalidateBookings(Set.of(2L));
+    }
+
+    @Test
+    public void onStatusChangedSkipsStartedBookings() {
+        pointers.onStatusChanged(List.of(booking(1L, Status.REJECTED, LocalDateTime.now().minusHours(1))));
+        verifyNoInteractions(itemRepository, detailCache);
+    }
+
+    /**
+     * Первая проверка идет в потоке проверок, start() ее не ждет
+     */
+    @Test
+    public void startRunsFirstCheckInBackground() throws Exception {
+        var release = new CountDownLatch(1);
+        var thread = new CompletableFuture<String>();
+        when(itemRepository.findMaxId()).thenAnswer(invocation -> {
+            thread.complete(Thread.currentThread().getName());
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        pointers.start();
+        assertEquals("item-booking-pointers-check", thread.get(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    private static Booking booking(long itemId, Status status, LocalDateTime start) {
+        return Booking.builder()
+                .item(Item.builder().id(itemId).build())
+                .status(status)
+                .start(start)
+                .end(start.plusHours(2))
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.shareit.schedule;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.booking.schedule.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+    private static final long TICK = 10;
+    private static final int SIZE = 8;
+
+    @Test
+    public void addReturnsFalseWhenAlreadyDue() {
+        var wheel = new TimingWheel<String>(TICK, SIZE, 100);
+        assertFalse(wheel.add("past", 50));
+        assertFalse(wheel.add("current tick", 109));
+        assertTrue(wheel.add("next tick", 110));
+    }
+
+    @Test
+    public void advanceFiresAtTickOfExpiration() {
+        var wheel = new TimingWheel<String>(TICK, SIZE, 0);
+        assertTrue(wheel.add("a", 35));
+        List<String> fired = new ArrayList<>();
+        wheel.advance(29, fired::add);
+        assertTrue(fired.isEmpty());
+        wheel.advance(30, fired::add);
+        assertEquals(List.of("a"), fired);
+        wheel.advance(1000, fired::add);
+        assertEquals(List.of("a"), fired);
+    }
+
+    @Test
+    public void advanceFiresTasksFromOverflowWheels() {
+        var wheel = new TimingWheel<String>(TICK, SIZE, 0);
+        wheel.add("second level", TICK * SIZE * 3 + 5);
+        wheel.add("third level", TICK * SIZE * SIZE * 2 + 5);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(TICK * SIZE * 3 - 1, fired::add);
+        assertTrue(fired.isEmpty());
+        wheel.advance(TICK * SIZE * 3, fired::add);
+        assertEquals(List.of("second level"), fired);
+        wheel.advance(TICK * SIZE * SIZE * 2 - 1, fired::add);
+        assertEquals(1, fired.size());
+        wheel.advance(TICK * SIZE * SIZE * 2, fired::add);
+        assertEquals(List.of("second level", "third level"), fired);
+    }
+
+    @Test
+    public void randomTasksFireExactlyOnceAtTheirTick() {
+        var random = new Random(42);
+        var wheel = new TimingWheel<Integer>(TICK, SIZE, 0);
+        Map<Integer, Long> expirations = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            var expiration = TICK + random.nextInt(20_000);
+            expirations.put(i, expiration);
+            assertTrue(wheel.add(i, expiration));
+        }
+        Map<Integer, Long> fired = new HashMap<>();
+        for (long now = 0; now <= 20_000 + TICK; now += TICK) {
+            var time = now;
+            wheel.advance(now, value -> assertNull(fired.put(value, time)));
+        }
+        assertEquals(expirations.size(), fired.size());
+        expirations.forEach((value, expiration) ->
+                assertEquals(expiration - expiration % TICK, fired.get(value), () -> "Task " + value));
+    }
+}
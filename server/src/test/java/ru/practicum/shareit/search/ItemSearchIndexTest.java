@@ -0,0 +1,189 @@
+package ru.practicum.shareit.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.item.dto.ItemFacetsDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.user.model.User;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ItemSearchIndexTest {
+    @Mock
+    private ItemRepository itemRepository;
+
+    @InjectMocks
+    private ItemSearchIndex searchIndex;
+
+    @BeforeEach
+    public void init() {
+        searchIndex.index(item(1L, 1L, "Дрель", "Простая дрель", true));
+        searchIndex.index(item(2L, 1L, "Отвертка", "Аккумуляторная отвертка", true));
+        searchIndex.index(item(3L, 2L, "Клей Момент", "Тюбик суперклея марки Момент", false));
+        searchIndex.index(item(4L, 2L, "Пила", "Ручная пила по дереву", false));
+    }
+
+    @Test
+    public void searchBySubstringOfToken() {
+        assertEquals(List.of(1L), searchIndex.search("дРелЬ", false));
+        assertEquals(List.of(2L), searchIndex.search("аккумулятор", false));
+        assertEquals(List.of(3L), searchIndex.search("клей", false));
+    }
+
+    @Test
+    public void searchBySubstringAcrossTokens() {
+        assertEquals(List.of(1L), searchIndex.search("стая дре", false));
+        assertEquals(Collections.emptyList(), searchIndex.search("дрель простая", false));
+    }
+
+    @Test
+    public void searchDescriptionOnlyForAvailableItems() {
+        assertEquals(Collections.emptyList(), searchIndex.search("дереву", false));
+        assertEquals(List.of(4L), searchIndex.search("пила", false));
+    }
+
+    @Test
+    public void searchWithoutLettersScansAllItems() {
+        assertEquals(List.of(1L, 2L, 3L), searchIndex.search(" ", false));
+    }
+
+    @Test
+    public void updateReplacesTerms() {
+        searchIndex.index(item(1L, 1L, "Перфоратор", "Мощный перфоратор", true));
+        assertEquals(Collections.emptyList(), searchIndex.search("дрель", false));
+        assertEquals(List.of(1L), searchIndex.search("перфоратор", false));
+    }
+
+    @Test
+    public void removeByOwner() {
+        searchIndex.removeByOwner(1L);
+        assertEquals(Collections.emptyList(), searchIndex.search("дрель", false));
+        assertEquals(List.of(4L), searchIndex.search("пила", false));
+    }
+
+    @Test
+    public void searchRankedPrefersNameHits() {
+        searchIndex.index(item(5L, 2L, "Чемодан", "Внутри лежит отвертка", true));
+        searchIndex.index(item(6L, 2L, "Набор отверток", "Отвертка крестовая и отвертка плоская", true));
+        assertEquals(List.of(2L, 5L, 6L), searchIndex.search("отвертк", false));
+        assertEquals(List.of(2L, 6L, 5L), searchIndex.searchRanked("отвертк", false, 10));
+        assertEquals(List.of(2L, 6L), searchIndex.searchRanked("отвертк", false, 2));
+    }
+
+    @Test
+    public void searchRankedKeepsMatchSemantics() {
+        assertEquals(Collections.emptyList(), searchIndex.searchRanked("дереву", false, 10));
+        assertEquals(List.of(1L), searchIndex.searchRanked("дрель", false, 10));
+    }
+
+    @Test
+    public void fuzzySearchToleratesTypos() {
+        assertEquals(Collections.emptyList(), searchIndex.search("отверка", false));
+        assertEquals(List.of(2L), searchIndex.search("отверка", true));
+        assertEquals(List.of(2L), searchIndex.search("аккумуляторая отвертка", true));
+        assertEquals(List.of(1L), searchIndex.search("дрел", true));
+        assertEquals(List.of(1L), searchIndex.searchRanked("дрнль", true, 10));
+    }
+
+    @Test
+    public void fuzzySearchKeepsAvailabilityRule() {
+        assertEquals(Collections.emptyList(), searchIndex.search("деерву", true));
+        assertEquals(List.of(4L), searchIndex.search("пилла", true));
+    }
+
+    @Test
+    public void fuzzySearchDoesNotAllowTyposInShortTokens() {
+        searchIndex.index(item(5L, 2L, "Ящик", "Ящик для инструментов", true));
+        assertEquals(Collections.emptyList(), searchIndex.search("дя", true));
+        assertEquals(List.of(5L), searchIndex.search("для", true));
+    }
+
+    @Test
+    public void facetsCountAllMatches() {
+        searchIndex.index(item(5L, 2L, "Дрель ударная", "Мощная дрель", false));
+        var answered = item(6L, 3L, "Дрель", "Дрель по запросу", true);
+        answered.setRequest(ItemRequest.builder().id(1L).build());
+        searchIndex.index(answered);
+        var facets = searchIndex.facets("дрель", false, 2);
+        assertEquals(2, facets.getAvailable());
+        assertEquals(1, facets.getUnavailable());
+        assertEquals(1, facets.getWithRequest());
+        assertEquals(2, facets.getWithoutRequest());
+        assertEquals(List.of(new ItemFacetsDto.OwnerCount(1L, 1), new ItemFacetsDto.OwnerCount(2L, 1)),
+                facets.getTopOwners());
+        assertEquals(0, searchIndex.facets("дереву", false, 2).getUnavailable());
+    }
+
+    @Test
+    public void suggestByPrefix() {
+        searchIndex.index(item(5L, 2L, "Дрель ударная", "Мощная дрель", true));
+        searchIndex.index(item(6L, 2L, "Дрель", "Еще одна дрель", true));
+        searchIndex.index(item(7L, 2L, "Дрожжи", "Не инструмент", true));
+        assertEquals(List.of("Дрель", "Дрель ударная", "Дрожжи"), searchIndex.suggest("др", 10));
+        assertEquals(List.of("Дрель", "Дрель ударная"), searchIndex.suggest("ДРЕ", 10));
+        assertEquals(List.of("Дрель"), searchIndex.suggest("д", 1));
+        assertEquals(List.of("Дрель ударная"), searchIndex.suggest("дрель у", 10));
+        assertEquals(Collections.emptyList(), searchIndex.suggest("дрек", 10));
+    }
+
+    @Test
+    public void suggestFollowsUpdates() {
+        searchIndex.index(item(5L, 2L, "Дрожжи", "Не инструмент", true));
+        searchIndex.index(item(1L, 1L, "Перфоратор", "Мощный перфоратор", true));
+        assertEquals(List.of("Дрожжи"), searchIndex.suggest("др", 10));
+        searchIndex.removeByOwner(2L);
+        assertEquals(Collections.emptyList(), searchIndex.suggest("др", 10));
+        assertEquals(List.of("Перфоратор"), searchIndex.suggest("пер", 10));
+    }
+
+    /**
+     * Удаление вещи не меняет написание названия, под которым его показывают оставшиеся вещи
+     */
+    @Test
+    public void suggestKeepsDisplayNameOfRemainingItems() {
+        searchIndex.index(item(5L, 3L, "Дрель", "Еще одна дрель", true));
+        searchIndex.index(item(6L, 2L, "дрель", "Третья дрель", true));
+        assertEquals(List.of("Дрель"), searchIndex.suggest("др", 10));
+        searchIndex.removeByOwner(2L);
+        assertEquals(List.of("Дрель"), searchIndex.suggest("др", 10));
+        searchIndex.removeByOwner(1L);
+        searchIndex.removeByOwner(3L);
+        assertEquals(Collections.emptyList(), searchIndex.suggest("др", 10));
+    }
+
+    @Test
+    public void suggestRejectsLimitAboveCap() {
+        assertThrows(IllegalArgumentException.class, () -> searchIndex.suggest("др", ItemSearchIndex.MAX_SUGGESTIONS + 1));
+    }
+
+    @Test
+    public void rebuild() {
+        when(itemRepository.findAllForSearch()).thenReturn(Collections.emptyList());
+        searchIndex.rebuild();
+        assertEquals(Collections.emptyList(), searchIndex.search("дрель", false));
+        verify(itemRepository, times(1)).findAllForSearch();
+    }
+
+    private static Item item(long id, long ownerId, String name, String description, boolean available) {
+        return Item.builder()
+                .id(id)
+                .owner(User.builder().id(ownerId).build())
+                .name(name)
+                .description(description)
+                .available(available)
+                .build();
+    }
+}
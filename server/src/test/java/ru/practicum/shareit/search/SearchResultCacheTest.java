@@ -0,0 +1,136 @@
+package ru.practicum.shareit.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.search.SearchResultCache;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchResultCacheTest {
+    private final SearchResultCache cache = new SearchResultCache(1024);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void hitByNormalizedQuery() {
+        assertEquals(List.of(item(1L, "Дрель")), search("Дрель", false));
+        assertEquals(List.of(item(1L, "Дрель")), search("дРЕЛЬ", false));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        search("дрель", true);
+        search("дрель ", false);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void cachedResultIsNotShared() {
+        search("дрель", false).get(0).setName("Пила");
+        assertEquals("Дрель", search("дрель", false).get(0).getName());
+    }
+
+    @Test
+    public void invalidateOnlyMatchingQueries() {
+        search("дрел", false);
+        search("отвертка", false);
+        search("стая дре", false);
+        cache.invalidate(List.of("Дрель", "Простая дрель"));
+        search("дрел", false);
+        search("отвертка", false);
+        search("стая дре", false);
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    public void invalidateFuzzyQueriesWithinTypos() {
+        search("дрнль", true);
+        search("дрнль", false);
+        cache.invalidate(List.of("Дрель"));
+        search("дрнль", true);
+        search("дрнль", false);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void queryWithoutLettersIsInvalidatedByAnyItem() {
+        search(" ", false);
+        cache.invalidate(List.of("Пила"));
+        search(" ", false);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidateAll() {
+        search("дрель", false);
+        search("пила", false);
+        cache.invalidateAll();
+        search("дрель", false);
+        search("пила", false);
+        assertEquals(4, loads.get());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedByWeight() {
+        for (int i = 0; i < 10; i++) {
+            search("запрос" + i, false);
+        }
+        search("запрос9", false);
+        assertEquals(1, cache.getHits());
+        assertEquals(true, cache.getEvictions() > 0);
+        assertEquals(true, cache.getWeight() <= 1024);
+        search("запрос0", false);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void resultLoadedDuringInvalidationIsNotCached() {
+        cache.get("дрель", false, false, 0, 10, () -> {
+            cache.invalidate(List.of("Дрель"));
+            return List.of(item(1L, "Дрель"));
+        });
+        search("дрель", false);
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void disabledCacheAlwaysLoads() {
+        var disabled = new SearchResultCache(0);
+        disabled.get("дрель", false, false, 0, 10, () -> List.of(item(loads.incrementAndGet(), "Дрель")));
+        disabled.get("дрель", false, false, 0, 10, () -> List.of(item(loads.incrementAndGet(), "Дрель")));
+        assertEquals(2, loads.get());
+        assertEquals(0, disabled.getMisses());
+    }
+
+    @Test
+    public void bindMetrics() {
+        var registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        search("дрель", false);
+        search("дрель", false);
+        assertEquals(1.0, registry.get("shareit.search.cache.hits").functionCounter().count());
+        assertEquals(1.0, registry.get("shareit.search.cache.misses").functionCounter().count());
+        assertEquals(0.0, registry.get("shareit.search.cache.evictions").functionCounter().count());
+    }
+
+    private List<ItemDto> search(String text, boolean fuzzy) {
+        return cache.get(text, false, fuzzy, 0, 10, () -> {
+            loads.incrementAndGet();
+            return List.of(item(1L, "Дрель"));
+        });
+    }
+
+    private static ItemDto item(long id, String name) {
+        return ItemDto.builder()
+                .id(id)
+                .name(name)
+                .description("Простая дрель для дома")
+                .available(true)
+                .build();
+    }
+}
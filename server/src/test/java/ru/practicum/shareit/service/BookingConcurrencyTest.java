@@ -0,0 +1,143 @@
+package ru.practicum.shareit.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exception.NotAvailableException;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.service.UserService;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+public class BookingConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingIntervalIndex intervalIndex;
+
+    private long ownerId;
+    private final List<Long> bookers = new ArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        ownerId = createUser();
+        bookers.clear();
+        for (int i = 0; i < THREADS; i++) {
+            bookers.add(createUser());
+        }
+    }
+
+    @Test
+    public void concurrentBookingsOfOneItemDoNotOverlap() throws Exception {
+        var itemId = createItem();
+        var booked = bookConcurrently(i -> itemId);
+        assertEquals(1, booked);
+        assertEquals(1, bookingRepository.findAllByItemId(itemId).size());
+    }
+
+    @Test
+    public void concurrentBookingsOfOneItemDoNotOverlapWithoutIndex() throws Exception {
+        var itemId = createItem();
+        ReflectionTestUtils.setField(intervalIndex, "enabled", false);
+        try {
+            var booked = bookConcurrently(i -> itemId);
+            assertEquals(1, booked);
+            assertEquals(1, bookingRepository.findAllByItemId(itemId).size());
+        } finally {
+            ReflectionTestUtils.setField(intervalIndex, "enabled", true);
+        }
+    }
+
+    @Test
+    public void concurrentBookingsOfDifferentItemsSucceed() throws Exception {
+        List<Long> items = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            items.add(createItem());
+        }
+        var booked = bookConcurrently(items::get);
+        assertEquals(THREADS, booked);
+    }
+
+    /**
+     * Метод одновременно запускает бронирования одного периода всеми бронирующими
+     * и возвращает число успешных бронирований
+     */
+    private int bookConcurrently(IntToLongFunction itemByThread) throws Exception {
+        var start = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        var executor = Executors.newFixedThreadPool(THREADS);
+        var ready = new CountDownLatch(1);
+        var booked = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                var bookerId = bookers.get(i);
+                var itemId = itemByThread.applyAsLong(i);
+                futures.add(executor.submit(() -> {
+                    ready.await();
+                    try {
+                        bookingService.create(BookingDto.builder()
+                                .itemId(itemId)
+                                .start(start)
+                                .end(start.plusHours(2))
+                                .build(), bookerId);
+                        booked.incrementAndGet();
+                    } catch (NotAvailableException e) {
+                        //Период уже занят другим бронированием
+                    }
+                    return null;
+                }));
+            }
+            ready.countDown();
+            for (var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return booked.get();
+    }
+
+    private long createUser() {
+        var id = SEQUENCE.incrementAndGet();
+        return userService.create(new UserDto(null, "user" + id, "concurrency" + id + "@mail.ru")).getId();
+    }
+
+    private long createItem() {
+        return itemService.create(ItemDto.builder()
+                .name("Дрель")
+                .description("Простая дрель")
+                .available(true)
+                .build(), ownerId).getId();
+    }
+}
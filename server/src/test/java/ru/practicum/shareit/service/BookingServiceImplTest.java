@@ -5,33 +5,87 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingStatusUpdateDto;
+import ru.practicum.shareit.booking.dto.BookingView;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.OwnerBookingView;
+import ru.practicum.shareit.booking.model.Phase;
 import ru.practicum.shareit.booking.model.Status;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
+import ru.practicum.shareit.booking.schedule.BookingPhaseScheduler;
+import ru.practicum.shareit.booking.schedule.ItemBookingPointers;
+import ru.practicum.shareit.booking.schedule.ItemLocks;
+import ru.practicum.shareit.booking.stream.BookingEventBroker;
 import ru.practicum.shareit.booking.service.BookingServiceImpl;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotAvailableException;
 import ru.practicum.shareit.exception.NotExistException;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.util.CursorExporter;
 import ru.practicum.shareit.util.EntityUtils;
+import ru.practicum.shareit.util.ExportFormat;
+import ru.practicum.shareit.util.OffsetPageRequest;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class BookingServiceImplTest {
+    private static final ProjectionFactory PROJECTIONS = new SpelAwareProxyProjectionFactory();
 
     @Mock
     private BookingRepository bookingRepository;
 
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private OwnerBookingViewRepository ownerBookingViewRepository;
+
+    @Mock
+    private BookingIntervalIndex intervalIndex;
+
+    @Mock
+    private ItemLocks itemLocks;
+
+    @Mock
+    private BookingPhaseScheduler phaseScheduler;
+
+    @Mock
+    private ItemBookingPointers itemBookingPointers;
+
+    @Mock
+    private BookingEventBroker eventBroker;
+
+    @Mock
+    private CursorExporter exporter;
+
     @Mock
     private EntityUtils entityUtils;
 
@@ -126,6 +180,7 @@ public class BookingServiceImplTest {
     @Test
     public void create() {
         var item = Item.builder()
+                .id(1L)
                 .available(true)
                 .owner(User.builder().id(1L).build())
                 .build();
@@ -146,6 +201,113 @@ public class BookingServiceImplTest {
         resultBookingDto.setId(1L);
         assertEquals(BookingMapper.toBookingDto(booking), resultBookingDto);
         verify(bookingRepository, times(1)).save(any(Booking.class));
+        verify(itemLocks, times(1)).lock(1L);
+        verify(intervalIndex, times(1)).reserve(booking);
+        verify(phaseScheduler, times(1)).schedule(booking);
+        verify(ownerBookingViewRepository, times(1)).save(argThat(view -> view.getOwnerId() == 1L
+                && view.getBookerId() == 2L && view.getItemId() == 1L));
+        verify(itemBookingPointers, times(1)).onCreated(List.of(booking));
+    }
+
+    @Test
+    public void updateStatuses() {
+        var owner = User.builder().id(1L).build();
+        var item = Item.builder().id(1L).owner(owner).build();
+        var otherItem = Item.builder().id(2L).owner(User.builder().id(3L).build()).build();
+        var waiting = Booking.builder().id(1L).item(item).status(Status.WAITING)
+                .booker(User.builder().id(2L).build()).build();
+        var foreign = Booking.builder().id(2L).item(otherItem).status(Status.WAITING).build();
+        var approved = Booking.builder().id(4L).item(item).status(Status.APPROVED).build();
+        when(bookingRepository.findAllByIdIn(anyCollection())).thenReturn(List.of(waiting, foreign, approved));
+        var results = bookingService.updateStatuses(1L, List.of(
+                new BookingStatusUpdateDto(1L, true),
+                new BookingStatusUpdateDto(2L, false),
+                new BookingStatusUpdateDto(3L, true),
+                new BookingStatusUpdateDto(1L, false),
+                new BookingStatusUpdateDto(4L, null),
+                new BookingStatusUpdateDto(4L, true)));
+        assertEquals(6, results.size());
+        assertEquals(Status.APPROVED, results.get(0).getBooking().getStatus());
+        assertEquals("User with id=1 is not the owner", results.get(1).getError());
+        assertEquals("Booking with id=3 not exists", results.get(2).getError());
+        assertEquals("Booking with id=1 is repeated in batch", results.get(3).getError());
+        assertEquals("Booking id and approved can't be a null", results.get(4).getError());
+        assertEquals("Booking is already approved", results.get(5).getError());
+        assertEquals(Status.WAITING, foreign.getStatus());
+        verify(itemLocks, times(1)).lockAll(Set.of(1L));
+        verify(bookingRepository, times(1)).saveAll(List.of(waiting));
+        verify(bookingRepository, times(1)).flush();
+        verify(ownerBookingViewRepository, times(1)).updateStatus(List.of(1L), Status.APPROVED);
+        verify(itemBookingPointers, times(1)).onStatusChanged(List.of(waiting));
+        verify(eventBroker, times(1)).publish(BookingMapper.toBookingDto(waiting), List.of(2L, 1L));
+        verifyNoMoreInteractions(eventBroker);
+    }
+
+    @Test
+    public void updateStatusesKeepsStatusWhenPeriodIsTaken() {
+        var item = Item.builder().id(1L).owner(User.builder().id(1L).build()).build();
+        var rejected = Booking.builder().id(1L).item(item).status(Status.REJECTED).build();
+        when(bookingRepository.findAllByIdIn(anyCollection())).thenReturn(List.of(rejected));
+        doThrow(new NotAvailableException("Item with id=1 is already booked for this period"))
+                .when(intervalIndex).reserve(rejected);
+        var results = bookingService.updateStatuses(1L, List.of(new BookingStatusUpdateDto(1L, true)));
+        assertEquals("Item with id=1 is already booked for this period", results.get(0).getError());
+        assertEquals(Status.REJECTED, rejected.getStatus());
+        verify(bookingRepository, times(1)).saveAll(List.of());
+        verify(itemBookingPointers, times(1)).onStatusChanged(List.of());
+        verifyNoInteractions(ownerBookingViewRepository, eventBroker);
+    }
+
+    @Test
+    public void updateStatusesWithEmptyBatch() {
+        var exception = assertThrows(BadRequestException.class, () -> bookingService.updateStatuses(1L, List.of()));
+        assertEquals("Batch size must be from 1 to 100", exception.getMessage());
+    }
+
+    @Test
+    public void createAll() {
+        var owner = User.builder().id(1L).build();
+        var user = User.builder().id(2L).build();
+        var item = Item.builder().id(1L).available(true).owner(owner).build();
+        var unavailable = Item.builder().id(2L).available(false).owner(owner).build();
+        var start = LocalDateTime.now().plusDays(1);
+        when(entityUtils.getUserIfExists(2L)).thenReturn(user);
+        when(itemRepository.findAllByIdIn(anyCollection())).thenReturn(List.of(item, unavailable));
+        when(intervalIndex.isFree(eq(1L), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(true);
+        doAnswer(invocation -> {
+            List<Booking> bookings = invocation.getArgument(0);
+            long id = 10;
+            for (var booking : bookings) {
+                booking.setId(id++);
+            }
+            return null;
+        }).when(bookingRepository).insertAll(anyList());
+        var results = bookingService.createAll(List.of(
+                BookingDto.builder().itemId(1L).start(start).end(start.plusHours(2)).build(),
+                BookingDto.builder().itemId(1L).start(start.plusHours(1)).end(start.plusHours(3)).build(),
+                BookingDto.builder().itemId(2L).start(start).end(start.plusHours(2)).build(),
+                BookingDto.builder().itemId(3L).start(start).end(start.plusHours(2)).build(),
+                BookingDto.builder().itemId(1L).start(start.plusHours(2)).end(start.plusHours(1)).build(),
+                BookingDto.builder().itemId(1L).start(start.minusDays(2)).end(start.minusDays(2).plusHours(1)).build(),
+                BookingDto.builder().itemId(1L).start(start.plusHours(2)).end(start.plusHours(3)).build()), 2L);
+        assertEquals(7, results.size());
+        assertEquals(10L, results.get(0).getBookingId());
+        assertEquals(Status.WAITING, results.get(0).getBooking().getStatus());
+        assertEquals("Item with id=1 is already booked for this period", results.get(1).getError());
+        assertEquals("Item is not available", results.get(2).getError());
+        assertEquals("Item with id=3 not exists", results.get(3).getError());
+        assertEquals("Start date is after or equals to end date", results.get(4).getError());
+        assertEquals("Start date is in the past", results.get(5).getError());
+        assertEquals(11L, results.get(6).getBookingId());
+        verify(itemLocks, times(1)).lockAll(Set.of(1L, 2L));
+        verify(bookingRepository, times(1)).insertAll(anyList());
+        verify(intervalIndex, times(2)).reserve(any(Booking.class));
+        verify(ownerBookingViewRepository, times(1)).saveAll(argThat(views ->
+                List.of(10L, 11L).equals(((List<OwnerBookingView>) views).stream()
+                        .map(OwnerBookingView::getId)
+                        .collect(Collectors.toList()))));
+        verify(itemBookingPointers, times(1)).onCreated(argThat(bookings -> List.of(10L, 11L).equals(
+                bookings.stream().map(Booking::getId).collect(Collectors.toList()))));
     }
 
     @Test
@@ -199,6 +361,33 @@ public class BookingServiceImplTest {
         verify(entityUtils, times(1)).getBookingIfExists(anyLong());
         verify(entityUtils, times(1)).getItemIfExists(anyLong());
         verify(bookingRepository, times(1)).save(any(Booking.class));
+        verify(intervalIndex, times(1)).reserve(booking);
+        verify(ownerBookingViewRepository, times(1)).updateStatus(List.of(1L), Status.APPROVED);
+        verify(itemBookingPointers, times(1)).onStatusChanged(List.of(booking));
+        verify(eventBroker, times(1)).publish(actualDto, List.of(2L, 1L));
+    }
+
+    @Test
+    public void updateStatusRejectReleasesPeriod() {
+        var item = Item.builder()
+                .id(1L)
+                .owner(User.builder().id(1L).build())
+                .build();
+        var booking = Booking.builder()
+                .id(1L)
+                .start(LocalDateTime.of(2020, 1, 1, 1, 1))
+                .end(LocalDateTime.of(2020, 2, 1, 1, 1))
+                .status(Status.WAITING)
+                .item(item)
+                .booker(User.builder().id(2L).build())
+                .build();
+        when(entityUtils.getBookingIfExists(anyLong())).thenReturn(booking);
+        when(entityUtils.getItemIfExists(anyLong())).thenReturn(item);
+        when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
+        var actualDto = bookingService.updateStatus(1L, 1L, false);
+        assertEquals(Status.REJECTED, actualDto.getStatus());
+        verify(intervalIndex, times(1)).release(booking);
+        verify(intervalIndex, never()).reserve(any(Booking.class));
     }
 
     @Test
@@ -229,63 +418,164 @@ public class BookingServiceImplTest {
 
     @Test
     public void findByBookerAndState() {
-        var booking1 = Booking.builder()
-                .booker(User.builder().id(1L).build())
-                .status(Status.APPROVED)
-                .item(Item.builder().id(1L).build())
-                .start(LocalDateTime.of(2020, 1, 1, 1, 1))
-                .end(LocalDateTime.of(2020, 1, 2, 1, 1))
-                .build();
-        var booking2 = Booking.builder()
-                .booker(User.builder().id(1L).build())
-                .status(Status.APPROVED)
-                .item(Item.builder().id(1L).build())
-                .start(LocalDateTime.of(2021, 1, 1, 1, 1))
-                .end(LocalDateTime.of(2021, 1, 2, 1, 1))
-                .build();
-        var booking3 = Booking.builder()
-                .booker(User.builder().id(1L).build())
-                .status(Status.APPROVED)
-                .item(Item.builder().id(1L).build())
-                .start(LocalDateTime.of(2024, 1, 1, 1, 1))
-                .end(LocalDateTime.of(2024, 1, 2, 1, 1))
-                .build();
-        when(bookingRepository.findAllByBookerId(anyLong())).thenReturn(List.of(booking1, booking3, booking2));
-        var expected = List.of(BookingMapper.toBookingDto(booking2), BookingMapper.toBookingDto(booking1)).toArray();
-        var actual = bookingService.findByBookerAndState(1L, "PAST", 0, 100).toArray();
-        assertArrayEquals(expected, actual);
+        var booking1 = bookingView(2L, LocalDateTime.of(2021, 1, 1, 1, 1));
+        var booking2 = bookingView(1L, LocalDateTime.of(2020, 1, 1, 1, 1));
+        when(bookingRepository.findAllByBookerIdAndPhase(anyLong(), eq(Phase.PAST), any(Pageable.class)))
+                .thenReturn(List.of(booking1, booking2));
+        var actual = bookingService.findByBookerAndState(1L, "PAST", 5, 100);
+        assertEquals(List.of(2L, 1L), List.of(actual.get(0).getId(), actual.get(1).getId()));
+        assertEquals(booking1.getStart(), actual.get(0).getStart());
+        assertEquals(Status.APPROVED, actual.get(0).getStatus());
+        assertEquals("Дрель", actual.get(0).getItem().getName());
+        assertEquals(true, actual.get(0).getItem().getAvailable());
+        assertEquals(5L, actual.get(0).getItem().getRequest().getId());
+        assertEquals("booker@mail.ru", actual.get(0).getBooker().getEmail());
         verify(entityUtils, times(1)).getUserIfExists(anyLong());
-        verify(bookingRepository, times(1)).findAllByBookerId(anyLong());
+        verify(bookingRepository, times(1)).findAllByBookerIdAndPhase(eq(1L), eq(Phase.PAST),
+                eq(OffsetPageRequest.of(5, 100, Sort.by(Sort.Order.desc("start"), Sort.Order.asc("id")))));
+    }
+
+    @Test
+    public void findByBookerAndStateDispatchesByState() {
+        bookingService.findByBookerAndState(1L, null, 0, 10);
+        verify(bookingRepository).findAllByBookerId(eq(1L), any(Pageable.class));
+        bookingService.findByBookerAndState(1L, "FUTURE", 0, 10);
+        verify(bookingRepository).findAllByBookerIdAndPhase(eq(1L), eq(Phase.FUTURE), any(Pageable.class));
+        bookingService.findByBookerAndState(1L, "CURRENT", 0, 10);
+        verify(bookingRepository).findAllByBookerIdAndPhase(eq(1L), eq(Phase.CURRENT), any(Pageable.class));
+        bookingService.findByBookerAndState(1L, "WAITING", 0, 10);
+        verify(bookingRepository).findAllByBookerIdAndStatus(eq(1L), eq(Status.WAITING), any(Pageable.class));
+        bookingService.findByBookerAndState(1L, "REJECTED", 0, 10);
+        verify(bookingRepository).findAllByBookerIdAndStatus(eq(1L), eq(Status.REJECTED), any(Pageable.class));
     }
 
+    @Test
+    public void findByBookerAndStateWithBadParams() {
+        var exception = assertThrows(BadRequestException.class,
+                () -> bookingService.findByBookerAndState(1L, "UNKNOWN", -1, 10));
+        assertEquals("Unknown state: UNKNOWN", exception.getMessage());
+        exception = assertThrows(BadRequestException.class,
+                () -> bookingService.findByBookerAndState(1L, "ALL", 0, 0));
+        assertEquals("Bad params from or size for request", exception.getMessage());
+        verifyNoInteractions(bookingRepository);
+    }
+
+    /**
+     * Владелец получает вещь и бронирующего целиком, как и бронирующий
+     */
     @Test
     public void findAllByOwnerAndState() {
-        var booking1 = Booking.builder()
-                .booker(User.builder().id(1L).build())
-                .status(Status.APPROVED)
-                .item(Item.builder().id(1L).build())
-                .start(LocalDateTime.of(2020, 1, 1, 1, 1))
-                .end(LocalDateTime.of(2020, 1, 2, 1, 1))
-                .build();
-        var booking2 = Booking.builder()
-                .booker(User.builder().id(1L).build())
-                .status(Status.APPROVED)
-                .item(Item.builder().id(1L).build())
-                .start(LocalDateTime.of(2021, 1, 1, 1, 1))
-                .end(LocalDateTime.of(2021, 1, 2, 1, 1))
-                .build();
-        var booking3 = Booking.builder()
-                .booker(User.builder().id(1L).build())
-                .status(Status.APPROVED)
-                .item(Item.builder().id(1L).build())
-                .start(LocalDateTime.of(2024, 1, 1, 1, 1))
-                .end(LocalDateTime.of(2024, 1, 2, 1, 1))
-                .build();
-        when(bookingRepository.findAllByItem_OwnerId(anyLong())).thenReturn(List.of(booking1, booking3, booking2));
-        var expected = List.of(BookingMapper.toBookingDto(booking2), BookingMapper.toBookingDto(booking1)).toArray();
-        var actual = bookingService.findAllItemsByOwnerAndState(1L, "PAST", 0, 100).toArray();
-        assertArrayEquals(expected, actual);
+        var booking1 = bookingView(2L, LocalDateTime.of(2021, 1, 1, 1, 1));
+        var booking2 = bookingView(1L, LocalDateTime.of(2020, 1, 1, 1, 1));
+        when(ownerBookingViewRepository.findAllByOwnerIdAndPhase(anyLong(), eq(Phase.PAST), any(Pageable.class)))
+                .thenReturn(List.of(booking1, booking2));
+        var actual = bookingService.findAllItemsByOwnerAndState(1L, "PAST", 0, 100);
+        assertEquals(List.of(2L, 1L), List.of(actual.get(0).getId(), actual.get(1).getId()));
+        var item = actual.get(0).getItem();
+        assertEquals(1L, item.getId());
+        assertEquals("Дрель", item.getName());
+        assertEquals("Простая дрель", item.getDescription());
+        assertEquals(true, item.getAvailable());
+        assertEquals(5L, item.getRequest().getId());
+        var booker = actual.get(0).getBooker();
+        assertEquals(1L, booker.getId());
+        assertEquals("booker", booker.getName());
+        assertEquals("booker@mail.ru", booker.getEmail());
+        assertEquals(booking1.getStart(), actual.get(0).getStart());
         verify(entityUtils, times(1)).getUserIfExists(anyLong());
-        verify(bookingRepository, times(1)).findAllByItem_OwnerId(anyLong());
+        verify(ownerBookingViewRepository, times(1)).findAllByOwnerIdAndPhase(eq(1L), eq(Phase.PAST),
+                any(Pageable.class));
+        verifyNoInteractions(bookingRepository);
+    }
+
+    @Test
+    public void findAllByOwnerAndStateDispatchesByState() {
+        bookingService.findAllItemsByOwnerAndState(1L, "ALL", 0, 10);
+        verify(ownerBookingViewRepository).findAllByOwnerId(eq(1L), any(Pageable.class));
+        bookingService.findAllItemsByOwnerAndState(1L, "FUTURE", 0, 10);
+        verify(ownerBookingViewRepository).findAllByOwnerIdAndPhase(eq(1L), eq(Phase.FUTURE), any(Pageable.class));
+        bookingService.findAllItemsByOwnerAndState(1L, "CURRENT", 0, 10);
+        verify(ownerBookingViewRepository).findAllByOwnerIdAndPhase(eq(1L), eq(Phase.CURRENT), any(Pageable.class));
+        bookingService.findAllItemsByOwnerAndState(1L, "WAITING", 0, 10);
+        verify(ownerBookingViewRepository).findAllByOwnerIdAndStatus(eq(1L), eq(Status.WAITING), any(Pageable.class));
+        bookingService.findAllItemsByOwnerAndState(1L, "REJECTED", 0, 10);
+        verify(ownerBookingViewRepository).findAllByOwnerIdAndStatus(eq(1L), eq(Status.REJECTED),
+                any(Pageable.class));
+    }
+
+    @Test
+    public void findByBookerAndStateAfterCursor() {
+        var start = LocalDateTime.of(2030, 1, 1, 12, 0);
+        var after = new BookingCursor(start, 7L).encode();
+        bookingService.findByBookerAndStateAfter(1L, "WAITING", after, 10);
+        verify(bookingRepository).findAllByBookerIdAndStatusAfter(eq(1L), eq(Status.WAITING), eq(start),
+                eq(7L), eq(PageRequest.of(0, 10)));
+        bookingService.findAllItemsByOwnerAndStateAfter(2L, null, after, 10);
+        verify(ownerBookingViewRepository).findAllByOwnerIdAfter(eq(2L), eq(start),
+                eq(7L), eq(PageRequest.of(0, 10)));
+        bookingService.findAllItemsByOwnerAndStateAfter(2L, "PAST", after, 10);
+        verify(ownerBookingViewRepository).findAllByOwnerIdAndPhaseAfter(eq(2L), eq(Phase.PAST), eq(start),
+                eq(7L), eq(PageRequest.of(0, 10)));
+    }
+
+    @Test
+    public void subscribe() {
+        var emitter = new SseEmitter();
+        when(eventBroker.subscribe(1L, 5L)).thenReturn(emitter);
+        assertSame(emitter, bookingService.subscribe(1L, 5L));
+        verify(entityUtils, times(1)).getUserIfExists(1L);
+    }
+
+    @Test
+    public void subscribeNotExistsUser() {
+        when(entityUtils.getUserIfExists(1L)).thenThrow(new NotExistException("User with id=1 not exists"));
+        assertThrows(NotExistException.class, () -> bookingService.subscribe(1L, null));
+        verifyNoInteractions(eventBroker);
+    }
+
+    @Test
+    public void findByBookerAndStateWithBadCursor() {
+        var exception = assertThrows(BadRequestException.class,
+                () -> bookingService.findByBookerAndStateAfter(1L, "ALL", "bad", 10));
+        assertEquals("Bad after token: bad", exception.getMessage());
+        var after = new BookingCursor(LocalDateTime.of(2030, 1, 1, 12, 0), 7L).encode();
+        assertThrows(BadRequestException.class,
+                () -> bookingService.findAllItemsByOwnerAndStateAfter(1L, "ALL", after, 0));
+        verifyNoInteractions(bookingRepository);
+    }
+
+    private static BookingView bookingView(long id, LocalDateTime start) {
+        var row = new HashMap<String, Object>();
+        row.put("id", id);
+        row.put("start", start);
+        row.put("end", start.plusDays(1));
+        row.put("status", Status.APPROVED);
+        row.put("itemId", 1L);
+        row.put("itemName", "Дрель");
+        row.put("itemDescription", "Простая дрель");
+        row.put("itemAvailable", true);
+        row.put("itemRequestId", 5L);
+        row.put("bookerId", 1L);
+        row.put("bookerName", "booker");
+        row.put("bookerEmail", "booker@mail.ru");
+        return PROJECTIONS.createProjection(BookingView.class, row);
+    }
+
+    @Test
+    public void exportAllByOwnerChecksUserBeforeStreaming() {
+        StreamingResponseBody body = out -> {
+        };
+        when(exporter.export(OwnerBookingViewRepository.EXPORT_BY_OWNER, ExportFormat.CSV, 1L)).thenReturn(body);
+
+        assertEquals(body, bookingService.exportAllByOwner(1L, ExportFormat.CSV));
+        verify(entityUtils).getUserIfExists(1L);
+    }
+
+    @Test
+    public void exportAllByOwnerForUnknownUser() {
+        when(entityUtils.getUserIfExists(1L)).thenThrow(new NotExistException("User with id=1 not exists"));
+
+        assertThrows(NotExistException.class, () -> bookingService.exportAllByOwner(1L, ExportFormat.NDJSON));
+        verifyNoInteractions(exporter);
     }
 }
@@ -0,0 +1,91 @@
+package ru.practicum.shareit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+public class ItemAvailabilityTest {
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingIntervalIndex intervalIndex;
+
+    private User owner;
+
+    /**
+     * Вещь и бронирования удаляются каскадно вместе с владельцем
+     */
+    @AfterEach
+    public void cleanUp() {
+        intervalIndex.removeByUser(owner.getId());
+        userRepository.deleteById(owner.getId());
+    }
+
+    /**
+     * Календарь не зависит от того, включен ли индекс и вытеснил ли он закончившиеся бронирования
+     */
+    @Test
+    public void calendarIsSameWithAndWithoutIndex() {
+        owner = userRepository.save(User.builder().name("owner").email("availability@mail.ru").build());
+        var item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель").available(true)
+                .owner(owner).build());
+        var today = LocalDate.now();
+        var bookings = List.of(
+                book(item, today.minusDays(5).atTime(10, 0), today.minusDays(3).atTime(10, 0)),
+                book(item, today.minusDays(1).atTime(10, 0), today.atStartOfDay().plusSeconds(1)),
+                book(item, today.plusDays(2).atTime(10, 0), today.plusDays(3).atTime(10, 0)));
+        bookings.forEach(intervalIndex::reserve);
+        var from = today.minusDays(7);
+        var to = today.plusDays(7);
+
+        var beforeEviction = itemService.findAvailability(item.getId(), from, to);
+        intervalIndex.evictEnded(LocalDateTime.now());
+        var afterEviction = itemService.findAvailability(item.getId(), from, to);
+        ReflectionTestUtils.setField(intervalIndex, "enabled", false);
+        ItemAvailabilityDto withoutIndex;
+        try {
+            withoutIndex = itemService.findAvailability(item.getId(), from, to);
+        } finally {
+            ReflectionTestUtils.setField(intervalIndex, "enabled", true);
+        }
+
+        assertEquals(List.of(new ItemAvailabilityDto.DateRange(today, today),
+                new ItemAvailabilityDto.DateRange(today.plusDays(2), today.plusDays(3))), withoutIndex.getBusy());
+        assertEquals(withoutIndex, beforeEviction);
+        assertEquals(withoutIndex, afterEviction);
+    }
+
+    private Booking book(Item item, LocalDateTime start, LocalDateTime end) {
+        return bookingRepository.save(Booking.builder().item(item).booker(owner).status(Status.APPROVED)
+                .start(start).end(end).build());
+    }
+}
@@ -0,0 +1,148 @@
+package ru.practicum.shareit.service;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.exception.NotExistException;
+import ru.practicum.shareit.item.dto.ItemBulkResultDto;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemBulkImporter;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "shareit.item.bulk.batch-size=20"})
+public class ItemBulkImportTest {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    @Autowired
+    private ItemBulkImporter bulkImporter;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Вставки идут пакетами по 20 строк, поэтому запросов к базе на порядок меньше, чем строк,
+     * а ошибочные строки получают свою ошибку и не мешают остальным
+     */
+    @Test
+    public void importNdjsonInsertsInBatchesAndReportsRowErrors() throws Exception {
+        var owner = createUser();
+        var lines = IntStream.range(0, 45)
+                .mapToObj(i -> "{\"name\":\"Пила " + i + "\",\"description\":\"Ручная пила\",\"available\":true}")
+                .collect(Collectors.toList());
+        lines.add(10, "{\"name\":\" \",\"description\":\"Без имени\",\"available\":true}");
+        lines.add(20, "{\"name\":\"Сломанная");
+        lines.add(30, "");
+        lines.add(31, "{\"name\":\"Рубанок\",\"description\":\"Рубанок\",\"available\":true,\"requestId\":999999}");
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        var results = bulkImporter.importNdjson(body(String.join("\n", lines)), owner.getId());
+
+        assertTrue(statistics.getPrepareStatementCount() < 10);
+        assertEquals(48, results.size());
+        assertEquals("Item name must not be blank", results.get(10).getError());
+        assertTrue(results.get(20).getError().startsWith("Malformed item"));
+        assertEquals("Item request with id=999999 not exists", results.get(30).getError());
+        var saved = results.stream().filter(result -> result.getError() == null).collect(Collectors.toList());
+        assertEquals(45, saved.size());
+        assertEquals(45, itemRepository.findAllByOwnerId(owner.getId()).size());
+        var item = itemService.findById(saved.get(0).getItemId(), owner.getId());
+        assertEquals("Пила 0", item.getName());
+        assertEquals(10, itemService.searchByText("пила", false, false, 0, 10).size());
+    }
+
+    /**
+     * После синтаксической ошибки в массиве чтение останавливается, прочитанные строки сохраняются
+     */
+    @Test
+    public void importJsonStopsAtMalformedElement() throws Exception {
+        var owner = createUser();
+        var json = "[{\"name\":\"Дрель\",\"description\":\"Дрель\",\"available\":true},"
+                + "{\"name\":\"Молоток\",\"description\":\"Молоток\"},"
+                + "{\"name\":\"Отвертка\",\"description\":\"Отвертка\",\"available\":true},"
+                + "{\"name\":\"Ключ\" \"description\":\"Ключ\",\"available\":true},"
+                + "{\"name\":\"Лестница\",\"description\":\"Лестница\",\"available\":true}]";
+
+        var results = bulkImporter.importJson(body(json), owner.getId());
+
+        assertEquals(4, results.size());
+        assertNotNull(results.get(0).getItemId());
+        assertEquals("Item availability must be set", results.get(1).getError());
+        assertNotNull(results.get(2).getItemId());
+        assertTrue(results.get(3).getError().startsWith("Malformed item"));
+        assertEquals(2, itemRepository.findAllByOwnerId(owner.getId()).size());
+    }
+
+    /**
+     * Ограничение базы, которое не проверяется при разборе: порция откатывается, строки повторяются по одной,
+     * и ошибку получает только нарушившая ограничение строка
+     */
+    @Test
+    public void importRetriesFailedBatchRowByRow() throws Exception {
+        var owner = createUser();
+        jdbcTemplate.execute("ALTER TABLE items ADD CONSTRAINT items_name_test_check CHECK (name <> 'Брак')");
+        try {
+            var ndjson = "{\"name\":\"Стамеска\",\"description\":\"Стамеска\",\"available\":true}\n"
+                    + "{\"name\":\"Брак\",\"description\":\"Брак\",\"available\":true}\n"
+                    + "{\"name\":\"Напильник\",\"description\":\"Напильник\",\"available\":true}";
+
+            var results = bulkImporter.importNdjson(body(ndjson), owner.getId());
+
+            assertEquals(3, results.size());
+            assertNotNull(results.get(0).getItemId());
+            assertEquals("Failed to save item", results.get(1).getError());
+            assertNotNull(results.get(2).getItemId());
+            assertEquals(2, itemRepository.findAllByOwnerId(owner.getId()).size());
+            assertEquals(0, itemService.searchByText("брак", false, false, 0, 10).size());
+            assertEquals(1, itemService.searchByText("напильник", false, false, 0, 10).size());
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE items DROP CONSTRAINT items_name_test_check");
+        }
+    }
+
+    @Test
+    public void importForUnknownUserFails() {
+        assertThrows(NotExistException.class, () -> bulkImporter.importJson(body("[]"), 999999L));
+    }
+
+    @Test
+    public void importEmptyArrayReturnsNoResults() throws Exception {
+        assertEquals(List.<ItemBulkResultDto>of(), bulkImporter.importJson(body("[]"), createUser().getId()));
+    }
+
+    private static ByteArrayInputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private User createUser() {
+        var id = SEQUENCE.incrementAndGet();
+        return userRepository.save(User.builder().name("user" + id).email("bulk" + id + "@mail.ru").build());
+    }
+}
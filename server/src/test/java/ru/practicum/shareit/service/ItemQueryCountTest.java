@@ -0,0 +1,165 @@
+package ru.practicum.shareit.service;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.schedule.ItemBookingPointers;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.comment.model.Comment;
+import ru.practicum.shareit.item.comment.repository.CommentRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Запросы считаются перехватчиком SQL Hibernate только в потоке теста: глобальная статистика
+ * включала бы запросы планировщика фаз и проверки указателей, работающих в своих потоках
+ */
+@SpringBootTest
+public class ItemQueryCountTest {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private ItemBookingPointers itemBookingPointers;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    /**
+     * Вещи, бронирования и отзывы удаляются каскадно вместе с пользователями
+     */
+    @AfterEach
+    public void cleanUp() {
+        userRepository.deleteAllByIdInBatch(userIds);
+    }
+
+    /**
+     * Число запросов к базе не зависит от числа вещей: вещи с указателями на бронирования и отзывы с авторами.
+     * Бронирования вставляются в обход сервиса, поэтому указатели восстанавливает проверка согласованности.
+     * Число исправленных вещей зависит от данных других тестов, поэтому проверяется, что повторная сверка чиста
+     */
+    @Test
+    public void findAllByUserIdUsesConstantNumberOfQueries() {
+        var small = createOwnerWithItems(2);
+        var large = createOwnerWithItems(30);
+        var now = LocalDateTime.now();
+        itemBookingPointers.check(now);
+        assertEquals(0, itemBookingPointers.check(now));
+
+        var smallQueries = countQueries(small, 2);
+        var largeQueries = countQueries(large, 30);
+        assertEquals(2, smallQueries);
+        assertEquals(smallQueries, largeQueries);
+    }
+
+    private long countQueries(long ownerId, int expectedItems) {
+        statementCounter.start();
+        var items = itemService.findAllByUserId(ownerId);
+        var queries = statementCounter.stop();
+        assertEquals(expectedItems, items.size());
+        items.forEach(item -> {
+            assertEquals(1, item.getComments().size());
+            assertNotNull(item.getLastBooking());
+            assertNotNull(item.getNextBooking());
+        });
+        return queries;
+    }
+
+    private long createOwnerWithItems(int count) {
+        var owner = createUser();
+        var now = LocalDateTime.now();
+        for (int i = 0; i < count; i++) {
+            var user = createUser();
+            var item = itemRepository.save(Item.builder().name("Дрель").description("Простая дрель")
+                    .available(true).owner(owner).build());
+            bookingRepository.save(Booking.builder().item(item).booker(user).status(Status.APPROVED)
+                    .start(now.minusDays(2)).end(now.minusDays(1)).build());
+            bookingRepository.save(Booking.builder().item(item).booker(user).status(Status.APPROVED)
+                    .start(now.plusDays(1)).end(now.plusDays(2)).build());
+            commentRepository.save(Comment.builder().text("Отличная дрель").item(item).author(user)
+                    .created(now).build());
+        }
+        return owner.getId();
+    }
+
+    private User createUser() {
+        var id = SEQUENCE.incrementAndGet();
+        var user = userRepository.save(User.builder().name("user" + id).email("count" + id + "@mail.ru").build());
+        userIds.add(user.getId());
+        return user;
+    }
+
+    @TestConfiguration
+    static class CounterConfig {
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementCounterCustomizer(StatementCounter counter) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, counter);
+        }
+    }
+
+    /**
+     * Считает SQL, подготовленный потоком, который вызвал start()
+     */
+    static class StatementCounter implements StatementInspector {
+        private final AtomicLong count = new AtomicLong();
+        private volatile Thread owner;
+
+        void start() {
+            count.set(0);
+            owner = Thread.currentThread();
+        }
+
+        long stop() {
+            owner = null;
+            return count.get();
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (Thread.currentThread() == owner) {
+                count.incrementAndGet();
+            }
+            return sql;
+        }
+    }
+}
@@ -7,13 +7,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemView;
 import ru.practicum.shareit.item.repository.ItemRepository;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 import ru.practicum.shareit.request.dto.ItemRequestMapper;
+import ru.practicum.shareit.request.dto.ItemRequestView;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.repository.RequestRepository;
 import ru.practicum.shareit.request.service.ItemRequestServiceImpl;
@@ -21,14 +25,18 @@ import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.util.EntityUtils;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class ItemRequestServiceImplTest {
+    private static final ProjectionFactory PROJECTIONS = new SpelAwareProxyProjectionFactory();
 
     @Mock
     private RequestRepository requestRepository;
@@ -75,16 +83,38 @@ public class ItemRequestServiceImplTest {
     public void findAllByUser() {
         when(entityUtils.getUserIfExists(anyLong())).thenReturn(user);
         when(requestRepository.findAllByRequestorId(anyLong()))
-                .thenReturn(List.of(ItemRequestMapper.toItemRequest(itemRequestDto)));
+                .thenReturn(List.of(requestView(itemRequestDto)));
         Assertions.assertEquals(1, service.findAllByUser(1L).size());
         Assertions.assertArrayEquals(List.of(itemRequestDto).toArray(),
                 service.findAllByUser(1L).toArray());
         verify(requestRepository, times(2)).findAllByRequestorId(anyLong());
     }
 
+    @Test
+    public void findAllByUserLoadsItemsOfAllRequestsAtOnce() {
+        var other = ItemRequestDto.builder().id(2L).description("other").build();
+        var item = new HashMap<String, Object>();
+        item.put("id", 7L);
+        item.put("name", "Дрель");
+        item.put("available", true);
+        item.put("requestId", 2L);
+        when(entityUtils.getUserIfExists(anyLong())).thenReturn(user);
+        when(requestRepository.findAllByRequestorId(1L))
+                .thenReturn(List.of(requestView(itemRequestDto), requestView(other)));
+        when(itemRepository.findAllViewsByRequestIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(PROJECTIONS.createProjection(ItemView.class, item)));
+
+        var result = service.findAllByUser(1L);
+        Assertions.assertEquals(List.of(), result.get(0).getItems());
+        Assertions.assertEquals(List.of(7L), result.get(1).getItems().stream()
+                .map(ItemDto::getId)
+                .collect(Collectors.toList()));
+        verify(itemRepository, times(1)).findAllViewsByRequestIdIn(anyCollection());
+    }
+
     @Test
     public void findById() {
-        when(itemRepository.findAllByRequestId(anyLong())).thenReturn(Collections.emptyList());
+        when(itemRepository.findAllViewsByRequestIdIn(List.of(1L))).thenReturn(Collections.emptyList());
         when(entityUtils.getItemRequestIfExists(anyLong()))
                 .thenReturn(ItemRequestMapper.toItemRequest(itemRequestDto));
 
@@ -93,10 +123,14 @@ public class ItemRequestServiceImplTest {
 
     @Test
     public void findAllByParams() {
-        when(itemRepository.findAllByRequestId(anyLong())).thenReturn(Collections.emptyList());
+        when(itemRepository.findAllViewsByRequestIdIn(List.of(1L))).thenReturn(Collections.emptyList());
         when(requestRepository.findAllByRequestorIdNot(anyLong(), any(Pageable.class)))
-                .thenReturn(new PageImpl<>(List.of(ItemRequestMapper.toItemRequest(itemRequestDto))));
+                .thenReturn(List.of(requestView(itemRequestDto)));
 
         Assertions.assertEquals(List.of(itemRequestDto), service.findAllByParams(1L, PageRequest.of(0, 2, Sort.by("created"))));
     }
+
+    private static ItemRequestView requestView(ItemRequestDto dto) {
+        return PROJECTIONS.createProjection(ItemRequestView.class, dto);
+    }
 }
@@ -4,28 +4,47 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotExistException;
 import ru.practicum.shareit.exception.UserOwnershipException;
+import ru.practicum.shareit.item.cache.ItemDetailCache;
 import ru.practicum.shareit.item.comment.dto.CommentDto;
+import ru.practicum.shareit.item.comment.dto.CommentView;
 import ru.practicum.shareit.item.comment.model.Comment;
 import ru.practicum.shareit.item.comment.repository.CommentRepository;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemFacetsDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.dto.ItemView;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemFacetView;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.item.search.SearchResultCache;
 import ru.practicum.shareit.item.service.ItemServiceImpl;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.util.CursorExporter;
 import ru.practicum.shareit.util.EntityUtils;
+import ru.practicum.shareit.util.ExportFormat;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,9 +59,27 @@ public class ItemServiceImpTest {
     @Mock
     private BookingRepository bookingRepository;
 
+    @Mock
+    private OwnerBookingViewRepository ownerBookingViewRepository;
+
     @Mock
     private CommentRepository commentRepository;
 
+    @Mock
+    private ItemSearchIndex searchIndex;
+
+    @Spy
+    private SearchResultCache searchCache = new SearchResultCache(0);
+
+    @Spy
+    private ItemDetailCache detailCache = new ItemDetailCache(1 << 20, 1 << 10);
+
+    @Mock
+    private BookingIntervalIndex intervalIndex;
+
+    @Mock
+    private CursorExporter exporter;
+
     @Mock
     private EntityUtils entityUtils;
 
@@ -94,6 +131,8 @@ public class ItemServiceImpTest {
         assertEquals(updatedDto.getName(), resultItem.getName());
         assertEquals(updatedDto, resultItem);
         verify(entityUtils, times(1)).getItemIfExists(anyLong());
+        verify(ownerBookingViewRepository, times(1)).updateItemName(1L, "test");
+        verify(detailCache, times(1)).invalidateSnapshot(1L);
     }
 
     @Test
@@ -110,6 +149,7 @@ public class ItemServiceImpTest {
         assertEquals(updatedDto.getDescription(), resultItem.getDescription());
         assertEquals(updatedDto, resultItem);
         verify(entityUtils, times(1)).getItemIfExists(anyLong());
+        verifyNoInteractions(ownerBookingViewRepository);
     }
 
     @Test
@@ -142,25 +182,14 @@ public class ItemServiceImpTest {
 
     @Test
     public void findByIdWithBookings() {
-        var prevBooking = Booking.builder()
-                .start(LocalDateTime.now().minus(2, ChronoUnit.HOURS))
-                .end(LocalDateTime.now().minus(1, ChronoUnit.HOURS))
-                .status(Status.APPROVED)
-                .id(1L)
-                .booker(User.builder().id(1L).build())
-                .build();
-        var nextBooking = Booking.builder()
-                .status(Status.APPROVED)
-                .start(LocalDateTime.now().plus(1, ChronoUnit.HOURS))
-                .end(LocalDateTime.now().plus(2, ChronoUnit.HOURS))
-                .id(2L)
-                .booker(User.builder().id(2L).build())
-                .build();
         var item = Item.builder()
                 .id(1L)
                 .owner(User.builder().id(1L).build())
+                .lastBookingId(1L)
+                .lastBookerId(1L)
+                .nextBookingId(2L)
+                .nextBookerId(2L)
                 .build();
-        when(bookingRepository.findAllByItemId(anyLong())).thenReturn(List.of(prevBooking, nextBooking));
         when(entityUtils.getItemIfExists(anyLong())).thenReturn(item);
         ItemDto result = itemService.findById(1L, 1L);
         assertEquals(ItemDto.NearByBooking.builder()
@@ -172,7 +201,7 @@ public class ItemServiceImpTest {
                 .bookerId(2L)
                 .build(), result.getNextBooking());
         verify(entityUtils, times(1)).getItemIfExists(anyLong());
-        verify(bookingRepository, times(1)).findAllByItemId(anyLong());
+        verifyNoInteractions(bookingRepository);
     }
 
     @Test
@@ -180,26 +209,23 @@ public class ItemServiceImpTest {
         var item = Item.builder()
                 .id(1L)
                 .owner(User.builder().id(1L).build())
+                .commentCount(25)
                 .build();
         when(entityUtils.getItemIfExists(anyLong())).thenReturn(item);
-        var comment = Comment.builder()
-                .id(1L)
-                .text("text")
-                .created(LocalDateTime.of(2020, 1, 1, 1, 1))
-                .item(Item.builder().id(1L).build())
-                .author(User.builder().id(1L).name("name").build())
-                .build();
+        var comment = commentView(1L, 1L, "text", "name", LocalDateTime.of(2020, 1, 1, 1, 1));
         var commentDto = CommentDto.builder()
                 .id(1L)
                 .authorName("name")
                 .text("text")
                 .created(LocalDateTime.of(2020, 1, 1, 1, 1))
                 .build();
-        when(commentRepository.findAllByItemId(anyLong())).thenReturn(List.of(comment));
+        when(commentRepository.findLatestByItemIdIn(List.of(1L), ItemServiceImpl.EMBEDDED_COMMENTS))
+                .thenReturn(List.of(comment));
         var result = itemService.findById(1L, 1L);
         assertArrayEquals(List.of(commentDto).toArray(), result.getComments().toArray());
+        assertEquals(25, result.getCommentCount());
         verify(entityUtils, times(1)).getItemIfExists(anyLong());
-        verify(commentRepository, times(1)).findAllByItemId(anyLong());
+        verify(commentRepository, never()).findAllByItemId(anyLong());
     }
 
     @Test
@@ -216,39 +242,159 @@ public class ItemServiceImpTest {
 
     @Test
     public void findAllByUserId() {
-        var item1 = Item.builder().id(1L).build();
-        var item2 = Item.builder().id(2L).build();
-        when(itemRepository.findAllByOwnerId(anyLong())).thenReturn(List.of(item1, item2));
+        var item1 = itemView(1L, null, null, null, null);
+        var item2 = itemView(2L, null, null, null, null);
+        when(itemRepository.findAllViewsByOwnerId(anyLong())).thenReturn(List.of(item1, item2));
         var result = itemService.findAllByUserId(1L);
         var itemDto1 = ItemMapper.toItemDto(item1);
         itemDto1.setComments(Collections.emptyList());
+        itemDto1.setCommentCount(0);
         var itemDto2 = ItemMapper.toItemDto(item2);
         itemDto2.setComments(Collections.emptyList());
+        itemDto2.setCommentCount(0);
         assertArrayEquals(List.of(itemDto1, itemDto2).toArray(), result.toArray());
-        verify(itemRepository, times(1)).findAllByOwnerId(anyLong());
+        verify(itemRepository, times(1)).findAllViewsByOwnerId(anyLong());
+        verify(itemRepository, never()).findAllByOwnerId(anyLong());
+        verify(commentRepository, times(1)).findLatestByItemIdIn(List.of(1L, 2L), ItemServiceImpl.EMBEDDED_COMMENTS);
+        verify(commentRepository, never()).findAllByItemId(anyLong());
+        verifyNoInteractions(bookingRepository);
+    }
+
+    @Test
+    public void findAllByUserIdGroupsCommentsAndBookingsByItem() {
+        var item1 = itemView(1L, 12, null, null, null);
+        var item2 = itemView(2L, null, 1L, 2L, 5L);
+        var comment = commentView(3L, 1L, "text", "booker", LocalDateTime.now());
+        when(itemRepository.findAllViewsByOwnerId(1L)).thenReturn(List.of(item1, item2));
+        when(commentRepository.findLatestByItemIdIn(List.of(1L, 2L), ItemServiceImpl.EMBEDDED_COMMENTS))
+                .thenReturn(List.of(comment));
+        var result = itemService.findAllByUserId(1L);
+        assertEquals(List.of(1L, 2L), List.of(result.get(0).getId(), result.get(1).getId()));
+        assertEquals(1, result.get(0).getComments().size());
+        assertEquals("booker", result.get(0).getComments().get(0).getAuthorName());
+        assertEquals(12, result.get(0).getCommentCount());
+        assertNull(result.get(0).getLastBooking());
+        assertNull(result.get(0).getNextBooking());
+        assertEquals(List.of(), result.get(1).getComments());
+        assertEquals(1L, result.get(1).getLastBooking().getId());
+        assertEquals(2L, result.get(1).getNextBooking().getId());
+        assertEquals(5L, result.get(1).getNextBooking().getBookerId());
+    }
+
+    @Test
+    public void findAllByUserIdWithoutItems() {
+        assertEquals(List.of(), itemService.findAllByUserId(1L));
+        verifyNoInteractions(commentRepository, bookingRepository);
     }
 
     @Test
     public void searchByText() {
-        var item1 = Item.builder()
-                .description("text")
-                .name("name")
-                .available(true)
-                .build();
         var item2 = Item.builder()
+                .id(2L)
                 .description("test")
                 .name("name2")
                 .available(true)
                 .build();
-        when(itemRepository.findAll()).thenReturn(List.of(item1, item2));
-        var itemDtoList = itemService.searchByText("test");
+        when(searchIndex.isEnabled()).thenReturn(true);
+        when(searchIndex.search(anyString(), anyBoolean())).thenReturn(List.of(1L, 2L, 3L));
+        when(itemRepository.findAllById(List.of(2L))).thenReturn(List.of(item2));
+        var itemDtoList = itemService.searchByText("test", false, false, 1, 1);
         assertArrayEquals(List.of(ItemMapper.toItemDto(item2)).toArray(), itemDtoList.toArray());
-        verify(itemRepository, times(1)).findAll();
+        verify(searchIndex, times(1)).search("test", false);
+        verify(itemRepository, never()).findAll();
+    }
+
+    @Test
+    public void searchByTextInDatabase() {
+        var item = Item.builder()
+                .id(1L)
+                .description("te_st")
+                .name("name")
+                .available(true)
+                .build();
+        when(searchIndex.isEnabled()).thenReturn(false);
+        when(itemRepository.search("%te\\_st%", 0, 10)).thenReturn(List.of(item));
+        var itemDtoList = itemService.searchByText("Te_St", false, false, 0, 10);
+        assertArrayEquals(List.of(ItemMapper.toItemDto(item)).toArray(), itemDtoList.toArray());
+        verify(searchIndex, never()).search(anyString(), anyBoolean());
+    }
+
+    @Test
+    public void searchWithFacets() {
+        var item = Item.builder().id(1L).name("test").description("desc").available(true).build();
+        var facets = ItemFacetsDto.builder().available(1).withoutRequest(1)
+                .topOwners(List.of(new ItemFacetsDto.OwnerCount(1L, 1))).build();
+        when(searchIndex.isEnabled()).thenReturn(true);
+        when(searchIndex.search("test", false)).thenReturn(List.of(1L));
+        when(itemRepository.findAllById(List.of(1L))).thenReturn(List.of(item));
+        when(searchIndex.facets("test", false, 5)).thenReturn(facets);
+        var result = itemService.searchWithFacets("test", false, false, 0, 10);
+        assertEquals(List.of(ItemMapper.toItemDto(item)), result.getItems());
+        assertEquals(facets, result.getFacets());
+    }
+
+    @Test
+    public void searchWithFacetsInDatabase() {
+        when(searchIndex.isEnabled()).thenReturn(false);
+        when(itemRepository.search("%test%", 0, 10)).thenReturn(Collections.emptyList());
+        when(itemRepository.searchFacets("%test%")).thenReturn(List.of(
+                facetRow(true, false, 1L, 3L), facetRow(false, true, 2L, 1L), facetRow(true, true, 2L, 3L)));
+        var facets = itemService.searchWithFacets("test", false, false, 0, 10).getFacets();
+        assertEquals(6, facets.getAvailable());
+        assertEquals(1, facets.getUnavailable());
+        assertEquals(4, facets.getWithRequest());
+        assertEquals(3, facets.getWithoutRequest());
+        assertEquals(List.of(new ItemFacetsDto.OwnerCount(2L, 4), new ItemFacetsDto.OwnerCount(1L, 3)),
+                facets.getTopOwners());
+    }
+
+    @Test
+    public void searchWithFacetsByEmptyText() {
+        var result = itemService.searchWithFacets("", false, false, 0, 10);
+        assertEquals(Collections.emptyList(), result.getItems());
+        assertEquals(0, result.getFacets().getAvailable());
+        assertEquals(Collections.emptyList(), result.getFacets().getTopOwners());
+    }
+
+    @Test
+    public void searchByTextRanked() {
+        var item1 = Item.builder().id(1L).name("name").description("test").available(true).build();
+        var item2 = Item.builder().id(2L).name("test").description("desc").available(true).build();
+        when(searchIndex.isEnabled()).thenReturn(true);
+        when(searchIndex.searchRanked("test", false, 10)).thenReturn(List.of(2L, 1L));
+        when(itemRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(item1, item2));
+        var itemDtoList = itemService.searchByText("test", true, false, 0, 10);
+        assertArrayEquals(List.of(ItemMapper.toItemDto(item2), ItemMapper.toItemDto(item1)).toArray(),
+                itemDtoList.toArray());
+    }
+
+    @Test
+    public void suggest() {
+        when(searchIndex.isEnabled()).thenReturn(true);
+        when(searchIndex.suggest("др", 5)).thenReturn(List.of("Дрель"));
+        assertEquals(List.of("Дрель"), itemService.suggest("др", 5));
+        assertEquals(Collections.emptyList(), itemService.suggest(" ", 5));
+        assertThrows(BadRequestException.class, () -> itemService.suggest("др", 0));
+        var exception = assertThrows(BadRequestException.class, () -> itemService.suggest("др", 11));
+        assertEquals("Size must be from 1 to 10", exception.getMessage());
+    }
+
+    @Test
+    public void suggestInDatabase() {
+        when(searchIndex.isEnabled()).thenReturn(false);
+        when(itemRepository.suggestNames(eq("др%"), any())).thenReturn(List.of("Дрель"));
+        assertEquals(List.of("Дрель"), itemService.suggest("Др", 5));
+    }
+
+    @Test
+    public void searchByTextWithBadParams() {
+        assertThrows(BadRequestException.class, () -> itemService.searchByText("text", false, false, -1, 10));
+        assertThrows(BadRequestException.class, () -> itemService.searchByText("text", false, false, 0, 0));
     }
 
     @Test
     public void searchByEmptyText() {
-        assertArrayEquals(Collections.emptyList().toArray(), itemService.searchByText("").toArray());
+        assertArrayEquals(Collections.emptyList().toArray(), itemService.searchByText("", false, false, 0, 10).toArray());
     }
 
     @Test
@@ -299,5 +445,182 @@ public class ItemServiceImpTest {
         verify(entityUtils, times(1)).getUserIfExists(anyLong());
         verify(entityUtils, times(1)).getItemIfExists(anyLong());
         verify(commentRepository, times(1)).save(any(Comment.class));
+        verify(itemRepository, times(1)).incrementCommentCount(1L);
+        verify(detailCache, times(1)).invalidateSnapshot(1L);
+    }
+
+    @Test
+    public void findByIdServesRepeatedViewsFromCache() {
+        var item = Item.builder()
+                .id(1L)
+                .name("item")
+                .owner(User.builder().id(1L).build())
+                .nextBookingId(2L)
+                .nextBookerId(3L)
+                .build();
+        when(entityUtils.getItemIfExists(1L)).thenReturn(item);
+        var viewer = itemService.findById(1L, 2L);
+        var owner = itemService.findById(1L, 1L);
+        itemService.findById(1L, 1L);
+
+        assertNull(viewer.getNextBooking());
+        assertEquals(ItemDto.NearByBooking.builder().id(2L).bookerId(3L).build(), owner.getNextBooking());
+        assertNull(itemService.findById(1L, 2L).getNextBooking());
+        verify(entityUtils, times(2)).getItemIfExists(1L);
+        verify(commentRepository, times(1)).findLatestByItemIdIn(List.of(1L), ItemServiceImpl.EMBEDDED_COMMENTS);
+        assertEquals(3, detailCache.getHits(ItemDetailCache.SNAPSHOT));
+        assertEquals(1, detailCache.getHits(ItemDetailCache.BOOKINGS));
+
+        detailCache.invalidateBookings(List.of(1L));
+        itemService.findById(1L, 1L);
+        verify(entityUtils, times(3)).getItemIfExists(1L);
+        verify(commentRepository, times(1)).findLatestByItemIdIn(List.of(1L), ItemServiceImpl.EMBEDDED_COMMENTS);
+    }
+
+    @Test
+    public void findCommentsByKeyset() {
+        var author = User.builder().id(1L).name("user").build();
+        var comment = Comment.builder().id(5L).text("text").author(author).build();
+        when(commentRepository.findAllByItemIdAndIdLessThanOrderByIdDesc(1L, Long.MAX_VALUE, PageRequest.of(0, 2)))
+                .thenReturn(List.of(comment));
+        when(commentRepository.findAllByItemIdAndIdLessThanOrderByIdDesc(1L, 5L, PageRequest.of(0, 2)))
+                .thenReturn(List.of());
+        assertEquals(List.of(5L), itemService.findComments(1L, null, 2).stream()
+                .map(CommentDto::getId)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(), itemService.findComments(1L, 5L, 2));
+        verify(entityUtils, times(2)).getItemIfExists(1L);
+    }
+
+    @Test
+    public void findCommentsWithBadSize() {
+        assertThrows(BadRequestException.class, () -> itemService.findComments(1L, null, 0));
+        var exception = assertThrows(BadRequestException.class, () -> itemService.findComments(1L, null, 101));
+        assertEquals("Size must be from 1 to 100", exception.getMessage());
+        verifyNoInteractions(commentRepository);
+    }
+
+    private static ItemView itemView(long id, Integer commentCount, Long lastBookingId, Long nextBookingId,
+                                     Long bookerId) {
+        var row = new HashMap<String, Object>();
+        row.put("id", id);
+        row.put("name", "name" + id);
+        row.put("available", true);
+        row.put("commentCount", commentCount);
+        row.put("lastBookingId", lastBookingId);
+        row.put("lastBookerId", lastBookingId != null ? bookerId : null);
+        row.put("nextBookingId", nextBookingId);
+        row.put("nextBookerId", nextBookingId != null ? bookerId : null);
+        return new SpelAwareProxyProjectionFactory().createProjection(ItemView.class, row);
+    }
+
+    private static CommentView commentView(long id, long itemId, String text, String authorName,
+                                           LocalDateTime created) {
+        return new CommentView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getItemId() {
+                return itemId;
+            }
+
+            @Override
+            public String getText() {
+                return text;
+            }
+
+            @Override
+            public String getAuthorName() {
+                return authorName;
+            }
+
+            @Override
+            public LocalDateTime getCreated() {
+                return created;
+            }
+        };
+    }
+
+    private static ItemFacetView facetRow(boolean available, boolean answered, long ownerId, long total) {
+        return new ItemFacetView() {
+            @Override
+            public Boolean getAvailable() {
+                return available;
+            }
+
+            @Override
+            public Boolean getAnswered() {
+                return answered;
+            }
+
+            @Override
+            public Long getOwnerId() {
+                return ownerId;
+            }
+
+            @Override
+            public Long getTotal() {
+                return total;
+            }
+        };
+    }
+
+    @Test
+    public void findAvailability() {
+        var from = LocalDate.of(2030, 1, 1);
+        var busyDays = new BitSet();
+        busyDays.set(1, 3);
+        busyDays.set(5);
+        when(entityUtils.getItemIfExists(1L)).thenReturn(Item.builder().id(1L).build());
+        when(intervalIndex.findBusyDays(1L, from, from.plusDays(6))).thenReturn(busyDays);
+        var availability = itemService.findAvailability(1L, from, from.plusDays(6));
+        assertEquals(List.of(new ItemAvailabilityDto.DateRange(from.plusDays(1), from.plusDays(2)),
+                new ItemAvailabilityDto.DateRange(from.plusDays(5), from.plusDays(5))), availability.getBusy());
+        assertEquals(List.of(new ItemAvailabilityDto.DateRange(from, from),
+                new ItemAvailabilityDto.DateRange(from.plusDays(3), from.plusDays(4)),
+                new ItemAvailabilityDto.DateRange(from.plusDays(6), from.plusDays(6))), availability.getFree());
+    }
+
+    @Test
+    public void findAvailabilityStartsFromToday() {
+        var today = LocalDate.now();
+        when(entityUtils.getItemIfExists(1L)).thenReturn(Item.builder().id(1L).build());
+        when(intervalIndex.findBusyDays(1L, today, today.plusDays(1))).thenReturn(new BitSet());
+        var availability = itemService.findAvailability(1L, today.minusDays(3), today.plusDays(1));
+        assertEquals(today.minusDays(3), availability.getFrom());
+        assertEquals(List.of(new ItemAvailabilityDto.DateRange(today, today.plusDays(1))), availability.getFree());
+        assertEquals(List.of(), itemService.findAvailability(1L, today.minusDays(3), today.minusDays(1)).getFree());
+        verify(intervalIndex, times(1)).findBusyDays(anyLong(), any(), any());
+    }
+
+    @Test
+    public void findAvailabilityWithBadPeriod() {
+        var from = LocalDate.of(2030, 1, 1);
+        var exception = assertThrows(BadRequestException.class,
+                () -> itemService.findAvailability(1L, from, from.minusDays(1)));
+        assertEquals("Bad params from or to for request", exception.getMessage());
+        assertThrows(BadRequestException.class, () -> itemService.findAvailability(1L, from, from.plusYears(2)));
+        verify(intervalIndex, never()).findBusyDays(anyLong(), any(), any());
+    }
+
+    @Test
+    public void exportAllByOwnerChecksUserBeforeStreaming() {
+        StreamingResponseBody body = out -> {
+        };
+        when(exporter.export(ItemRepository.EXPORT_BY_OWNER, ExportFormat.CSV, 1L)).thenReturn(body);
+
+        assertEquals(body, itemService.exportAllByOwner(1L, ExportFormat.CSV));
+        verify(entityUtils).getUserIfExists(1L);
+    }
+
+    @Test
+    public void exportAllByOwnerForUnknownUser() {
+        when(entityUtils.getUserIfExists(1L)).thenThrow(new NotExistException("User with id=1 not exists"));
+
+        assertThrows(NotExistException.class, () -> itemService.exportAllByOwner(1L, ExportFormat.NDJSON));
+        verifyNoInteractions(exporter);
     }
 }
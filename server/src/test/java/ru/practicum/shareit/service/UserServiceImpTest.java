@@ -5,8 +5,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.booking.schedule.BookingIntervalIndex;
 import ru.practicum.shareit.exception.AlreadyExistsException;
 import ru.practicum.shareit.exception.NotExistException;
+import ru.practicum.shareit.item.cache.ItemDetailCache;
+import ru.practicum.shareit.item.comment.repository.CommentRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.item.search.SearchResultCache;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.model.User;
@@ -28,6 +34,18 @@ public class UserServiceImpTest {
     @Mock
     private UserRepository userRepository;
     @Mock
+    private ItemRepository itemRepository;
+    @Mock
+    private CommentRepository commentRepository;
+    @Mock
+    private ItemSearchIndex searchIndex;
+    @Mock
+    private SearchResultCache searchCache;
+    @Mock
+    private ItemDetailCache detailCache;
+    @Mock
+    private BookingIntervalIndex intervalIndex;
+    @Mock
     private EntityUtils entityUtils;
     @InjectMocks
     private UserServiceImpl userService;
@@ -151,6 +169,9 @@ public class UserServiceImpTest {
         long id = 1L;
         userService.deleteById(id);
         verify(userRepository).deleteById(id);
+        verify(searchIndex).removeByOwner(id);
+        verify(searchCache).invalidateAll();
+        verify(intervalIndex).removeByUser(id);
     }
 
     @Test
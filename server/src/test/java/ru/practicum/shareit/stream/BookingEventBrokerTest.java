@@ -0,0 +1,199 @@
+package ru.practicum.shareit.stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.controller.BookingController;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.booking.stream.BookingEventBroker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@ExtendWith(MockitoExtension.class)
+public class BookingEventBrokerTest {
+    private static final Pattern EVENT_ID = Pattern.compile("id:(\\d+)");
+
+    @Mock
+    private BookingService bookingService;
+
+    private BookingEventBroker broker;
+
+    private MockMvc mvc;
+
+    @AfterEach
+    public void stop() {
+        broker.stop();
+    }
+
+    @Test
+    public void statusEventReachesBookerAndOwnerOnly() throws Exception {
+        init(64, 1024);
+        var booker = subscribe(1L, null);
+        var owner = subscribe(2L, null);
+        var stranger = subscribe(3L, null);
+        broker.publish(booking(10L, Status.APPROVED), List.of(1L, 2L));
+        await(booker, "\"id\":10");
+        await(owner, "\"id\":10");
+        assertTrue(booker.getResponse().getContentAsString().contains("event:status"));
+        assertTrue(booker.getResponse().getContentAsString().contains("\"status\":\"APPROVED\""));
+        assertEquals("", stranger.getResponse().getContentAsString());
+        assertEquals(3, broker.getSubscriberCount());
+    }
+
+    @Test
+    public void resumeSendsOnlyMissedEventsOfUser() throws Exception {
+        init(64, 1024);
+        var first = subscribe(1L, null);
+        broker.publish(booking(10L, Status.APPROVED), List.of(1L, 2L));
+        broker.publish(booking(11L, Status.REJECTED), List.of(2L));
+        broker.publish(booking(12L, Status.REJECTED), List.of(1L, 2L));
+        await(first, "\"id\":12");
+        var ids = eventIds(first);
+        assertEquals(2, ids.size());
+
+        var resumed = subscribe(1L, ids.get(0));
+        await(resumed, "\"id\":12");
+        var content = resumed.getResponse().getContentAsString();
+        assertFalse(content.contains("\"id\":10"));
+        assertFalse(content.contains("\"id\":11"));
+        assertEquals(List.of(ids.get(1)), eventIds(resumed));
+    }
+
+    @Test
+    public void resumeAfterEvictedHistorySendsReset() throws Exception {
+        init(64, 1);
+        var first = subscribe(1L, null);
+        broker.publish(booking(10L, Status.APPROVED), List.of(1L));
+        broker.publish(booking(11L, Status.APPROVED), List.of(1L));
+        await(first, "\"id\":11");
+        var ids = eventIds(first);
+
+        var resumed = subscribe(1L, ids.get(0) - 1);
+        await(resumed, "event:reset");
+        assertEquals(List.of(ids.get(1)), eventIds(resumed));
+    }
+
+    @Test
+    public void resumeWithMoreMissedEventsThanBufferSendsReset() throws Exception {
+        init(2, 1024);
+        var first = subscribe(1L, null);
+        broker.publish(booking(10L, Status.APPROVED), List.of(1L));
+        await(first, "\"id\":10");
+        var lastEventId = eventIds(first).get(0);
+        for (long id = 11; id <= 13; id++) {
+            broker.publish(booking(id, Status.APPROVED), List.of(2L));
+            broker.publish(booking(id + 10, Status.APPROVED), List.of(1L));
+        }
+
+        var resumed = subscribe(1L, lastEventId);
+        await(resumed, "event:reset");
+        assertFalse(resumed.getResponse().getContentAsString().contains("event:status"));
+    }
+
+    /**
+     * Клиент, запись которому зависла, не задерживает других подписчиков даже при одном постоянном потоке
+     */
+    @Test
+    public void stuckSubscriberDoesNotDelayOthers() throws Exception {
+        var stuck = new AtomicBoolean(true);
+        var sending = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        init(new BookingEventBroker(64, 1024, 60_000, 0, 1) {
+            @Override
+            protected SseEmitter createEmitter(long timeoutMillis) {
+                if (!stuck.getAndSet(false)) {
+                    return super.createEmitter(timeoutMillis);
+                }
+                return new SseEmitter(timeoutMillis) {
+                    @Override
+                    public void send(SseEventBuilder builder) throws IOException {
+                        sending.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                };
+            }
+        });
+        try {
+            broker.subscribe(1L, null);
+            broker.publish(booking(10L, Status.APPROVED), List.of(1L));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            var other = subscribe(2L, null);
+            broker.publish(booking(11L, Status.APPROVED), List.of(1L, 2L));
+            await(other, "\"id\":11");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private void init(int bufferSize, int historySize) {
+        init(new BookingEventBroker(bufferSize, historySize, 60_000, 0, 1));
+    }
+
+    private void init(BookingEventBroker broker) {
+        this.broker = broker;
+        mvc = MockMvcBuilders
+                .standaloneSetup(new BookingController(bookingService, null))
+                .build();
+        when(bookingService.subscribe(anyLong(), any())).thenAnswer(invocation ->
+                broker.subscribe(invocation.getArgument(0), invocation.getArgument(1)));
+    }
+
+    private MvcResult subscribe(long userId, Long lastEventId) throws Exception {
+        var builder = get("/bookings/stream").header("X-Sharer-User-Id", userId);
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        return mvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private static BookingDto booking(long id, Status status) {
+        return BookingDto.builder()
+                .id(id)
+                .status(status)
+                .build();
+    }
+
+    private static void await(MvcResult result, String text) throws Exception {
+        for (int i = 0; i < 500 && !result.getResponse().getContentAsString().contains(text); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(result.getResponse().getContentAsString().contains(text),
+                () -> "No " + text + " in stream");
+    }
+
+    private static List<Long> eventIds(MvcResult result) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        var matcher = EVENT_ID.matcher(result.getResponse().getContentAsString());
+        while (matcher.find()) {
+            ids.add(Long.parseLong(matcher.group(1)));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.shareit.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.practicum.shareit.exception.TooManyRequestsException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Выгрузка вне транзакции, как в работающем сервере: autocommit выключается на время курсора
+ * и восстанавливается, а место выгрузки освобождается и после ошибки записи
+ */
+public class CursorExporterConnectionTest {
+    private static final String SQL = "SELECT id AS \"id\", name AS \"name\" FROM things ORDER BY id";
+
+    private Connection connection;
+    private CursorExporter exporter;
+
+    @BeforeEach
+    public void init() throws Exception {
+        var real = DriverManager.getConnection("jdbc:h2:mem:cursor-exporter;DB_CLOSE_DELAY=-1");
+        try (var statement = real.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS things (id BIGINT PRIMARY KEY, name VARCHAR(32))");
+            statement.execute("MERGE INTO things VALUES (1, 'first'), (2, 'second'), (3, 'third')");
+        }
+        connection = spy(real);
+        var jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        exporter = new CursorExporter(jdbcTemplate, new ObjectMapper(), 2, 1, 60000);
+    }
+
+    @AfterEach
+    public void close() throws Exception {
+        exporter.stop();
+        connection.close();
+    }
+
+    @Test
+    public void exportOutsideTransactionUsesCursorInTransaction() throws Exception {
+        var out = new ByteArrayOutputStream();
+
+        exporter.export(SQL, ExportFormat.CSV).writeTo(out);
+
+        assertEquals("id,name\r\n1,first\r\n2,second\r\n3,third\r\n", out.toString(StandardCharsets.UTF_8));
+        var order = inOrder(connection);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(connection).rollback();
+        order.verify(connection).setAutoCommit(true);
+        assertTrue(connection.getAutoCommit());
+    }
+
+    @Test
+    public void failedWriteRestoresConnectionAndReleasesPermit() throws Exception {
+        var broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Client disconnected");
+            }
+        };
+
+        var body = exporter.export(SQL, ExportFormat.NDJSON);
+        assertThrows(IOException.class, () -> body.writeTo(broken));
+
+        verify(connection).rollback();
+        assertTrue(connection.getAutoCommit());
+        var out = new ByteArrayOutputStream();
+        exporter.export(SQL, ExportFormat.NDJSON).writeTo(out);
+        assertEquals(3, out.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    @Test
+    public void exportsOverLimitAreRejected() throws Exception {
+        var body = exporter.export(SQL, ExportFormat.CSV);
+
+        assertThrows(TooManyRequestsException.class, () -> exporter.export(SQL, ExportFormat.CSV));
+        body.writeTo(new ByteArrayOutputStream());
+        assertNotNull(exporter.export(SQL, ExportFormat.CSV));
+    }
+}
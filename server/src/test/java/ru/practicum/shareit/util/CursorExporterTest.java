@@ -0,0 +1,138 @@
+package ru.practicum.shareit.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.OwnerBookingView;
+import ru.practicum.shareit.booking.model.Phase;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.OwnerBookingViewRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+public class CursorExporterTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private OwnerBookingViewRepository ownerBookingViewRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private CursorExporter exporter;
+
+    private User owner;
+    private Item drill;
+    private Item saw;
+
+    @BeforeEach
+    public void init() {
+        exporter = new CursorExporter(jdbcTemplate, mapper, 2, 1, 60000);
+        owner = userRepository.save(User.builder().name("owner").email("owner@mail.ru").build());
+        var other = userRepository.save(User.builder().name("other").email("other@mail.ru").build());
+        drill = itemRepository.save(Item.builder().name("Дрель").description("Дрель, \"ударная\"")
+                .available(true).owner(owner).build());
+        saw = itemRepository.save(Item.builder().name("Пила").description("Пила").available(false).owner(owner).build());
+        itemRepository.save(Item.builder().name("Рубанок").description("Рубанок").available(true).owner(owner).build());
+        itemRepository.save(Item.builder().name("Чужая").description("Чужая").available(true).owner(other).build());
+        entityManager.flush();
+    }
+
+    @AfterEach
+    public void stop() {
+        exporter.stop();
+    }
+
+    /**
+     * Строк больше, чем fetchSize, поэтому курсор дочитывает их несколькими порциями
+     */
+    @Test
+    public void exportItemsAsNdjson() throws Exception {
+        var lines = export(ItemRepository.EXPORT_BY_OWNER, ExportFormat.NDJSON).split("\n");
+
+        assertEquals(3, lines.length);
+        var first = mapper.readValue(lines[0], Map.class);
+        assertEquals("Дрель", first.get("name"));
+        assertEquals("Дрель, \"ударная\"", first.get("description"));
+        assertEquals(true, first.get("available"));
+        assertEquals(null, first.get("requestId"));
+        assertEquals(0, first.get("commentCount"));
+        assertEquals("Рубанок", mapper.readValue(lines[2], Map.class).get("name"));
+    }
+
+    @Test
+    public void exportItemsAsCsvQuotesSpecialCharacters() throws Exception {
+        var lines = export(ItemRepository.EXPORT_BY_OWNER, ExportFormat.CSV).split("\r\n");
+
+        assertEquals(4, lines.length);
+        assertEquals("id,name,description,available,requestId,lastBookingId,nextBookingId,commentCount", lines[0]);
+        assertEquals(drill.getId() + ",Дрель,\"Дрель, \"\"ударная\"\"\",true,,,,0", lines[1]);
+        assertEquals(saw.getId() + ",Пила,Пила,false,,,,0", lines[2]);
+    }
+
+    @Test
+    public void exportOwnerBookingsNewestFirst() throws Exception {
+        var booker = userRepository.save(User.builder().name("booker").email("booker@mail.ru").build());
+        var old = saveBooking(drill, booker, NOW.minusDays(2));
+        var recent = saveBooking(drill, booker, NOW.plusDays(1));
+        entityManager.flush();
+
+        var lines = export(OwnerBookingViewRepository.EXPORT_BY_OWNER, ExportFormat.NDJSON).split("\n");
+
+        assertEquals(2, lines.length);
+        var first = mapper.readValue(lines[0], Map.class);
+        assertEquals(recent.getId().intValue(), first.get("id"));
+        assertEquals("2030-01-02T12:00:00", first.get("start"));
+        assertEquals("APPROVED", first.get("status"));
+        assertEquals("Дрель", first.get("itemName"));
+        assertEquals(booker.getId().intValue(), first.get("bookerId"));
+        assertEquals(old.getId().intValue(), mapper.readValue(lines[1], Map.class).get("id"));
+    }
+
+    private Booking saveBooking(Item item, User booker, LocalDateTime start) {
+        var booking = bookingRepository.save(Booking.builder().item(item).booker(booker).status(Status.APPROVED)
+                .start(start).end(start.plusHours(1)).build());
+        ownerBookingViewRepository.save(OwnerBookingView.builder().id(booking.getId()).ownerId(owner.getId())
+                .itemId(item.getId()).itemName(item.getName()).bookerId(booker.getId()).status(Status.APPROVED)
+                .phase(Phase.of(booking.getStart(), booking.getEnd(), NOW)).start(booking.getStart())
+                .end(booking.getEnd()).build());
+        return booking;
+    }
+
+    private String export(String sql, ExportFormat format) throws Exception {
+        var out = new ByteArrayOutputStream();
+        exporter.export(sql, format, owner.getId()).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}